@@ -0,0 +1,340 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 地铁系统的异步查询接口
+ *
+ * 相同的并发查询（同一起点、终点和查询类型）只会计算一次，所有调用方共享结果。
+ * 每个调用方拿到各自的CompletableFuture，可以单独设置超时或取消；
+ * 当某次计算的所有调用方都已放弃时，尚未开始的计算不会再执行，已开始的计算会被中断。
+ */
+public class AsyncSubwayService implements AutoCloseable {
+    private final SubwaySystem subwaySystem;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor; // 由本类创建、需要在关闭时释放的执行器
+    private final ScheduledExecutorService timer;
+    // 正在进行的计算，查询键->计算
+    private final Map<Object, Flight<?>> inFlight = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong computeNanos = new AtomicLong();
+
+    /**
+     * 使用虚拟线程（JDK不支持时使用平台线程）执行查询
+     */
+    public AsyncSubwayService(SubwaySystem subwaySystem) {
+        this(subwaySystem, null);
+    }
+
+    /**
+     * @param subwaySystem 已加载数据的地铁系统
+     * @param executor 执行查询的执行器，为null时使用虚拟线程
+     */
+    public AsyncSubwayService(SubwaySystem subwaySystem, Executor executor) {
+        this.subwaySystem = subwaySystem;
+        if (executor == null) {
+            this.ownedExecutor = VirtualThreads.newExecutor();
+            this.executor = ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "subway-async-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 异步查询最短路径
+     */
+    public CompletableFuture<Path> findShortestPath(String startName, String endName) {
+        return submit(new QueryKey("shortest", startName, endName, 0),
+                      () -> subwaySystem.findShortestPath(startName, endName));
+    }
+
+    /**
+     * 异步查询最短路径，超过时限未完成时以TimeoutException结束
+     */
+    public CompletableFuture<Path> findShortestPath(String startName, String endName, long timeout, TimeUnit unit) {
+        return withDeadline(findShortestPath(startName, endName), timeout, unit);
+    }
+
+    /**
+     * 异步查询前K条最短路径
+     */
+    public CompletableFuture<List<Path>> findKShortestPaths(String startName, String endName, int k) {
+        return submit(new QueryKey("kShortest", startName, endName, k),
+                      () -> subwaySystem.findKShortestPaths(startName, endName, k));
+    }
+
+    /**
+     * 异步查询前K条最短路径，超过时限未完成时以TimeoutException结束
+     */
+    public CompletableFuture<List<Path>> findKShortestPaths(String startName, String endName, int k,
+                                                            long timeout, TimeUnit unit) {
+        return withDeadline(findKShortestPaths(startName, endName, k), timeout, unit);
+    }
+
+    /**
+     * 提交一个查询，相同key的并发查询合并为一次计算
+     * @param key 查询键，需要正确实现equals和hashCode
+     * @param query 查询计算
+     * @return 该调用方独有的结果；执行器拒绝执行时以RejectedExecutionException结束
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(Object key, Supplier<T> query) {
+        requests.incrementAndGet();
+        while (true) {
+            Flight<T> created = new Flight<>(key, query);
+            Flight<T> flight = (Flight<T>) inFlight.putIfAbsent(key, created);
+            if (flight == null) {
+                flight = created;
+                CompletableFuture<T> caller = flight.join();
+                try {
+                    executor.execute(flight.task);
+                } catch (RejectedExecutionException e) {
+                    // 执行器已关闭或已满：移除该计算，本次和已经合并进来的调用方都以异常结束
+                    inFlight.remove(key, flight);
+                    flight.result.completeExceptionally(e);
+                    return caller;
+                }
+                computations.incrementAndGet();
+                return caller;
+            }
+            CompletableFuture<T> caller = flight.join();
+            if (caller != null) {
+                coalesced.incrementAndGet();
+                return caller;
+            }
+            // 该计算已被放弃，移除后重新发起
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 为结果设置时限
+     */
+    public <T> CompletableFuture<T> withDeadline(CompletableFuture<T> future, long timeout, TimeUnit unit) {
+        if (future.isDone()) {
+            return future;
+        }
+        Future<?> timeoutTask = timer.schedule(() -> {
+            if (future.completeExceptionally(new TimeoutException("查询超时"))) {
+                timeouts.incrementAndGet();
+            }
+        }, timeout, unit);
+        future.whenComplete((result, error) -> timeoutTask.cancel(false));
+        return future;
+    }
+
+    /**
+     * 获取统计信息快照
+     */
+    public Stats getStats() {
+        return new Stats(requests.get(), computations.get(), coalesced.get(),
+                         abandoned.get(), timeouts.get(), computeNanos.get());
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 一次共享的计算
+     */
+    private class Flight<T> {
+        private final Object key;
+        private final FutureTask<T> task;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int waiters; // 仍在等待结果的调用方数量
+        private boolean abandonedFlight;
+
+        Flight(Object key, Supplier<T> query) {
+            this.key = key;
+            this.task = new FutureTask<T>(() -> {
+                long start = System.nanoTime();
+                try {
+                    return query.get();
+                } finally {
+                    computeNanos.addAndGet(System.nanoTime() - start);
+                }
+            }) {
+                @Override
+                protected void done() {
+                    inFlight.remove(Flight.this.key, Flight.this);
+                    if (isCancelled()) {
+                        result.cancel(false);
+                        return;
+                    }
+                    try {
+                        result.complete(get());
+                    } catch (Exception e) {
+                        result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+                    }
+                }
+            };
+        }
+
+        /**
+         * 加入本次计算
+         * @return 调用方的结果，计算已被放弃时返回null
+         */
+        synchronized CompletableFuture<T> join() {
+            if (abandonedFlight) {
+                return null;
+            }
+            waiters++;
+            CompletableFuture<T> caller = new CompletableFuture<>();
+            result.whenComplete((value, error) -> {
+                if (error != null) {
+                    caller.completeExceptionally(error);
+                } else {
+                    caller.complete(value);
+                }
+            });
+            // 调用方取消或超时后不再等待
+            caller.whenComplete((value, error) -> {
+                if (error instanceof CancellationException || error instanceof TimeoutException) {
+                    leave();
+                }
+            });
+            return caller;
+        }
+
+        private void leave() {
+            boolean cancel;
+            synchronized (this) {
+                waiters--;
+                cancel = waiters == 0 && !result.isDone();
+                if (cancel) {
+                    abandonedFlight = true;
+                }
+            }
+            if (cancel) {
+                abandoned.incrementAndGet();
+                inFlight.remove(key, this);
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 查询键：查询类型、起点、终点和附加参数
+     */
+    private static final class QueryKey {
+        private final String type;
+        private final String startName;
+        private final String endName;
+        private final int parameter;
+
+        QueryKey(String type, String startName, String endName, int parameter) {
+            this.type = type;
+            this.startName = startName;
+            this.endName = endName;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof QueryKey)) return false;
+            QueryKey other = (QueryKey) obj;
+            return parameter == other.parameter && type.equals(other.type)
+                && startName.equals(other.startName) && endName.equals(other.endName);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = type.hashCode();
+            hash = 31 * hash + startName.hashCode();
+            hash = 31 * hash + endName.hashCode();
+            return 31 * hash + parameter;
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public static class Stats {
+        private final long requests;
+        private final long computations;
+        private final long coalesced;
+        private final long abandoned;
+        private final long timeouts;
+        private final long computeNanos;
+
+        Stats(long requests, long computations, long coalesced, long abandoned, long timeouts, long computeNanos) {
+            this.requests = requests;
+            this.computations = computations;
+            this.coalesced = coalesced;
+            this.abandoned = abandoned;
+            this.timeouts = timeouts;
+            this.computeNanos = computeNanos;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getComputations() {
+            return computations;
+        }
+
+        /**
+         * 合并到已有计算、没有单独计算的请求数
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        /**
+         * 所有调用方都放弃后被取消的计算数
+         */
+        public long getAbandoned() {
+            return abandoned;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * 合并请求节省的计算时间估计（纳秒），按平均单次计算耗时折算
+         */
+        public long getSavedNanos() {
+            return computations == 0 ? 0 : computeNanos / computations * coalesced;
+        }
+
+        @Override
+        public String toString() {
+            return "请求: " + requests + "，实际计算: " + computations + "，合并: " + coalesced
+                + "，放弃: " + abandoned + "，超时: " + timeouts
+                + String.format("，节省计算时间: %.2f ms", getSavedNanos() / 1e6);
+        }
+    }
+}
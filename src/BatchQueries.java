@@ -0,0 +1,428 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 非交互的批量查询
+ *
+ * 从文件或标准输入逐行读取查询，在共享的地铁系统上由多个线程并行执行，结果按输入顺序通过缓冲写出，每个查询一行（TSV或JSON）。
+ * 读取、执行和写出同时进行：读取线程把查询提交给线程池，写出线程按顺序等待各查询的结果；
+ * 等待写出的查询数有上限，输入很大时内存占用也不会增长。
+ *
+ * 查询格式（字段以制表符或空格分隔，#开头的行和空行忽略）：
+ *   shortest 起点 终点                 最短路径
+ *   paths 起点 终点 [最多站数] [条数]   经过站点数不超过上限的所有路径，输出最短的若干条
+ *   reachable 起点 终点                两站是否连通
+ *   nearby 站点 站数                   指定站数以内的站点
+ *   fare 起点 终点                     最短路径的普通票价和武汉通票价
+ *
+ * 每行输出以输入行号和查询类型开始，TSV格式接着是ok或error，JSON格式有ok字段。
+ */
+public class BatchQueries {
+    private static final int DEFAULT_MAX_STATIONS = 20;
+    private static final int DEFAULT_PATH_LIMIT = 3;
+    private static final int PENDING_PER_THREAD = 256; // 每个线程最多等待写出的查询数
+    private static final Future<String> END = CompletableFuture.completedFuture(null);
+
+    private final SubwaySystem subwaySystem;
+    private final boolean json;
+
+    /**
+     * @param subwaySystem 已加载数据的地铁系统
+     * @param json 是否输出JSON，否则输出TSV
+     */
+    public BatchQueries(SubwaySystem subwaySystem, boolean json) {
+        this.subwaySystem = subwaySystem;
+        this.json = json;
+    }
+
+    /**
+     * 一次批量查询的统计
+     */
+    public static class Summary {
+        private final long queries;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Summary(long queries, long errors, long elapsedNanos) {
+            this.queries = queries;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getQueries() {
+            return queries;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getQueriesPerSecond() {
+            return queries / Math.max(elapsedNanos / 1e9, 1e-9);
+        }
+    }
+
+    /**
+     * 执行所有查询
+     * @param in 查询输入
+     * @param out 结果输出，由调用者负责关闭
+     * @param threads 执行查询的线程数
+     * @return 统计
+     */
+    public Summary run(BufferedReader in, Writer out, int threads) throws IOException, InterruptedException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("线程数必须大于0: " + threads);
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(threads * PENDING_PER_THREAD);
+        LongAdder errors = new LongAdder();
+        IOException[] readError = new IOException[1];
+
+        Thread reader = new Thread(() -> {
+            try {
+                String line;
+                int lineNumber = 0;
+                while ((line = in.readLine()) != null) {
+                    lineNumber++;
+                    String query = line.trim();
+                    if (query.isEmpty() || query.startsWith("#")) {
+                        continue;
+                    }
+                    int id = lineNumber;
+                    pending.put(executor.submit(() -> execute(id, query, errors)));
+                }
+            } catch (IOException e) {
+                readError[0] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    pending.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "batch-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long queries = 0;
+        try {
+            while (true) {
+                Future<String> future = pending.take();
+                if (future == END) {
+                    break;
+                }
+                out.write(future.get());
+                out.write('\n');
+                queries++;
+            }
+            out.flush();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            reader.interrupt();
+        }
+        reader.join();
+        if (readError[0] != null) {
+            throw readError[0];
+        }
+        return new Summary(queries, errors.sum(), System.nanoTime() - start);
+    }
+
+    /**
+     * 执行一个查询并格式化结果，查询错误时输出错误信息
+     */
+    private String execute(int id, String query, LongAdder errors) {
+        String[] fields = query.split(query.indexOf('\t') >= 0 ? "\t" : "\\s+");
+        String type = fields[0];
+        StringBuilder sb = new StringBuilder();
+        if (json) {
+            sb.append("{\"line\":").append(id).append(",\"type\":").append(RouteRenderer.jsonString(type));
+        } else {
+            sb.append(id).append('\t').append(tsv(type));
+        }
+        int prefixLength = sb.length();
+        try {
+            switch (type) {
+                case "shortest":
+                    shortest(sb, argument(fields, 1), argument(fields, 2));
+                    break;
+                case "paths":
+                    paths(sb, argument(fields, 1), argument(fields, 2),
+                          intArgument(fields, 3, DEFAULT_MAX_STATIONS), intArgument(fields, 4, DEFAULT_PATH_LIMIT));
+                    break;
+                case "reachable":
+                    reachable(sb, argument(fields, 1), argument(fields, 2));
+                    break;
+                case "nearby":
+                    nearby(sb, argument(fields, 1), intArgument(fields, 2, 1));
+                    break;
+                case "fare":
+                    fare(sb, argument(fields, 1), argument(fields, 2));
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知的查询类型: " + type);
+            }
+        } catch (IllegalArgumentException e) {
+            errors.increment();
+            sb.setLength(prefixLength);
+            if (json) {
+                sb.append(",\"ok\":false,\"error\":").append(RouteRenderer.jsonString(String.valueOf(e.getMessage())));
+            } else {
+                sb.append("\terror\t").append(tsv(String.valueOf(e.getMessage())));
+            }
+        }
+        if (json) {
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+
+    private static String argument(String[] fields, int index) {
+        if (index >= fields.length) {
+            throw new IllegalArgumentException("缺少第" + index + "个参数");
+        }
+        return fields[index];
+    }
+
+    private static int intArgument(String[] fields, int index, int defaultValue) {
+        if (index >= fields.length) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(fields[index]);
+            if (value <= 0) {
+                throw new IllegalArgumentException("第" + index + "个参数必须大于0: " + value);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("第" + index + "个参数不是整数: " + fields[index]);
+        }
+    }
+
+    private void shortest(StringBuilder sb, String from, String to) {
+        Path path = subwaySystem.findShortestPath(from, to);
+        if (path == null) {
+            throw new IllegalArgumentException("未找到路径: " + from + " -> " + to);
+        }
+        appendOk(sb);
+        appendPath(sb, path.getTotalDistance(), path.getTransferCount(), path.getStations());
+    }
+
+    private void paths(StringBuilder sb, String from, String to, int maxStations, int limit) {
+        List<CompactPath> paths = new ArrayList<>(subwaySystem.findAllCompactPaths(from, to, maxStations));
+        Collections.sort(paths);
+        int count = Math.min(limit, paths.size());
+        appendOk(sb);
+        if (json) {
+            sb.append(",\"count\":").append(paths.size()).append(",\"paths\":[");
+            for (int i = 0; i < count; i++) {
+                CompactPath path = paths.get(i);
+                sb.append(i > 0 ? "," : "").append("{\"rank\":").append(i + 1);
+                appendPath(sb, path.getTotalDistance(), path.getTransferCount(), path.getStations(subwaySystem));
+                sb.append('}');
+            }
+            sb.append(']');
+        } else {
+            sb.append('\t').append(paths.size());
+            for (int i = 0; i < count; i++) {
+                CompactPath path = paths.get(i);
+                appendPath(sb, path.getTotalDistance(), path.getTransferCount(), path.getStations(subwaySystem));
+            }
+        }
+    }
+
+    private void reachable(StringBuilder sb, String from, String to) {
+        Station start = station(from, "起点站");
+        Station end = station(to, "终点站");
+        double distance;
+        try (DistanceTable table = subwaySystem.getDistanceTable()) {
+            distance = table.getDistance(start.getId(), end.getId());
+        }
+        boolean reachable = distance != Double.POSITIVE_INFINITY;
+        appendOk(sb);
+        if (json) {
+            sb.append(",\"reachable\":").append(reachable)
+              .append(",\"distance\":").append(reachable ? RouteRenderer.formatDistance(distance) : "null");
+        } else {
+            sb.append('\t').append(reachable).append('\t').append(reachable ? RouteRenderer.formatDistance(distance) : "");
+        }
+    }
+
+    private void nearby(StringBuilder sb, String stationName, int n) {
+        NearbyStations stations = subwaySystem.findStationsWithinDistance(stationName, n);
+        appendOk(sb);
+        if (json) {
+            sb.append(",\"stations\":[");
+            for (int i = 0; i < stations.size(); i++) {
+                sb.append(i > 0 ? "," : "").append("{\"name\":").append(RouteRenderer.jsonString(stations.getStationName(i)))
+                  .append(",\"line\":").append(RouteRenderer.jsonString(stations.getLineName(i)))
+                  .append(",\"hops\":").append(stations.getHops(i)).append('}');
+            }
+            sb.append(']');
+        } else {
+            sb.append('\t').append(stations.size()).append('\t');
+            for (int i = 0; i < stations.size(); i++) {
+                sb.append(i > 0 ? "," : "").append(tsv(stations.getStationName(i))).append('/')
+                  .append(tsv(stations.getLineName(i))).append('/').append(stations.getHops(i));
+            }
+        }
+    }
+
+    private void fare(StringBuilder sb, String from, String to) {
+        Path path = subwaySystem.findShortestPath(from, to);
+        if (path == null) {
+            throw new IllegalArgumentException("未找到路径: " + from + " -> " + to);
+        }
+        String distance = RouteRenderer.formatDistance(path.getTotalDistance());
+        double fare = subwaySystem.calculateFare(path);
+        double wuhanTongFare = subwaySystem.calculateWuhanTongFare(path);
+        appendOk(sb);
+        if (json) {
+            sb.append(",\"distance\":").append(distance).append(",\"fare\":").append(fare)
+              .append(",\"wuhanTongFare\":").append(wuhanTongFare);
+        } else {
+            sb.append('\t').append(distance).append('\t').append(fare).append('\t').append(wuhanTongFare);
+        }
+    }
+
+    private Station station(String name, String role) {
+        Station station = subwaySystem.getStation(name);
+        if (station == null) {
+            throw new IllegalArgumentException(role + "不存在: " + name);
+        }
+        return station;
+    }
+
+    private void appendOk(StringBuilder sb) {
+        sb.append(json ? ",\"ok\":true" : "\tok");
+    }
+
+    /**
+     * 输出一条路径：JSON为distance、transfers和stations字段，TSV为距离、换乘次数和以逗号连接的站点三列
+     */
+    private void appendPath(StringBuilder sb, double distance, int transfers, List<Station> stations) {
+        if (json) {
+            sb.append(",\"distance\":");
+            RouteRenderer.appendDistance(distance, sb);
+            sb.append(",\"transfers\":").append(transfers).append(",\"stations\":[");
+            for (int i = 0; i < stations.size(); i++) {
+                sb.append(i > 0 ? "," : "").append(RouteRenderer.jsonString(stations.get(i).getName()));
+            }
+            sb.append(']');
+        } else {
+            sb.append('\t');
+            RouteRenderer.appendDistance(distance, sb);
+            sb.append('\t').append(transfers).append('\t');
+            for (int i = 0; i < stations.size(); i++) {
+                sb.append(i > 0 ? "," : "").append(tsv(stations.get(i).getName()));
+            }
+        }
+    }
+
+    /**
+     * TSV字段中不能出现制表符和换行
+     */
+    private static String tsv(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * 参数：查询文件（-表示标准输入） [--format tsv|json] [--threads 线程数] [--output 输出文件] [--data 数据文件]
+     *       [--snapshot 映射文件]
+     * 指定--snapshot时距离和票价读取映射文件中的路由表快照（文件无效时重新计算并写入）
+     * 结果写到标准输出或输出文件，统计信息写到标准错误
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("用法: 查询文件|- [--format tsv|json] [--threads 线程数] [--output 输出文件] [--data 数据文件]"
+                + " [--snapshot 映射文件]");
+            return;
+        }
+        String queryFile = args[0];
+        String format = "tsv";
+        int threads = Runtime.getRuntime().availableProcessors();
+        String outputFile = null;
+        String dataFile = "src/subway.txt";
+        String snapshotFile = null;
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                System.err.println("缺少参数值: " + option);
+                return;
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--format":
+                    format = value;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--output":
+                    outputFile = value;
+                    break;
+                case "--data":
+                    dataFile = value;
+                    break;
+                case "--snapshot":
+                    snapshotFile = value;
+                    break;
+                default:
+                    System.err.println("未知参数: " + option);
+                    return;
+            }
+        }
+        if (!"tsv".equals(format) && !"json".equals(format)) {
+            System.err.println("输出格式应为tsv或json: " + format);
+            return;
+        }
+
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile(dataFile);
+        if (snapshotFile != null) {
+            subwaySystem.buildRoutingSnapshot(new File(snapshotFile));
+        }
+        BatchQueries batch = new BatchQueries(subwaySystem, "json".equals(format));
+        OutputStream output = outputFile == null ? System.out : new FileOutputStream(outputFile);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                 "-".equals(queryFile) ? System.in : new FileInputStream(queryFile), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 1 << 16)) {
+            Summary summary = batch.run(in, out, threads);
+            System.err.println(String.format("共 %d 个查询，失败 %d 个，耗时 %.3f 秒，%.0f 查询/秒（%d 个线程）",
+                summary.getQueries(), summary.getErrors(), summary.getElapsedNanos() / 1e9,
+                summary.getQueriesPerSecond(), threads));
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 最短路径查询的微批调度器
+ *
+ * 在一个很短的时间窗口内收集查询请求，按起点分组，
+ * 每组只执行一次多终点Dijkstra搜索（所有请求的终点都确定后即停止），再分别完成各个请求。
+ * 请求增加的等待时间不超过一个窗口；窗口内请求数达到上限时立即处理。
+ */
+public class BatchingScheduler implements AutoCloseable {
+    private final SubwaySystem subwaySystem;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final ConcurrentLinkedQueue<Request> pending = new ConcurrentLinkedQueue<>();
+    // 等待处理的请求数，ConcurrentLinkedQueue.size()需要遍历整个队列
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    // 统计信息
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+
+    /**
+     * @param subwaySystem 已加载数据的地铁系统
+     * @param window 收集请求的时间窗口，可以小于1毫秒
+     * @param unit 时间窗口的单位
+     * @param maxBatchSize 单个批次的最大请求数
+     * @param executor 执行各组搜索的执行器，为null时使用虚拟线程
+     */
+    public BatchingScheduler(SubwaySystem subwaySystem, long window, TimeUnit unit,
+                             int maxBatchSize, Executor executor) {
+        if (window < 0) {
+            throw new IllegalArgumentException("时间窗口不能为负数: " + window);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("批次大小必须为正数: " + maxBatchSize);
+        }
+        this.subwaySystem = subwaySystem;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+        if (executor == null) {
+            this.ownedExecutor = VirtualThreads.newExecutor();
+            this.executor = ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+        this.dispatcher = new Thread(this::dispatchLoop, "subway-batch-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 使用200微秒的窗口和虚拟线程
+     */
+    public BatchingScheduler(SubwaySystem subwaySystem) {
+        this(subwaySystem, 200, TimeUnit.MICROSECONDS, 1024, null);
+    }
+
+    /**
+     * 提交一个最短路径查询
+     * @return 查询结果，无法到达时结果为null，站点不存在时以IllegalArgumentException结束
+     */
+    public CompletableFuture<Path> findShortestPath(String startName, String endName) {
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new RejectedExecutionException("调度器已关闭"));
+            return future;
+        }
+        if (subwaySystem.getStation(startName) == null) {
+            future.completeExceptionally(new IllegalArgumentException("起点站不存在: " + startName));
+            return future;
+        }
+        if (subwaySystem.getStation(endName) == null) {
+            future.completeExceptionally(new IllegalArgumentException("终点站不存在: " + endName));
+            return future;
+        }
+        requests.incrementAndGet();
+        Request request = new Request(startName, endName, future);
+        // 先计数再入队，出队时再减，计数不会为负
+        int count = pendingCount.incrementAndGet();
+        pending.offer(request);
+        if (!running && pending.remove(request)) {
+            pendingCount.decrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("调度器已关闭"));
+        }
+        // 只在调度线程可能需要醒来时唤醒：队列从空变为非空（开始新窗口），或批次已满
+        if (count == 1 || count == maxBatchSize || !running) {
+            LockSupport.unpark(dispatcher);
+        }
+        return future;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            if (pendingCount.get() == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+            // 等待窗口结束或批次已满
+            long deadline = System.nanoTime() + windowNanos;
+            long remaining;
+            while (running && pendingCount.get() < maxBatchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            dispatch(drain());
+        }
+        // 关闭时拒绝剩余请求
+        Request request;
+        while ((request = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            request.future.completeExceptionally(new RejectedExecutionException("调度器已关闭"));
+        }
+    }
+
+    private List<Request> drain() {
+        List<Request> batch = new ArrayList<>();
+        Request request;
+        while (batch.size() < maxBatchSize && (request = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Request> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.incrementAndGet();
+
+        // 按起点分组
+        Map<String, List<Request>> groups = new LinkedHashMap<>();
+        for (Request request : batch) {
+            List<Request> group = groups.get(request.startName);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(request.startName, group);
+            }
+            group.add(request);
+        }
+
+        for (Map.Entry<String, List<Request>> entry : groups.entrySet()) {
+            searches.incrementAndGet();
+            String startName = entry.getKey();
+            List<Request> group = entry.getValue();
+            try {
+                executor.execute(() -> search(startName, group));
+            } catch (RejectedExecutionException e) {
+                for (Request request : group) {
+                    request.future.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void search(String startName, List<Request> group) {
+        try {
+            Set<String> endNames = new HashSet<>();
+            for (Request request : group) {
+                endNames.add(request.endName);
+            }
+            Map<String, Path> paths = subwaySystem.findShortestPaths(startName, endNames);
+            for (Request request : group) {
+                request.future.complete(paths.get(request.endName));
+            }
+        } catch (RuntimeException e) {
+            for (Request request : group) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * 实际执行的Dijkstra搜索次数
+     */
+    public long getSearchCount() {
+        return searches.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 等待处理的查询请求
+     */
+    private static class Request {
+        final String startName;
+        final String endName;
+        final CompletableFuture<Path> future;
+
+        Request(String startName, String endName, CompletableFuture<Path> future) {
+            this.startName = startName;
+            this.endName = endName;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑的地铁路径表示
+ *
+ * 路径由不可变节点组成，每个节点只记录最后一站的站点编号和线路编号，并指向前一个节点，
+ * 因此同一前缀的所有路径共享前缀节点，延长路径只需新建一个节点，节点大小与网络规模无关。
+ * 节点不记录已访问站点的集合：搜索时由搜索过程维护一个位图，沿路径前进时置位、回溯时清除。
+ * 只有调用方需要时才转换为Station/Line对象。
+ */
+public class CompactPath implements Comparable<CompactPath> {
+    private final CompactPath parent; // 前一个节点，起点为null
+    private final int stationId; // 最后一站的编号
+    private final int lineId; // 到达最后一站所乘坐的线路编号，起点为-1
+    private final int stationCount; // 路径经过的站点数
+    private final double totalDistance; // 总距离
+    private final int transferCount; // 换乘次数
+
+    private CompactPath(CompactPath parent, int stationId, int lineId, int stationCount,
+                        double totalDistance, int transferCount) {
+        this.parent = parent;
+        this.stationId = stationId;
+        this.lineId = lineId;
+        this.stationCount = stationCount;
+        this.totalDistance = totalDistance;
+        this.transferCount = transferCount;
+    }
+
+    /**
+     * 创建只包含起点的路径
+     * @param stationId 起点站编号
+     */
+    public static CompactPath start(int stationId) {
+        return new CompactPath(null, stationId, -1, 1, 0, 0);
+    }
+
+    /**
+     * 在路径末尾增加一站，返回新路径，原路径不变
+     * @param stationId 新站点编号
+     * @param lineId 乘坐的线路编号
+     * @param distance 与上一站的距离
+     */
+    public CompactPath extend(int stationId, int lineId, double distance) {
+        int transfers = transferCount;
+        if (this.lineId >= 0 && this.lineId != lineId) {
+            transfers++;
+        }
+        return new CompactPath(this, stationId, lineId, stationCount + 1, totalDistance + distance, transfers);
+    }
+
+    /**
+     * 判断站点是否在路径上，需要沿路径回溯，O(站点数)；搜索中应使用自己维护的位图
+     */
+    public boolean containsStation(int stationId) {
+        for (CompactPath node = this; node != null; node = node.parent) {
+            if (node.stationId == stationId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 把路径经过的站点在位图中置位
+     */
+    void markStations(long[] visited) {
+        for (CompactPath node = this; node != null; node = node.parent) {
+            visited[node.stationId >>> 6] |= 1L << node.stationId;
+        }
+    }
+
+    /**
+     * 把路径经过的站点在位图中清除
+     */
+    void clearStations(long[] visited) {
+        for (CompactPath node = this; node != null; node = node.parent) {
+            visited[node.stationId >>> 6] &= ~(1L << node.stationId);
+        }
+    }
+
+    public int getLastStationId() {
+        return stationId;
+    }
+
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    public int getTransferCount() {
+        return transferCount;
+    }
+
+    /**
+     * 把站点编号和线路编号写入调用方的数组（见getStationIds和getLineIds），不分配内存
+     * @param stationIds 长度不小于站点数
+     * @param lineIds 长度不小于站点数-1
+     */
+    void copyIds(int[] stationIds, int[] lineIds) {
+        int i = stationCount - 1;
+        for (CompactPath node = this; node != null; node = node.parent) {
+            stationIds[i] = node.stationId;
+            if (node.parent != null) {
+                lineIds[i - 1] = node.lineId;
+            }
+            i--;
+        }
+    }
+
+    /**
+     * 获取路径经过的站点编号（从起点到终点）
+     */
+    public int[] getStationIds() {
+        int[] ids = new int[stationCount];
+        int i = stationCount - 1;
+        for (CompactPath node = this; node != null; node = node.parent) {
+            ids[i--] = node.stationId;
+        }
+        return ids;
+    }
+
+    /**
+     * 获取路径经过的线路编号，第i个元素是从第i站到第i+1站乘坐的线路
+     */
+    public int[] getLineIds() {
+        int[] ids = new int[stationCount - 1];
+        int i = stationCount - 2;
+        for (CompactPath node = this; node.parent != null; node = node.parent) {
+            ids[i--] = node.lineId;
+        }
+        return ids;
+    }
+
+    /**
+     * 获取路径经过的站点
+     */
+    public List<Station> getStations(SubwaySystem subwaySystem) {
+        int[] ids = getStationIds();
+        List<Station> stations = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            stations.add(subwaySystem.getStationById(id));
+        }
+        return stations;
+    }
+
+    /**
+     * 获取路径经过的线路
+     */
+    public List<Line> getLines(SubwaySystem subwaySystem) {
+        int[] ids = getLineIds();
+        List<Line> lines = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            lines.add(subwaySystem.getLineById(id));
+        }
+        return lines;
+    }
+
+    /**
+     * 转换为Path对象
+     */
+    public Path toPath(SubwaySystem subwaySystem) {
+        int[] stationIds = getStationIds();
+        Path path = new Path();
+        path.addFirstStation(subwaySystem.getStationById(stationIds[0]));
+        for (int i = 1; i < stationIds.length; i++) {
+            Station previous = subwaySystem.getStationById(stationIds[i - 1]);
+            Station station = subwaySystem.getStationById(stationIds[i]);
+            Edge edge = previous.getAdjacentStations().get(station);
+            path.addStation(station, edge.getLine(), edge.getDistance());
+        }
+        return path;
+    }
+
+    @Override
+    public int compareTo(CompactPath other) {
+        // 与Path一致：首先比较总距离，距离相同时比较换乘次数
+        int distanceComparison = Double.compare(this.totalDistance, other.totalDistance);
+        if (distanceComparison != 0) {
+            return distanceComparison;
+        }
+        return Integer.compare(this.transferCount, other.transferCount);
+    }
+}
@@ -0,0 +1,94 @@
+import java.nio.DoubleBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 站点间最短距离表
+ *
+ * 对每个站点运行一次ShortestPathTree，把所有站点对的最短距离保存在按“起点*站点数+终点”索引的double数组中，
+ * 查询两站距离只需一次数组访问。也可以是路由表快照（RoutingSnapshot）中距离部分的视图，不在堆上复制；
+ * 视图持有快照的一个引用，用完后调用close释放，堆上的表close不做任何操作。
+ */
+public class DistanceTable implements AutoCloseable {
+    private final int stationCount;
+    private final DoubleBuffer distances; // 起点编号*站点数+终点编号->最短距离（公里），不可达时为正无穷
+    private final AtomicReference<RoutingSnapshot> snapshot; // 视图持有引用的快照，堆上的表或已经释放时为null
+
+    public DistanceTable(NetworkGraph graph) {
+        stationCount = graph.getStationCount();
+        double[] array = new double[stationCount * stationCount];
+        ShortestPathTree tree = new ShortestPathTree(graph);
+        for (int source = 0; source < stationCount; source++) {
+            tree.compute(source);
+            tree.copyDistances(array, source * stationCount);
+        }
+        distances = DoubleBuffer.wrap(array);
+        snapshot = new AtomicReference<>();
+    }
+
+    /**
+     * 使用已经计算好的距离（例如从缓存中读取）
+     * @param stationCount 站点数
+     * @param distances 起点编号*站点数+终点编号->最短距离
+     */
+    DistanceTable(int stationCount, double[] distances) {
+        if (distances.length != stationCount * stationCount) {
+            throw new IllegalArgumentException("距离表大小与站点数不一致: " + distances.length);
+        }
+        this.stationCount = stationCount;
+        this.distances = DoubleBuffer.wrap(distances);
+        this.snapshot = new AtomicReference<>();
+    }
+
+    /**
+     * 路由表快照的视图，直接读取快照的缓冲区，不复制
+     * @param stationCount 站点数
+     * @param distances 起点编号*站点数+终点编号->最短距离
+     * @param snapshot 快照，视图接管调用者已经获得的一个引用，close时释放
+     */
+    DistanceTable(int stationCount, DoubleBuffer distances, RoutingSnapshot snapshot) {
+        if (distances.capacity() != stationCount * stationCount) {
+            throw new IllegalArgumentException("距离表大小与站点数不一致: " + distances.capacity());
+        }
+        this.stationCount = stationCount;
+        this.distances = distances;
+        this.snapshot = new AtomicReference<>(snapshot);
+    }
+
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * 两站之间的最短距离
+     * @param source 起点站点编号
+     * @param target 终点站点编号
+     * @return 距离（公里），不可达时为Double.POSITIVE_INFINITY
+     */
+    public double getDistance(int source, int target) {
+        return distances.get(source * stationCount + target);
+    }
+
+    public boolean isReachable(int source, int target) {
+        return getDistance(source, target) != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * 把所有站点对的距离按“起点*站点数+终点”复制到数组中
+     */
+    void copyDistances(double[] target) {
+        DoubleBuffer source = distances.duplicate();
+        source.rewind();
+        source.get(target, 0, stationCount * stationCount);
+    }
+
+    /**
+     * 释放视图持有的快照引用，之后不能再读取本表；重复调用和堆上的表不做任何操作
+     */
+    @Override
+    public void close() {
+        RoutingSnapshot owner = snapshot.getAndSet(null);
+        if (owner != null) {
+            owner.close();
+        }
+    }
+}
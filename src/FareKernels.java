@@ -0,0 +1,172 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 批量计价的计算内核，FareTable和RoutingSnapshot用它预先计算票价表
+ *
+ * 批量计价分两步：先把距离映射为票价档位，再按档位查表得到普通票价或武汉通票价（武汉通的折扣和四舍五入按档位预先算好）。
+ * 档位映射不使用分支：外层遍历距离上限，内层对一块距离逐个累加“距离是否超过上限”，
+ * 内层循环是简单的逐元素运算，JIT编译器可以自动生成SIMD指令。
+ *
+ * 结果与PricingSystem逐个计算完全一致（距离为NaN时除外）。
+ */
+public class FareKernels {
+    private static final int BLOCK_SIZE = 1024; // 分块处理，使档位数组保持在L1缓存中
+
+    private final double[] thresholds; // 各档位的距离上限
+    private final double[] standardFares; // 档位->普通票价
+    private final double[] wuhanTongFares; // 档位->武汉通票价
+    private final double[] fenThresholds; // 各档位的距离上限，最后加一个只有正无穷才超过的上限
+    private final int[] standardFens; // 档位->普通票价（分），最后一档（不可达）为-1
+    private final int[] wuhanTongFens; // 档位->武汉通票价（分），最后一档（不可达）为-1
+
+    public FareKernels(PricingSystem pricingSystem) {
+        thresholds = pricingSystem.getDistanceTiers();
+        int tierCount = pricingSystem.getFareTierCount();
+        standardFares = new double[tierCount];
+        wuhanTongFares = new double[tierCount];
+        for (int tier = 0; tier < tierCount; tier++) {
+            standardFares[tier] = pricingSystem.getTierFare(tier);
+            wuhanTongFares[tier] = pricingSystem.getTierWuhanTongFare(tier);
+        }
+        fenThresholds = Arrays.copyOf(thresholds, thresholds.length + 1);
+        fenThresholds[thresholds.length] = Double.MAX_VALUE;
+        standardFens = new int[tierCount + 1];
+        wuhanTongFens = new int[tierCount + 1];
+        for (int tier = 0; tier < tierCount; tier++) {
+            standardFens[tier] = FareTable.toFen(standardFares[tier]);
+            wuhanTongFens[tier] = FareTable.toFen(wuhanTongFares[tier]);
+        }
+        standardFens[tierCount] = -1;
+        wuhanTongFens[tierCount] = -1;
+    }
+
+    /**
+     * 批量计算票价档位
+     * @param distances 乘车距离（公里）
+     * @param tiers 输出的票价档位
+     * @param length 元素个数
+     */
+    public void mapTiers(double[] distances, int[] tiers, int length) {
+        for (int start = 0; start < length; start += BLOCK_SIZE) {
+            mapTierBlock(thresholds, distances, start, tiers, start, Math.min(BLOCK_SIZE, length - start));
+        }
+    }
+
+    /**
+     * 按档位查表得到票价
+     * @param tiers 票价档位
+     * @param fares 输出的票价（元）
+     * @param wuhanTong 是否使用武汉通
+     * @param length 元素个数
+     */
+    public void lookupFares(int[] tiers, double[] fares, boolean wuhanTong, int length) {
+        lookupFareBlock(tiers, 0, fares, 0, wuhanTong ? wuhanTongFares : standardFares, length);
+    }
+
+    /**
+     * 批量计算票价，等价于对每个距离调用PricingSystem.calculateFare或calculateWuhanTongFare
+     * 每块距离先映射到一个块大小的档位数组，再查表写入票价
+     * @param distances 乘车距离（公里）
+     * @param fares 输出的票价（元）
+     * @param wuhanTong 是否使用武汉通
+     * @param length 元素个数
+     */
+    public void calculateFares(double[] distances, double[] fares, boolean wuhanTong, int length) {
+        int[] tiers = new int[Math.min(length, BLOCK_SIZE)];
+        double[] table = wuhanTong ? wuhanTongFares : standardFares;
+        for (int start = 0; start < length; start += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, length - start);
+            mapTierBlock(thresholds, distances, start, tiers, 0, count);
+            lookupFareBlock(tiers, 0, fares, start, table, count);
+        }
+    }
+
+    /**
+     * 批量计算普通票价和武汉通票价（分），用于预先计算票价表
+     * 每块距离的档位只映射一次，两种票价共用；距离为正无穷（不可达）时落在最后一档，票价为-1
+     * @param distances 乘车距离（公里）
+     * @param standardFares 输出的普通票价（分）
+     * @param wuhanTongFares 输出的武汉通票价（分）
+     * @param length 元素个数
+     */
+    public void calculateFareTable(double[] distances, int[] standardFares, int[] wuhanTongFares, int length) {
+        int[] tiers = new int[Math.min(length, BLOCK_SIZE)];
+        for (int start = 0; start < length; start += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, length - start);
+            mapTierBlock(fenThresholds, distances, start, tiers, 0, count);
+            for (int i = 0; i < count; i++) {
+                standardFares[start + i] = standardFens[tiers[i]];
+                wuhanTongFares[start + i] = wuhanTongFens[tiers[i]];
+            }
+        }
+    }
+
+    /**
+     * 把distances[from, from+count)的档位写入tiers[to, to+count)
+     */
+    private static void mapTierBlock(double[] thresholds, double[] distances, int from, int[] tiers, int to,
+                                     int count) {
+        Arrays.fill(tiers, to, to + count, 0);
+        for (double threshold : thresholds) {
+            for (int i = 0; i < count; i++) {
+                tiers[to + i] += distances[from + i] > threshold ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * 把tiers[from, from+count)对应的票价写入fares[to, to+count)
+     */
+    private static void lookupFareBlock(int[] tiers, int from, double[] fares, int to, double[] table, int count) {
+        for (int i = 0; i < count; i++) {
+            fares[to + i] = table[tiers[from + i]];
+        }
+    }
+
+    /**
+     * 逐个计算票价（对照用）
+     */
+    public static void calculateFaresScalar(PricingSystem pricingSystem, double[] distances, double[] fares,
+                                            boolean wuhanTong, int length) {
+        for (int i = 0; i < length; i++) {
+            fares[i] = wuhanTong ? pricingSystem.calculateWuhanTongFare(distances[i])
+                                 : pricingSystem.calculateFare(distances[i]);
+        }
+    }
+
+    /**
+     * 对比逐个计价与批量计价的耗时，并检查结果一致
+     * 参数：[距离个数] [重复次数]
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        PricingSystem pricingSystem = new PricingSystem();
+        FareKernels kernels = new FareKernels(pricingSystem);
+
+        Random random = new Random(1);
+        double[] distances = new double[size];
+        for (int i = 0; i < size; i++) {
+            // 包含正好落在档位上限上的距离
+            distances[i] = random.nextInt(10) == 0 ? random.nextInt(80) : random.nextDouble() * 80;
+        }
+        double[] expected = new double[size];
+        double[] actual = new double[size];
+        for (boolean wuhanTong : new boolean[] {false, true}) {
+            long scalarNanos = Long.MAX_VALUE;
+            long kernelNanos = Long.MAX_VALUE;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                calculateFaresScalar(pricingSystem, distances, expected, wuhanTong, size);
+                scalarNanos = Math.min(scalarNanos, System.nanoTime() - start);
+                start = System.nanoTime();
+                kernels.calculateFares(distances, actual, wuhanTong, size);
+                kernelNanos = Math.min(kernelNanos, System.nanoTime() - start);
+            }
+            System.out.println(String.format("%s：逐个计算 %.2f ms，批量计算 %.2f ms，加速 %.1f倍，结果%s",
+                wuhanTong ? "武汉通票价" : "普通票价", scalarNanos / 1e6, kernelNanos / 1e6,
+                (double) scalarNanos / kernelNanos, Arrays.equals(expected, actual) ? "一致" : "不一致"));
+        }
+    }
+}
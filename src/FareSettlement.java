@@ -0,0 +1,390 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进出站刷卡结算
+ *
+ * 进站时在未完成行程表中记录卡号、进站站点和时间，出站时取出记录，按两站间最短距离计价。
+ * 票价从预先计算的FareTable中查出（单位为分）；FareTable可能是路由表快照的视图，结算结束后调用close释放。
+ * 出站记录先于进站记录到达时也会暂存，等进站记录到达后再配对，因此同一张卡的一次进出站可以分在不同批次中处理。
+ *
+ * process可以被多个线程同时调用；但同一张卡的多次行程需要按时间顺序处理，
+ * 多线程消费时应按卡号把事件分到不同的队列（processFile即按此方式处理）。
+ */
+public class FareSettlement implements AutoCloseable {
+    private final SubwaySystem subwaySystem;
+    private final OpenJourneyMap openJourneys;
+    private final FareTable fareTable;
+    private final int stationCount;
+    private volatile SettlementListener listener;
+
+    // 统计信息
+    private final LongAdder events = new LongAdder();
+    private final LongAdder settled = new LongAdder();
+    private final LongAdder revenue = new LongAdder(); // 分
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder orphans = new LongAdder();
+    private final LongAdder unreachable = new LongAdder();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+
+    /**
+     * 结算结果监听器
+     */
+    public interface SettlementListener {
+        /**
+         * 一次行程完成结算
+         * @param card 卡号
+         * @param entryStation 进站站点编号
+         * @param exitStation 出站站点编号
+         * @param entryTime 进站时间
+         * @param exitTime 出站时间
+         * @param fare 票价（分）
+         */
+        void onSettled(long card, int entryStation, int exitStation, long entryTime, long exitTime, int fare);
+    }
+
+    public FareSettlement(SubwaySystem subwaySystem, OpenJourneyMap openJourneys) {
+        this.subwaySystem = subwaySystem;
+        this.openJourneys = openJourneys;
+        this.fareTable = subwaySystem.getFareTable();
+        this.stationCount = fareTable.getStationCount();
+    }
+
+    public FareSettlement(SubwaySystem subwaySystem) {
+        this(subwaySystem, new OpenJourneyMap(1 << 16));
+    }
+
+    public void setListener(SettlementListener listener) {
+        this.listener = listener;
+    }
+
+    public OpenJourneyMap getOpenJourneys() {
+        return openJourneys;
+    }
+
+    /**
+     * 释放票价表持有的路由表快照引用，之后不能再结算
+     */
+    @Override
+    public void close() {
+        fareTable.close();
+    }
+
+    /**
+     * 查询两站之间的票价
+     * @param entryStation 进站站点编号
+     * @param exitStation 出站站点编号
+     * @param wuhanTong 是否使用武汉通
+     * @return 票价（分），不可达时为-1
+     */
+    public int getFare(int entryStation, int exitStation, boolean wuhanTong) {
+        return wuhanTong ? fareTable.getWuhanTongFare(entryStation, exitStation)
+                         : fareTable.getStandardFare(entryStation, exitStation);
+    }
+
+    /**
+     * 处理一批刷卡事件
+     * @param batch 事件批次
+     */
+    public void process(GateEventBatch batch) {
+        long startTime = System.nanoTime();
+        long[] matched = new long[2];
+        SettlementListener listener = this.listener;
+        long settledCount = 0;
+        long revenueSum = 0;
+        long duplicateCount = 0;
+        long orphanCount = 0;
+        long unreachableCount = 0;
+
+        for (int i = 0; i < batch.size(); i++) {
+            int station = batch.getStation(i);
+            if (station < 0 || station >= stationCount) {
+                throw new IllegalArgumentException("无效的站点编号: " + station);
+            }
+            long card = batch.getCard(i);
+            long time = batch.getTimestamp(i);
+            boolean tapOut = batch.isTapOut(i);
+            // 站点代码：(站点编号+1)*2+武汉通标志，出站记录取负数
+            int code = ((station + 1) << 1) | (batch.isWuhanTong(i) ? 1 : 0);
+            if (tapOut) {
+                code = -code;
+            }
+
+            int result = openJourneys.exchange(card, code, time, matched);
+            if (result == OpenJourneyMap.REPLACED) {
+                // 上一次进站没有出站（或上一次出站没有进站），以新记录为准
+                duplicateCount++;
+                continue;
+            }
+            if (result != OpenJourneyMap.MATCHED) {
+                continue;
+            }
+
+            int otherCode = (int) matched[0];
+            long otherTime = matched[1];
+            int entryCode = tapOut ? otherCode : code;
+            int exitCode = tapOut ? -code : -otherCode;
+            long entryTime = tapOut ? otherTime : time;
+            long exitTime = tapOut ? time : otherTime;
+            if (exitTime < entryTime) {
+                // 暂存的记录属于更早的一次行程，丢弃它并保存当前记录
+                orphanCount++;
+                openJourneys.exchange(card, code, time, matched);
+                continue;
+            }
+
+            int entryStation = (entryCode >> 1) - 1;
+            int exitStation = (exitCode >> 1) - 1;
+            int fare = getFare(entryStation, exitStation, (exitCode & 1) != 0);
+            if (fare < 0) {
+                unreachableCount++;
+                continue;
+            }
+            settledCount++;
+            revenueSum += fare;
+            if (listener != null) {
+                listener.onSettled(card, entryStation, exitStation, entryTime, exitTime, fare);
+            }
+        }
+
+        events.add(batch.size());
+        settled.add(settledCount);
+        revenue.add(revenueSum);
+        duplicates.add(duplicateCount);
+        orphans.add(orphanCount);
+        unreachable.add(unreachableCount);
+        long elapsed = System.nanoTime() - startTime;
+        long max;
+        while (elapsed > (max = maxBatchNanos.get()) && !maxBatchNanos.compareAndSet(max, elapsed)) {
+            // 重试
+        }
+    }
+
+    /**
+     * 从队列中取出批次并处理，遇到空批次时结束
+     * @param queue 事件批次队列
+     */
+    public void consume(BlockingQueue<GateEventBatch> queue) throws InterruptedException {
+        while (true) {
+            GateEventBatch batch = queue.take();
+            if (batch.size() == 0) {
+                return;
+            }
+            process(batch);
+        }
+    }
+
+    /**
+     * 从文件读取刷卡事件并结算，每行格式为：卡号,站点,时间戳(毫秒),IN或OUT[,武汉通]
+     * @param filePath 事件文件路径
+     * @param batchSize 批次大小
+     * @param threads 结算线程数，事件按卡号分配给各线程
+     */
+    public void processFile(String filePath, int batchSize, int threads) throws IOException, InterruptedException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("线程数必须为正数: " + threads);
+        }
+        List<BlockingQueue<GateEventBatch>> queues = new ArrayList<>();
+        List<Thread> consumers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            BlockingQueue<GateEventBatch> queue = new ArrayBlockingQueue<>(16);
+            queues.add(queue);
+            Thread consumer = new Thread(() -> {
+                try {
+                    consume(queue);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "fare-settlement-" + i);
+            consumer.start();
+            consumers.add(consumer);
+        }
+
+        GateEventBatch[] batches = new GateEventBatch[threads];
+        for (int i = 0; i < threads; i++) {
+            batches[i] = new GateEventBatch(batchSize);
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                Station station = parts.length >= 4 ? subwaySystem.getStation(parts[1].trim()) : null;
+                if (station == null) {
+                    System.err.println("无法解析刷卡事件: " + line);
+                    continue;
+                }
+                long card;
+                long timestamp;
+                try {
+                    card = Long.parseLong(parts[0].trim());
+                    timestamp = Long.parseLong(parts[2].trim());
+                } catch (NumberFormatException e) {
+                    System.err.println("无法解析刷卡事件: " + line);
+                    continue;
+                }
+                int flags = "OUT".equalsIgnoreCase(parts[3].trim()) ? GateEventBatch.TAP_OUT : 0;
+                if (parts.length > 4 && "武汉通".equals(parts[4].trim())) {
+                    flags |= GateEventBatch.WUHAN_TONG;
+                }
+
+                int partition = (int) ((card & Long.MAX_VALUE) % threads);
+                GateEventBatch batch = batches[partition];
+                batch.add(card, station.getId(), timestamp, flags);
+                if (batch.isFull()) {
+                    queues.get(partition).put(batch);
+                    batches[partition] = new GateEventBatch(batchSize);
+                }
+            }
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                if (batches[i].size() > 0) {
+                    queues.get(i).put(batches[i]);
+                }
+                queues.get(i).put(new GateEventBatch(1));
+            }
+            for (Thread consumer : consumers) {
+                consumer.join();
+            }
+        }
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * 完成结算的行程数
+     */
+    public long getSettled() {
+        return settled.sum();
+    }
+
+    /**
+     * 结算总金额（分）
+     */
+    public long getRevenue() {
+        return revenue.sum();
+    }
+
+    /**
+     * 重复进站或重复出站的次数
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * 因时间顺序不符而丢弃的暂存记录数
+     */
+    public long getOrphans() {
+        return orphans.sum();
+    }
+
+    /**
+     * 进出站之间没有路径、无法计价的行程数
+     */
+    public long getUnreachable() {
+        return unreachable.sum();
+    }
+
+    /**
+     * 单个批次的最长处理时间（纳秒）
+     */
+    public long getMaxBatchNanos() {
+        return maxBatchNanos.get();
+    }
+
+    /**
+     * 参数：[事件文件] [线程数]，不指定文件时生成随机的进出站事件测试吞吐量
+     */
+    public static void main(String[] args) throws Exception {
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile("src/subway.txt");
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        if (args.length > 0) {
+            try (FareSettlement settlement = new FareSettlement(subwaySystem)) {
+                long start = System.nanoTime();
+                settlement.processFile(args[0], 4096, threads);
+                report(settlement, System.nanoTime() - start);
+            }
+            return;
+        }
+
+        int cards = 200_000;
+        int journeys = 2_000_000;
+        int batchSize = 4096;
+        int stationCount = subwaySystem.getStationCount();
+        for (boolean direct : new boolean[] {false, true}) {
+            // 按卡号分区生成事件，每张卡的行程按时间顺序排列
+            Random random = new Random(7);
+            List<List<GateEventBatch>> partitions = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                partitions.add(new ArrayList<>());
+            }
+            long[] clock = new long[cards];
+            for (int i = 0; i < journeys; i++) {
+                int card = random.nextInt(cards);
+                int entry = random.nextInt(stationCount);
+                int exit = random.nextInt(stationCount);
+                int flags = random.nextInt(3) == 0 ? 0 : GateEventBatch.WUHAN_TONG;
+                List<GateEventBatch> partition = partitions.get(card % threads);
+                GateEventBatch batch = partition.isEmpty() ? null : partition.get(partition.size() - 1);
+                if (batch == null || batch.size() + 2 > batchSize) {
+                    batch = new GateEventBatch(batchSize);
+                    partition.add(batch);
+                }
+                clock[card] += 60_000 + random.nextInt(3_600_000);
+                batch.add(card, entry, clock[card], flags);
+                clock[card] += 60_000 + random.nextInt(3_600_000);
+                batch.add(card, exit, clock[card], flags | GateEventBatch.TAP_OUT);
+            }
+
+            try (FareSettlement settlement = new FareSettlement(subwaySystem,
+                                                                new OpenJourneyMap(cards, threads * 4, direct))) {
+                List<Thread> workers = new ArrayList<>();
+                long start = System.nanoTime();
+                for (List<GateEventBatch> partition : partitions) {
+                    Thread worker = new Thread(() -> {
+                        for (GateEventBatch batch : partition) {
+                            settlement.process(batch);
+                        }
+                    });
+                    worker.start();
+                    workers.add(worker);
+                }
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                System.out.println(direct ? "堆外内存：" : "堆内存：");
+                report(settlement, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static void report(FareSettlement settlement, long elapsedNanos) {
+        System.out.println(String.format("事件数: %d，结算行程: %d，收入: %.2f元",
+            settlement.getEvents(), settlement.getSettled(), settlement.getRevenue() / 100.0));
+        System.out.println(String.format("重复刷卡: %d，丢弃记录: %d，无法计价: %d，未完成行程: %d",
+            settlement.getDuplicates(), settlement.getOrphans(), settlement.getUnreachable(),
+            settlement.getOpenJourneys().size()));
+        System.out.println(String.format("耗时: %.1f ms，吞吐量: %.0f 事件/秒，最长批次: %.2f ms，行程表内存: %d KB",
+            elapsedNanos / 1e6, settlement.getEvents() * 1e9 / elapsedNanos,
+            settlement.getMaxBatchNanos() / 1e6, settlement.getOpenJourneys().getMemoryUsage() / 1024));
+    }
+}
@@ -0,0 +1,85 @@
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 站点间票价表
+ *
+ * 按PricingSystem的规则，根据DistanceTable中的最短距离用FareKernels批量计算所有站点对的普通票价和武汉通票价，
+ * 以分为单位保存在int数组中，计价时只需查表。也可以是路由表快照（RoutingSnapshot）中票价部分的视图，不在堆上复制；
+ * 视图持有快照的一个引用，用完后调用close释放，堆上的表close不做任何操作。
+ */
+public class FareTable implements AutoCloseable {
+    private final int stationCount;
+    private final IntBuffer standardFares; // 进站编号*站点数+出站编号->普通票价（分），不可达时为-1
+    private final IntBuffer wuhanTongFares; // 进站编号*站点数+出站编号->武汉通票价（分），不可达时为-1
+    private final AtomicReference<RoutingSnapshot> snapshot; // 视图持有引用的快照，堆上的表或已经释放时为null
+
+    public FareTable(DistanceTable distanceTable, PricingSystem pricingSystem) {
+        stationCount = distanceTable.getStationCount();
+        int pairs = stationCount * stationCount;
+        double[] distances = new double[pairs];
+        distanceTable.copyDistances(distances);
+        int[] standard = new int[pairs];
+        int[] wuhanTong = new int[pairs];
+        new FareKernels(pricingSystem).calculateFareTable(distances, standard, wuhanTong, pairs);
+        standardFares = IntBuffer.wrap(standard);
+        wuhanTongFares = IntBuffer.wrap(wuhanTong);
+        snapshot = new AtomicReference<>();
+    }
+
+    /**
+     * 路由表快照的视图，直接读取快照的缓冲区，不复制
+     * @param stationCount 站点数
+     * @param standardFares 进站编号*站点数+出站编号->普通票价（分）
+     * @param wuhanTongFares 进站编号*站点数+出站编号->武汉通票价（分）
+     * @param snapshot 快照，视图接管调用者已经获得的一个引用，close时释放
+     */
+    FareTable(int stationCount, IntBuffer standardFares, IntBuffer wuhanTongFares, RoutingSnapshot snapshot) {
+        if (standardFares.capacity() != stationCount * stationCount
+                || wuhanTongFares.capacity() != stationCount * stationCount) {
+            throw new IllegalArgumentException("票价表大小与站点数不一致: " + standardFares.capacity());
+        }
+        this.stationCount = stationCount;
+        this.standardFares = standardFares;
+        this.wuhanTongFares = wuhanTongFares;
+        this.snapshot = new AtomicReference<>(snapshot);
+    }
+
+    /**
+     * 元换算为分
+     */
+    public static int toFen(double yuan) {
+        return (int) Math.round(yuan * 100);
+    }
+
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    /**
+     * 普通单程票价
+     * @return 票价（分），不可达时为-1
+     */
+    public int getStandardFare(int entryStation, int exitStation) {
+        return standardFares.get(entryStation * stationCount + exitStation);
+    }
+
+    /**
+     * 武汉通票价
+     * @return 票价（分），不可达时为-1
+     */
+    public int getWuhanTongFare(int entryStation, int exitStation) {
+        return wuhanTongFares.get(entryStation * stationCount + exitStation);
+    }
+
+    /**
+     * 释放视图持有的快照引用，之后不能再读取本表；重复调用和堆上的表不做任何操作
+     */
+    @Override
+    public void close() {
+        RoutingSnapshot owner = snapshot.getAndSet(null);
+        if (owner != null) {
+            owner.close();
+        }
+    }
+}
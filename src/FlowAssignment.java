@@ -0,0 +1,430 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 客流分配：把起讫点（OD）客流按最短路径分配到网络上，统计各区间、各线路和各换乘站的分时客流
+ *
+ * OD数据按起点分组，每个起点只计算一次最短路径树，再沿树回溯该起点所有OD的路径。
+ * 各起点在ForkJoinPool中并行处理，每个工作线程累加到自己的long计数数组，全部完成后再合并，计算过程中没有共享写入。
+ */
+public class FlowAssignment {
+    public static final int HOURS = 24;
+    private static final int ORIGINS_PER_TASK = 4;
+
+    private final SubwaySystem subwaySystem;
+    private final ForkJoinPool pool;
+
+    // OD数据，并行数组
+    private int[] origins = new int[1024];
+    private int[] destinations = new int[1024];
+    private int[] hours = new int[1024];
+    private long[] trips = new long[1024];
+    private int size;
+
+    public FlowAssignment(SubwaySystem subwaySystem) {
+        this(subwaySystem, ForkJoinPool.commonPool());
+    }
+
+    public FlowAssignment(SubwaySystem subwaySystem, ForkJoinPool pool) {
+        this.subwaySystem = subwaySystem;
+        this.pool = pool;
+    }
+
+    /**
+     * 添加一个OD单元
+     * @param origin 起点站编号
+     * @param destination 终点站编号
+     * @param hour 出发小时（0-23）
+     * @param count 客流人次
+     */
+    public void addTrips(int origin, int destination, int hour, long count) {
+        if (hour < 0 || hour >= HOURS) {
+            throw new IllegalArgumentException("无效的小时: " + hour);
+        }
+        if (size == origins.length) {
+            int capacity = size * 2;
+            origins = Arrays.copyOf(origins, capacity);
+            destinations = Arrays.copyOf(destinations, capacity);
+            hours = Arrays.copyOf(hours, capacity);
+            trips = Arrays.copyOf(trips, capacity);
+        }
+        origins[size] = origin;
+        destinations[size] = destination;
+        hours[size] = hour;
+        trips[size] = count;
+        size++;
+    }
+
+    /**
+     * 添加一个OD单元
+     * @param originName 起点站名称
+     * @param destinationName 终点站名称
+     * @param hour 出发小时（0-23）
+     * @param count 客流人次
+     */
+    public void addTrips(String originName, String destinationName, int hour, long count) {
+        Station origin = subwaySystem.getStation(originName);
+        Station destination = subwaySystem.getStation(destinationName);
+        if (origin == null) {
+            throw new IllegalArgumentException("起点站不存在: " + originName);
+        }
+        if (destination == null) {
+            throw new IllegalArgumentException("终点站不存在: " + destinationName);
+        }
+        addTrips(origin.getId(), destination.getId(), hour, count);
+    }
+
+    /**
+     * 从文件加载OD数据，每行格式为：起点站,终点站,小时,人次
+     * @param filePath OD文件路径
+     */
+    public void loadFromFile(String filePath) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length < 4) {
+                    System.err.println("无法解析OD数据: " + line);
+                    continue;
+                }
+                try {
+                    addTrips(parts[0].trim(), parts[1].trim(),
+                             Integer.parseInt(parts[2].trim()), Long.parseLong(parts[3].trim()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("无法解析OD数据: " + line + "（" + e.getMessage() + "）");
+                }
+            }
+        }
+    }
+
+    public int getCellCount() {
+        return size;
+    }
+
+    /**
+     * 执行客流分配
+     * @return 分配结果
+     */
+    public Result assign() {
+        NetworkGraph graph = subwaySystem.getNetworkGraph();
+        int stationCount = graph.getStationCount();
+
+        // 按起点分组（计数排序）
+        int[] originStart = new int[stationCount + 1];
+        for (int i = 0; i < size; i++) {
+            originStart[origins[i] + 1]++;
+        }
+        for (int i = 0; i < stationCount; i++) {
+            originStart[i + 1] += originStart[i];
+        }
+        int[] order = new int[size];
+        int[] fill = Arrays.copyOf(originStart, stationCount);
+        for (int i = 0; i < size; i++) {
+            order[fill[origins[i]]++] = i;
+        }
+        int activeCount = 0;
+        int[] activeOrigins = new int[stationCount];
+        for (int i = 0; i < stationCount; i++) {
+            if (originStart[i + 1] > originStart[i]) {
+                activeOrigins[activeCount++] = i;
+            }
+        }
+
+        Map<Thread, Worker> workers = new ConcurrentHashMap<>();
+        pool.invoke(new AssignTask(graph, workers, activeOrigins, 0, activeCount, originStart, order));
+
+        Result result = new Result(subwaySystem, graph);
+        for (Worker worker : workers.values()) {
+            result.merge(worker);
+        }
+        return result;
+    }
+
+    /**
+     * 处理一段起点的分配任务
+     */
+    private class AssignTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final NetworkGraph graph;
+        private final Map<Thread, Worker> workers;
+        private final int[] activeOrigins;
+        private final int from;
+        private final int to;
+        private final int[] originStart;
+        private final int[] order;
+
+        AssignTask(NetworkGraph graph, Map<Thread, Worker> workers, int[] activeOrigins,
+                   int from, int to, int[] originStart, int[] order) {
+            this.graph = graph;
+            this.workers = workers;
+            this.activeOrigins = activeOrigins;
+            this.from = from;
+            this.to = to;
+            this.originStart = originStart;
+            this.order = order;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ORIGINS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AssignTask(graph, workers, activeOrigins, from, middle, originStart, order),
+                          new AssignTask(graph, workers, activeOrigins, middle, to, originStart, order));
+                return;
+            }
+
+            Worker worker = workers.get(Thread.currentThread());
+            if (worker == null) {
+                worker = new Worker(graph);
+                workers.put(Thread.currentThread(), worker);
+            }
+            for (int i = from; i < to; i++) {
+                int origin = activeOrigins[i];
+                worker.tree.compute(origin);
+                for (int j = originStart[origin]; j < originStart[origin + 1]; j++) {
+                    int cell = order[j];
+                    worker.assign(destinations[cell], hours[cell], trips[cell]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 工作线程私有的最短路径树和计数数组
+     */
+    private static class Worker {
+        final NetworkGraph graph;
+        final ShortestPathTree tree;
+        final long[] edgeLoads; // 小时*边数+边编号->客流
+        final long[] lineBoardings; // 小时*线路数+线路编号->上车人次
+        final long[] transfers; // 小时*站点数+站点编号->换乘人次
+        long assigned;
+        long unassigned;
+
+        Worker(NetworkGraph graph) {
+            this.graph = graph;
+            this.tree = new ShortestPathTree(graph);
+            edgeLoads = new long[HOURS * graph.getEdgeCount()];
+            lineBoardings = new long[HOURS * graph.getLineCount()];
+            transfers = new long[HOURS * graph.getStationCount()];
+        }
+
+        /**
+         * 沿最短路径树从终点回溯，把客流累加到经过的边、线路和换乘站
+         */
+        void assign(int destination, int hour, long count) {
+            if (!tree.isReachable(destination)) {
+                unassigned += count;
+                return;
+            }
+            assigned += count;
+            int edgeBase = hour * graph.getEdgeCount();
+            int lineBase = hour * graph.getLineCount();
+            int stationBase = hour * graph.getStationCount();
+
+            int station = destination;
+            int nextLine = -1; // 离开当前站所乘坐的线路
+            int edge = tree.getPredecessorEdge(station);
+            while (edge >= 0) {
+                edgeLoads[edgeBase + edge] += count;
+                int line = graph.getLine(edge);
+                if (nextLine >= 0 && line != nextLine) {
+                    transfers[stationBase + station] += count;
+                    lineBoardings[lineBase + nextLine] += count;
+                }
+                nextLine = line;
+                station = graph.getSource(edge);
+                edge = tree.getPredecessorEdge(station);
+            }
+            if (nextLine >= 0) {
+                lineBoardings[lineBase + nextLine] += count;
+            }
+        }
+    }
+
+    /**
+     * 分配结果
+     */
+    public static class Result {
+        private final SubwaySystem subwaySystem;
+        private final NetworkGraph graph;
+        private final long[] edgeLoads;
+        private final long[] lineBoardings;
+        private final long[] transfers;
+        private long assigned;
+        private long unassigned;
+
+        Result(SubwaySystem subwaySystem, NetworkGraph graph) {
+            this.subwaySystem = subwaySystem;
+            this.graph = graph;
+            edgeLoads = new long[HOURS * graph.getEdgeCount()];
+            lineBoardings = new long[HOURS * graph.getLineCount()];
+            transfers = new long[HOURS * graph.getStationCount()];
+        }
+
+        void merge(Worker worker) {
+            add(edgeLoads, worker.edgeLoads);
+            add(lineBoardings, worker.lineBoardings);
+            add(transfers, worker.transfers);
+            assigned += worker.assigned;
+            unassigned += worker.unassigned;
+        }
+
+        private static void add(long[] target, long[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+
+        /**
+         * 某小时经过某条有向边的客流
+         */
+        public long getEdgeLoad(int edge, int hour) {
+            return edgeLoads[hour * graph.getEdgeCount() + edge];
+        }
+
+        /**
+         * 全天经过某条有向边的客流
+         */
+        public long getEdgeLoad(int edge) {
+            long total = 0;
+            for (int hour = 0; hour < HOURS; hour++) {
+                total += getEdgeLoad(edge, hour);
+            }
+            return total;
+        }
+
+        public long getLineBoardings(int line, int hour) {
+            return lineBoardings[hour * graph.getLineCount() + line];
+        }
+
+        public long getLineBoardings(int line) {
+            long total = 0;
+            for (int hour = 0; hour < HOURS; hour++) {
+                total += getLineBoardings(line, hour);
+            }
+            return total;
+        }
+
+        public long getTransfers(int station, int hour) {
+            return transfers[hour * graph.getStationCount() + station];
+        }
+
+        public long getTransfers(int station) {
+            long total = 0;
+            for (int hour = 0; hour < HOURS; hour++) {
+                total += getTransfers(station, hour);
+            }
+            return total;
+        }
+
+        /**
+         * 已分配的客流人次
+         */
+        public long getAssignedTrips() {
+            return assigned;
+        }
+
+        /**
+         * 起讫点之间没有路径、无法分配的客流人次
+         */
+        public long getUnassignedTrips() {
+            return unassigned;
+        }
+
+        /**
+         * 全天客流最大的若干条有向边
+         */
+        public int[] getBusiestEdges(int count) {
+            Integer[] edges = new Integer[graph.getEdgeCount()];
+            long[] totals = new long[edges.length];
+            for (int i = 0; i < edges.length; i++) {
+                edges[i] = i;
+                totals[i] = getEdgeLoad(i);
+            }
+            Arrays.sort(edges, (a, b) -> Long.compare(totals[b], totals[a]));
+            int[] result = new int[Math.min(count, edges.length)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = edges[i];
+            }
+            return result;
+        }
+
+        /**
+         * 边的描述，例如“宗关 -> 太平洋 (1号线)”
+         */
+        public String describeEdge(int edge) {
+            return subwaySystem.getStationById(graph.getSource(edge)).getName() + " -> "
+                + subwaySystem.getStationById(graph.getTarget(edge)).getName()
+                + " (" + subwaySystem.getLineById(graph.getLine(edge)).getName() + ")";
+        }
+    }
+
+    /**
+     * 参数：[OD文件]，不指定时生成覆盖所有站点对和24小时的随机OD矩阵
+     */
+    public static void main(String[] args) throws IOException {
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile("src/subway.txt");
+        FlowAssignment assignment = new FlowAssignment(subwaySystem);
+
+        long loadStart = System.nanoTime();
+        if (args.length > 0) {
+            assignment.loadFromFile(args[0]);
+        } else {
+            Random random = new Random(42);
+            int stationCount = subwaySystem.getStationCount();
+            for (int hour = 0; hour < HOURS; hour++) {
+                for (int origin = 0; origin < stationCount; origin++) {
+                    for (int destination = 0; destination < stationCount; destination++) {
+                        if (origin != destination) {
+                            assignment.addTrips(origin, destination, hour, random.nextInt(20));
+                        }
+                    }
+                }
+            }
+        }
+        long assignStart = System.nanoTime();
+        Result result = assignment.assign();
+        long end = System.nanoTime();
+
+        System.out.println("OD单元数: " + assignment.getCellCount());
+        System.out.println("已分配人次: " + result.getAssignedTrips() + "，无法分配: " + result.getUnassignedTrips());
+        System.out.println(String.format("读取耗时: %.1f ms，分配耗时: %.1f ms",
+            (assignStart - loadStart) / 1e6, (end - assignStart) / 1e6));
+
+        System.out.println("\n全天客流最大的区间：");
+        for (int edge : result.getBusiestEdges(10)) {
+            System.out.println(result.describeEdge(edge) + "：" + result.getEdgeLoad(edge));
+        }
+
+        List<Integer> transferStations = new ArrayList<>();
+        for (int i = 0; i < subwaySystem.getStationCount(); i++) {
+            if (result.getTransfers(i) > 0) {
+                transferStations.add(i);
+            }
+        }
+        transferStations.sort((a, b) -> Long.compare(result.getTransfers(b), result.getTransfers(a)));
+        System.out.println("\n换乘客流：");
+        for (int station : transferStations) {
+            System.out.println(subwaySystem.getStationById(station).getName() + "：" + result.getTransfers(station));
+        }
+    }
+}
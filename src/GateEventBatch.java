@@ -0,0 +1,81 @@
+import java.util.Arrays;
+
+/**
+ * 一批闸机刷卡事件，以并行的基本类型数组保存，批次对象可以清空后重复使用
+ */
+public class GateEventBatch {
+    /** 事件标志：出站（未设置时为进站） */
+    public static final int TAP_OUT = 1;
+    /** 事件标志：使用武汉通卡，按武汉通折扣计价 */
+    public static final int WUHAN_TONG = 2;
+
+    private long[] cards;
+    private int[] stations;
+    private long[] timestamps;
+    private byte[] flags;
+    private int size;
+
+    public GateEventBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("批次容量必须为正数: " + capacity);
+        }
+        cards = new long[capacity];
+        stations = new int[capacity];
+        timestamps = new long[capacity];
+        flags = new byte[capacity];
+    }
+
+    /**
+     * 添加一个事件
+     * @param card 卡号
+     * @param station 站点编号
+     * @param timestamp 刷卡时间（毫秒）
+     * @param flags TAP_OUT、WUHAN_TONG的组合
+     */
+    public void add(long card, int station, long timestamp, int flags) {
+        if (size == cards.length) {
+            int capacity = size * 2;
+            cards = Arrays.copyOf(cards, capacity);
+            stations = Arrays.copyOf(stations, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            this.flags = Arrays.copyOf(this.flags, capacity);
+        }
+        cards[size] = card;
+        stations[size] = station;
+        timestamps[size] = timestamp;
+        this.flags[size] = (byte) flags;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == cards.length;
+    }
+
+    public long getCard(int index) {
+        return cards[index];
+    }
+
+    public int getStation(int index) {
+        return stations[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public boolean isTapOut(int index) {
+        return (flags[index] & TAP_OUT) != 0;
+    }
+
+    public boolean isWuhanTong(int index) {
+        return (flags[index] & WUHAN_TONG) != 0;
+    }
+}
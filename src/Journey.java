@@ -0,0 +1,91 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按时刻表规划的行程，由若干乘车段组成
+ */
+public class Journey {
+    private final int departureTime; // 查询的出发时刻（当天秒数）
+    private final List<Leg> legs; // 乘车段
+
+    public Journey(int departureTime, List<Leg> legs) {
+        this.departureTime = departureTime;
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    public int getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * 到达终点的时刻（当天秒数）
+     */
+    public int getArrivalTime() {
+        return legs.isEmpty() ? departureTime : legs.get(legs.size() - 1).getArrivalTime();
+    }
+
+    public List<Leg> getLegs() {
+        return legs;
+    }
+
+    public int getTransferCount() {
+        return Math.max(0, legs.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("行程: ");
+        for (Leg leg : legs) {
+            sb.append("\n").append(leg);
+        }
+        sb.append("\n到达时间: ").append(Timetable.formatTime(getArrivalTime()));
+        sb.append("\n换乘次数: ").append(getTransferCount());
+        return sb.toString();
+    }
+
+    /**
+     * 乘车段：在某站上车，乘坐一条线路到另一站下车
+     */
+    public static class Leg {
+        private final Line line; // 乘坐的线路
+        private final Station boardStation; // 上车站
+        private final Station alightStation; // 下车站
+        private final int departureTime; // 上车站发车时刻
+        private final int arrivalTime; // 下车站到达时刻
+
+        public Leg(Line line, Station boardStation, Station alightStation, int departureTime, int arrivalTime) {
+            this.line = line;
+            this.boardStation = boardStation;
+            this.alightStation = alightStation;
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+        }
+
+        public Line getLine() {
+            return line;
+        }
+
+        public Station getBoardStation() {
+            return boardStation;
+        }
+
+        public Station getAlightStation() {
+            return alightStation;
+        }
+
+        public int getDepartureTime() {
+            return departureTime;
+        }
+
+        public int getArrivalTime() {
+            return arrivalTime;
+        }
+
+        @Override
+        public String toString() {
+            return Timetable.formatTime(departureTime) + " 从 " + boardStation.getName() + " 乘坐 " + line.getName()
+                + " 到 " + alightStation.getName() + " " + Timetable.formatTime(arrivalTime);
+        }
+    }
+}
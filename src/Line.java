@@ -5,11 +5,17 @@ import java.util.*;
  */
 public class Line {
     private String name; // 线路名称
+    private int id; // 线路编号，按加载顺序从0开始
     private List<Station> stations; // 该线路包含的站点
     private Map<String, Integer> stationIndices; // 站点名称到索引的映射
     
     public Line(String name) {
+        this(name, -1);
+    }
+    
+    public Line(String name, int id) {
         this.name = name;
+        this.id = id;
         this.stations = new ArrayList<>();
         this.stationIndices = new HashMap<>();
     }
@@ -18,6 +24,10 @@ public class Line {
         return name;
     }
     
+    public int getId() {
+        return id;
+    }
+    
     public void addStation(Station station) {
         stationIndices.put(station.getName(), stations.size());
         stations.add(station);
@@ -0,0 +1,725 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * 查询负载生成器
+ *
+ * 按固定速率（开环）向地铁系统发送查询：第i个查询的计划开始时间是 i/速率，不论之前的查询是否已经完成。
+ * 延迟从计划开始时间算起，所以系统变慢时排队等待的时间也计入延迟，不会因为发送方跟着变慢而低估延迟（协调遗漏）。
+ * 同时统计从实际开始时间算起的服务时间，两者的差别反映排队的程度。
+ *
+ * 查询来源可以是录制的查询日志，也可以是起点和终点按Zipf分布生成的查询；目标可以是进程内的SubwaySystem，
+ * 也可以是本地的SubwayServer。除延迟分位数外还报告吞吐量、内存分配速率和垃圾回收停顿。
+ *
+ * 查询日志每行格式：时间戳（毫秒）,类型,起点,终点，类型为shortest、routes、fare或nearby（nearby的终点为跳数，可省略）。
+ */
+public class LoadGenerator {
+    public static final int SHORTEST = 0;
+    public static final int ROUTES = 1;
+    public static final int FARE = 2;
+    public static final int NEARBY = 3;
+    private static final String[] TYPE_NAMES = {"shortest", "routes", "fare", "nearby"};
+    private static final double[] ZIPF_TYPE_MIX = {0.70, 0.10, 0.15, 0.05}; // 生成查询时各类型的比例
+    private static final int ROUTES_K = 3;
+
+    /**
+     * 一组查询，保存在按查询编号索引的数组中
+     */
+    public static class Workload {
+        private final long[] offsets; // 相对第一个查询的时间（纳秒），生成的查询为0
+        private final int[] types;
+        private final String[] origins;
+        private final String[] destinations;
+        private final int size;
+        private final boolean timed; // 是否带有录制时的时间
+
+        private Workload(long[] offsets, int[] types, String[] origins, String[] destinations, int size, boolean timed) {
+            if (size == 0) {
+                throw new IllegalArgumentException("没有可用的查询");
+            }
+            this.offsets = offsets;
+            this.types = types;
+            this.origins = origins;
+            this.destinations = destinations;
+            this.size = size;
+            this.timed = timed;
+        }
+
+        /**
+         * 读取查询日志，格式错误的行打印到标准错误并跳过
+         * @param filePath 日志文件路径
+         */
+        public static Workload loadLog(String filePath) throws IOException {
+            List<String[]> rows = new ArrayList<>();
+            List<Long> timestamps = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+                String line;
+                int lineNumber = 0;
+                long previous = Long.MIN_VALUE;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] parts = line.split(",", -1);
+                    try {
+                        if (parts.length < 3) {
+                            throw new IllegalArgumentException("字段数不足");
+                        }
+                        long timestamp = Long.parseLong(parts[0].trim());
+                        if (timestamp < previous) {
+                            throw new IllegalArgumentException("时间戳早于上一行");
+                        }
+                        parseType(parts[1].trim());
+                        previous = timestamp;
+                        timestamps.add(timestamp);
+                        rows.add(parts);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("查询日志第" + lineNumber + "行格式错误（" + e.getMessage() + "）: " + line);
+                    }
+                }
+            }
+            int size = rows.size();
+            long[] offsets = new long[size];
+            int[] types = new int[size];
+            String[] origins = new String[size];
+            String[] destinations = new String[size];
+            for (int i = 0; i < size; i++) {
+                String[] parts = rows.get(i);
+                offsets[i] = TimeUnit.MILLISECONDS.toNanos(timestamps.get(i) - timestamps.get(0));
+                types[i] = parseType(parts[1].trim());
+                origins[i] = parts[2].trim();
+                destinations[i] = parts.length > 3 ? parts[3].trim() : "";
+            }
+            return new Workload(offsets, types, origins, destinations, size, true);
+        }
+
+        /**
+         * 生成起点和终点都服从Zipf分布的查询：站点按随机顺序排名，排名为r的站点被选中的概率与1/r^exponent成正比
+         * @param subwaySystem 已加载数据的地铁系统
+         * @param size 查询个数
+         * @param exponent Zipf指数，越大越集中在少数热门站点
+         * @param seed 随机数种子
+         */
+        public static Workload zipf(SubwaySystem subwaySystem, int size, double exponent, long seed) {
+            int stationCount = subwaySystem.getStationCount();
+            if (stationCount < 2) {
+                throw new IllegalArgumentException("站点数不足，无法生成查询");
+            }
+            Random random = new Random(seed);
+            int[] ranking = new int[stationCount];
+            for (int i = 0; i < stationCount; i++) {
+                ranking[i] = i;
+            }
+            for (int i = stationCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int temp = ranking[i];
+                ranking[i] = ranking[j];
+                ranking[j] = temp;
+            }
+            double[] cumulative = new double[stationCount];
+            double sum = 0;
+            for (int rank = 0; rank < stationCount; rank++) {
+                sum += 1.0 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+
+            int[] types = new int[size];
+            String[] origins = new String[size];
+            String[] destinations = new String[size];
+            for (int i = 0; i < size; i++) {
+                int origin = ranking[sample(cumulative, random.nextDouble() * sum)];
+                int destination;
+                do {
+                    destination = ranking[sample(cumulative, random.nextDouble() * sum)];
+                } while (destination == origin);
+                types[i] = sampleType(random.nextDouble());
+                origins[i] = subwaySystem.getStationById(origin).getName();
+                destinations[i] = types[i] == NEARBY ? "1" : subwaySystem.getStationById(destination).getName();
+            }
+            return new Workload(new long[size], types, origins, destinations, size, false);
+        }
+
+        private static int sample(double[] cumulative, double value) {
+            int index = Arrays.binarySearch(cumulative, value);
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+
+        private static int sampleType(double value) {
+            for (int type = 0; type < ZIPF_TYPE_MIX.length - 1; type++) {
+                value -= ZIPF_TYPE_MIX[type];
+                if (value < 0) {
+                    return type;
+                }
+            }
+            return ZIPF_TYPE_MIX.length - 1;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isTimed() {
+            return timed;
+        }
+
+        /**
+         * 按录制时间回放时的总时长（纳秒）
+         */
+        public long getSpan() {
+            return offsets[size - 1];
+        }
+    }
+
+    private static int parseType(String name) {
+        for (int type = 0; type < TYPE_NAMES.length; type++) {
+            if (TYPE_NAMES[type].equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("未知的查询类型: " + name);
+    }
+
+    /**
+     * 查询目标
+     */
+    public interface Target {
+        /**
+         * 执行一个查询
+         * @return 查询是否成功得到结果
+         */
+        boolean execute(int type, String origin, String destination) throws Exception;
+    }
+
+    /**
+     * 直接调用进程内的SubwaySystem
+     */
+    public static Target inProcess(SubwaySystem subwaySystem) {
+        return (type, origin, destination) -> {
+            switch (type) {
+                case SHORTEST:
+                    return subwaySystem.findShortestPath(origin, destination) != null;
+                case ROUTES:
+                    return !subwaySystem.findKShortestPaths(origin, destination, ROUTES_K).isEmpty();
+                case FARE: {
+                    Path path = subwaySystem.findShortestPath(origin, destination);
+                    if (path == null) {
+                        return false;
+                    }
+                    subwaySystem.calculateFare(path);
+                    subwaySystem.calculateWuhanTongFare(path);
+                    return true;
+                }
+                default:
+                    subwaySystem.findStationsWithinDistance(origin, hops(destination));
+                    return true;
+            }
+        };
+    }
+
+    /**
+     * 通过HTTP请求SubwayServer的查询接口
+     * @param baseUrl 服务地址，如 http://127.0.0.1:8080
+     */
+    public static Target http(String baseUrl) {
+        return (type, origin, destination) -> {
+            String url;
+            if (type == NEARBY) {
+                url = baseUrl + "/api/nearby?station=" + URLEncoder.encode(origin, "UTF-8") + "&n=" + hops(destination);
+            } else {
+                url = baseUrl + (type == SHORTEST ? "/api/shortest" : type == ROUTES ? "/api/routes" : "/api/fare")
+                    + "?from=" + URLEncoder.encode(origin, "UTF-8") + "&to=" + URLEncoder.encode(destination, "UTF-8")
+                    + (type == ROUTES ? "&k=" + ROUTES_K : "");
+            }
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                byte[] buffer = new byte[4096];
+                while (in.read(buffer) >= 0) {
+                    // 读完响应体以便复用连接
+                }
+                in.close();
+            }
+            return status == 200;
+        };
+    }
+
+    private static int hops(String value) {
+        return value.isEmpty() ? 1 : Integer.parseInt(value);
+    }
+
+    /**
+     * 延迟直方图
+     *
+     * 每个2的幂区间等分为64个桶，记录的值与所在桶的上界相差不超过1/64，内存大小固定，与记录次数无关。
+     * 每个线程使用自己的直方图，结束后合并。
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 6;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long totalCount;
+        private long max;
+
+        public void record(long value) {
+            value = Math.max(0, value);
+            counts[index(value)]++;
+            totalCount++;
+            max = Math.max(max, value);
+        }
+
+        public void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            totalCount += other.totalCount;
+            max = Math.max(max, other.max);
+        }
+
+        private static int index(long value) {
+            if (value < 2 * SUB_BUCKETS) {
+                return (int) value;
+            }
+            // 右移后落在[64, 128)之间
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return shift * SUB_BUCKETS + (int) (value >>> shift);
+        }
+
+        private static long lowerBound(int index) {
+            if (index < 2 * SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            return (long) (index - shift * SUB_BUCKETS) << shift;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param p 分位，0到1之间
+         * @return 至少有p比例的记录不超过的值（所在桶的上界，不超过最大值）
+         */
+        public long getPercentile(double p) {
+            if (totalCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p * totalCount));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(max, lowerBound(i + 1) - 1);
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * 通过垃圾回收通知记录每次停顿的时长，跳过并发回收周期
+     */
+    private static final class GcMonitor implements NotificationListener, AutoCloseable {
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private long pauses;
+        private long totalPauseMillis;
+        private long maxPauseMillis;
+
+        GcMonitor() {
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (bean instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) bean;
+                    emitter.addNotificationListener(this, null, null);
+                    emitters.add(emitter);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            String name = info.getGcName();
+            if (name.contains("Concurrent") || name.contains("Cycles")) {
+                return;
+            }
+            long duration = info.getGcInfo().getDuration();
+            pauses++;
+            totalPauseMillis += duration;
+            maxPauseMillis = Math.max(maxPauseMillis, duration);
+        }
+
+        synchronized long getPauses() {
+            return pauses;
+        }
+
+        synchronized long getTotalPauseMillis() {
+            return totalPauseMillis;
+        }
+
+        synchronized long getMaxPauseMillis() {
+            return maxPauseMillis;
+        }
+
+        @Override
+        public void close() {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    // 已经移除
+                }
+            }
+        }
+    }
+
+    /**
+     * 一次运行的结果
+     */
+    public static class Report {
+        private final Histogram latency = new Histogram(); // 从计划开始时间算起
+        private final Histogram serviceTime = new Histogram(); // 从实际开始时间算起
+        private long errors;
+        private long elapsedNanos;
+        private double targetRate; // 每秒查询数，按录制时间回放时为0
+        private long allocatedBytes = -1; // 不支持统计时为-1
+        private long gcPauses;
+        private long gcPauseMillis;
+        private long maxGcPauseMillis;
+
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        public Histogram getServiceTime() {
+            return serviceTime;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getThroughput() {
+            return latency.getTotalCount() / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * 内存分配速率（字节/秒），不支持统计时为-1
+         */
+        public double getAllocationRate() {
+            return allocatedBytes < 0 ? -1 : allocatedBytes / (elapsedNanos / 1e9);
+        }
+
+        public void print() {
+            System.out.println(String.format("查询数: %d，失败: %d，耗时: %.1f 秒",
+                latency.getTotalCount(), errors, elapsedNanos / 1e9));
+            System.out.println(String.format("吞吐量: %.0f 查询/秒%s", getThroughput(),
+                targetRate > 0 ? String.format("（目标 %.0f 查询/秒）", targetRate) : "（按录制时间回放）"));
+            printPercentiles("延迟（含排队）", latency);
+            printPercentiles("服务时间", serviceTime);
+            System.out.println(allocatedBytes < 0 ? "内存分配速率: 不支持统计"
+                : String.format("内存分配速率: %.1f MB/秒", getAllocationRate() / (1 << 20)));
+            System.out.println(String.format("垃圾回收停顿: %d 次，共 %d ms，最长 %d ms",
+                gcPauses, gcPauseMillis, maxGcPauseMillis));
+        }
+
+        private static void printPercentiles(String title, Histogram histogram) {
+            System.out.println(String.format("%s p50: %.3f ms，p90: %.3f ms，p99: %.3f ms，p99.9: %.3f ms，最大: %.3f ms",
+                title, histogram.getPercentile(0.50) / 1e6, histogram.getPercentile(0.90) / 1e6,
+                histogram.getPercentile(0.99) / 1e6, histogram.getPercentile(0.999) / 1e6, histogram.getMax() / 1e6));
+        }
+    }
+
+    /**
+     * 按固定速率发送查询，查询用完后从头循环
+     * @param workload 查询
+     * @param target 查询目标
+     * @param rate 每秒查询数；不大于0时按查询日志中的时间回放（只回放一遍）
+     * @param durationNanos 持续时间（纳秒），按录制时间回放时不超过日志的时长
+     * @param threads 发送线程数，应足以覆盖“速率*最长延迟”个同时进行的查询
+     */
+    public static Report run(Workload workload, Target target, double rate, long durationNanos, int threads)
+            throws InterruptedException {
+        if (rate <= 0 && !workload.isTimed()) {
+            throw new IllegalArgumentException("生成的查询没有时间，必须指定速率");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("线程数必须大于0: " + threads);
+        }
+        long interval = rate > 0 ? Math.max(1, Math.round(1e9 / rate)) : 0;
+        long end = rate > 0 ? durationNanos : Math.min(durationNanos, workload.getSpan() + 1);
+        AtomicLong next = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        Report report = new Report();
+        report.targetRate = rate;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "load-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Histogram[]>> futures = new ArrayList<>();
+        Map<Long, Long> allocatedBefore;
+        try (GcMonitor gcMonitor = new GcMonitor()) {
+            // 先启动全部发送线程，再对分配统计取样
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> new Histogram[] {new Histogram(), new Histogram()}));
+            }
+            waitAll(futures);
+            futures.clear();
+            allocatedBefore = allocatedBytes();
+            long begin = System.nanoTime();
+
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    Histogram latency = new Histogram();
+                    Histogram serviceTime = new Histogram();
+                    while (true) {
+                        long i = next.getAndIncrement();
+                        if (rate <= 0 && i >= workload.size()) {
+                            break;
+                        }
+                        int index = (int) (i % workload.size());
+                        long intended = rate > 0 ? i * interval : workload.offsets[index];
+                        if (intended >= end) {
+                            break;
+                        }
+                        long scheduled = begin + intended;
+                        long wait;
+                        while ((wait = scheduled - System.nanoTime()) > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        long start = System.nanoTime();
+                        boolean ok;
+                        try {
+                            ok = target.execute(workload.types[index], workload.origins[index],
+                                                workload.destinations[index]);
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        long finish = System.nanoTime();
+                        if (!ok) {
+                            errors.incrementAndGet();
+                        }
+                        latency.record(finish - scheduled);
+                        serviceTime.record(finish - start);
+                    }
+                    return new Histogram[] {latency, serviceTime};
+                }));
+            }
+            for (Histogram[] histograms : waitAll(futures)) {
+                report.latency.add(histograms[0]);
+                report.serviceTime.add(histograms[1]);
+            }
+            report.elapsedNanos = System.nanoTime() - begin;
+            Map<Long, Long> allocatedAfter = allocatedBytes();
+            if (allocatedBefore != null && allocatedAfter != null) {
+                // 运行期间新建的线程（如服务端按需创建的处理线程）从0开始计算；运行期间已经结束的线程无法统计
+                long total = 0;
+                for (Map.Entry<Long, Long> entry : allocatedAfter.entrySet()) {
+                    Long before = allocatedBefore.get(entry.getKey());
+                    total += entry.getValue() - (before != null ? before : 0);
+                }
+                report.allocatedBytes = total;
+            }
+            report.gcPauses = gcMonitor.getPauses();
+            report.gcPauseMillis = gcMonitor.getTotalPauseMillis();
+            report.maxGcPauseMillis = gcMonitor.getMaxPauseMillis();
+        } finally {
+            executor.shutdownNow();
+        }
+        report.errors = errors.get();
+        return report;
+    }
+
+    private static <T> List<T> waitAll(List<Future<T>> futures) throws InterruptedException {
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 当前所有存活线程已分配的内存（字节），线程ID->分配量；不支持统计时返回null
+     */
+    private static Map<Long, Long> allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        long[] threadIds = threadBean.getAllThreadIds();
+        long[] allocated = threadBean.getThreadAllocatedBytes(threadIds);
+        Map<Long, Long> result = new HashMap<>();
+        for (int i = 0; i < threadIds.length; i++) {
+            // 取样期间结束的线程为-1
+            if (allocated[i] >= 0) {
+                result.put(threadIds[i], allocated[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 参数：
+     *   --target inprocess|http  查询目标，默认inprocess；http时启动内嵌的SubwayServer
+     *   --url 地址               请求已运行的服务，不启动内嵌服务
+     *   --log 文件               回放查询日志，不指定时生成Zipf分布的查询
+     *   --zipf 指数              Zipf指数，默认1.0
+     *   --rate 速率              每秒查询数，默认1000；回放日志时不指定则按录制时间回放
+     *   --duration 秒            持续时间，默认10
+     *   --warmup 秒              预热时间，默认2
+     *   --threads 线程数         发送线程数，默认64
+     *   --data 文件              线路数据文件，默认src/subway.txt
+     *   --cache 目录             预计算缓存目录
+     */
+    public static void main(String[] args) throws Exception {
+        String targetName = "inprocess";
+        String url = null;
+        String logFile = null;
+        double exponent = 1.0;
+        double rate = -1;
+        double seconds = 10;
+        double warmupSeconds = 2;
+        int threads = 64;
+        String dataFile = "src/subway.txt";
+        String cacheDirectory = null;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                System.err.println("缺少参数值: " + option);
+                return;
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--target":
+                    targetName = value;
+                    break;
+                case "--url":
+                    url = value;
+                    break;
+                case "--log":
+                    logFile = value;
+                    break;
+                case "--zipf":
+                    exponent = Double.parseDouble(value);
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(value);
+                    break;
+                case "--duration":
+                    seconds = Double.parseDouble(value);
+                    break;
+                case "--warmup":
+                    warmupSeconds = Double.parseDouble(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--data":
+                    dataFile = value;
+                    break;
+                case "--cache":
+                    cacheDirectory = value;
+                    break;
+                default:
+                    System.err.println("未知参数: " + option);
+                    return;
+            }
+        }
+
+        SubwaySystem subwaySystem = new SubwaySystem();
+        if (cacheDirectory != null) {
+            subwaySystem.setCacheDirectory(new File(cacheDirectory));
+        }
+        subwaySystem.loadFromFile(dataFile);
+
+        Workload workload = logFile != null ? Workload.loadLog(logFile)
+            : Workload.zipf(subwaySystem, 100_000, exponent, 1);
+        if (rate < 0) {
+            rate = workload.isTimed() ? 0 : 1000;
+        }
+
+        SubwayServer server = null;
+        Target target;
+        if (url != null) {
+            target = http(url);
+        } else if ("http".equals(targetName)) {
+            System.setProperty("http.maxConnections", String.valueOf(threads));
+            server = new SubwayServer(subwaySystem, 0);
+            server.start();
+            target = http("http://127.0.0.1:" + server.getPort());
+        } else if ("inprocess".equals(targetName)) {
+            target = inProcess(subwaySystem);
+        } else {
+            System.err.println("未知的查询目标: " + targetName);
+            return;
+        }
+
+        try {
+            System.out.println(String.format("查询来源: %s，目标: %s，线程数: %d",
+                logFile != null ? "日志 " + logFile + "（" + workload.size() + " 条）" : "Zipf(" + exponent + ")",
+                url != null ? url : targetName, threads));
+            if (warmupSeconds > 0) {
+                // 预热按目标速率（回放日志时按1000查询/秒）运行，结果丢弃
+                run(workload, target, rate > 0 ? rate : 1000, (long) (warmupSeconds * 1e9), threads);
+            }
+            Report report = run(workload, target, rate, (long) (seconds * 1e9), threads);
+            report.print();
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+}
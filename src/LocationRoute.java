@@ -0,0 +1,26 @@
+/**
+ * 从任意坐标出发的路线：先步行到进站站点，再乘地铁到终点
+ */
+public class LocationRoute {
+    private final Station entryStation; // 进站站点
+    private final double walkingDistance; // 步行直线距离（公里）
+    private final Path path; // 地铁路径
+
+    public LocationRoute(Station entryStation, double walkingDistance, Path path) {
+        this.entryStation = entryStation;
+        this.walkingDistance = walkingDistance;
+        this.path = path;
+    }
+
+    public Station getEntryStation() {
+        return entryStation;
+    }
+
+    public double getWalkingDistance() {
+        return walkingDistance;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * 邻近站点查询结果，以并行的int数组保存站点、线路和距离，不使用装箱类型
+ */
+public class NearbyStations {
+    private final SubwaySystem subwaySystem;
+    private final int[] stations; // 站点编号
+    private final int[] lines; // 所在线路编号
+    private final int[] hops; // 距离（站数）
+
+    public NearbyStations(SubwaySystem subwaySystem, int[] stations, int[] lines, int[] hops) {
+        this.subwaySystem = subwaySystem;
+        this.stations = stations;
+        this.lines = lines;
+        this.hops = hops;
+    }
+
+    public int size() {
+        return stations.length;
+    }
+
+    public int getStationId(int index) {
+        return stations[index];
+    }
+
+    public int getLineId(int index) {
+        return lines[index];
+    }
+
+    public int getHops(int index) {
+        return hops[index];
+    }
+
+    public String getStationName(int index) {
+        return subwaySystem.getStationById(stations[index]).getName();
+    }
+
+    public String getLineName(int index) {
+        return subwaySystem.getLineById(lines[index]).getName();
+    }
+}
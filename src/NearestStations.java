@@ -0,0 +1,24 @@
+/**
+ * 按坐标查询的站点结果，以并行数组保存站点编号和直线距离，按距离从近到远排列
+ */
+public class NearestStations {
+    private final int[] stations; // 站点编号
+    private final double[] distances; // 直线距离（公里）
+
+    public NearestStations(int[] stations, double[] distances) {
+        this.stations = stations;
+        this.distances = distances;
+    }
+
+    public int size() {
+        return stations.length;
+    }
+
+    public int getStationId(int index) {
+        return stations[index];
+    }
+
+    public double getDistance(int index) {
+        return distances[index];
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 站点k站邻域索引
+ *
+ * 对每个站点预先计算maxHops站以内的站点（与SubwaySystem.getStationsWithinDistance的广度优先搜索结果一致），
+ * 按站数从近到远存放在连续的int数组中，并记录每个站点各站数的结束位置。
+ * 查询n站以内的站点（n不超过maxHops）只需复制一段数组。
+ */
+public class NeighbourhoodIndex {
+    private final SubwaySystem subwaySystem;
+    private final int maxHops;
+    private final int[] stationOffsets; // 站点编号->该站邻域的起始位置，长度为站点数+1
+    private final int[] hopEnds; // 站点编号*maxHops+(站数-1)->该站数以内邻域的结束位置
+    private final int[] neighbourStations; // 邻域站点编号
+    private final int[] neighbourLines; // 邻域站点所在线路编号
+    private final int[] neighbourHops; // 邻域站点距离（站数）
+
+    public NeighbourhoodIndex(SubwaySystem subwaySystem, int maxHops) {
+        if (maxHops <= 0) {
+            throw new IllegalArgumentException("站数上限必须为正数: " + maxHops);
+        }
+        this.subwaySystem = subwaySystem;
+        this.maxHops = maxHops;
+        int stationCount = subwaySystem.getStationCount();
+        stationOffsets = new int[stationCount + 1];
+        hopEnds = new int[stationCount * maxHops];
+
+        int[][] stations = new int[stationCount][];
+        int[][] lines = new int[stationCount][];
+        int[][] hops = new int[stationCount][];
+        int total = 0;
+        for (int i = 0; i < stationCount; i++) {
+            List<Map.Entry<String, Map.Entry<String, Integer>>> entries =
+                subwaySystem.getStationsWithinDistance(subwaySystem.getStationById(i).getName(), maxHops);
+            stations[i] = new int[entries.size()];
+            lines[i] = new int[entries.size()];
+            hops[i] = new int[entries.size()];
+            for (int j = 0; j < entries.size(); j++) {
+                Map.Entry<String, Map.Entry<String, Integer>> entry = entries.get(j);
+                stations[i][j] = subwaySystem.getStation(entry.getKey()).getId();
+                lines[i][j] = subwaySystem.getLine(entry.getValue().getKey()).getId();
+                hops[i][j] = entry.getValue().getValue();
+            }
+            stationOffsets[i] = total;
+            total += entries.size();
+        }
+        stationOffsets[stationCount] = total;
+
+        neighbourStations = new int[total];
+        neighbourLines = new int[total];
+        neighbourHops = new int[total];
+        for (int i = 0; i < stationCount; i++) {
+            int offset = stationOffsets[i];
+            System.arraycopy(stations[i], 0, neighbourStations, offset, stations[i].length);
+            System.arraycopy(lines[i], 0, neighbourLines, offset, lines[i].length);
+            System.arraycopy(hops[i], 0, neighbourHops, offset, hops[i].length);
+            // 广度优先搜索的结果按站数从近到远排列
+            int position = offset;
+            for (int h = 1; h <= maxHops; h++) {
+                while (position < stationOffsets[i + 1] && neighbourHops[position] <= h) {
+                    position++;
+                }
+                hopEnds[i * maxHops + h - 1] = position;
+            }
+        }
+    }
+
+    public int getMaxHops() {
+        return maxHops;
+    }
+
+    /**
+     * 查询n站以内的站点
+     * @param station 站点编号
+     * @param n 距离（站数），不能超过maxHops
+     * @return 满足条件的站点
+     */
+    public NearbyStations query(int station, int n) {
+        if (n > maxHops) {
+            throw new IllegalArgumentException("站数超过索引上限" + maxHops + ": " + n);
+        }
+        int start = stationOffsets[station];
+        int end = n <= 0 ? start : hopEnds[station * maxHops + n - 1];
+        int count = end - start;
+        int[] stations = new int[count];
+        int[] lines = new int[count];
+        int[] hops = new int[count];
+        System.arraycopy(neighbourStations, start, stations, 0, count);
+        System.arraycopy(neighbourLines, start, lines, 0, count);
+        System.arraycopy(neighbourHops, start, hops, 0, count);
+        return new NearbyStations(subwaySystem, stations, lines, hops);
+    }
+
+    /**
+     * 查询n站以内、位于指定线路上的站点
+     * @param station 站点编号
+     * @param n 距离（站数），不能超过maxHops
+     * @param line 线路编号
+     * @return 满足条件的站点
+     */
+    public NearbyStations query(int station, int n, int line) {
+        if (n > maxHops) {
+            throw new IllegalArgumentException("站数超过索引上限" + maxHops + ": " + n);
+        }
+        int start = stationOffsets[station];
+        int end = n <= 0 ? start : hopEnds[station * maxHops + n - 1];
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (neighbourLines[i] == line) {
+                count++;
+            }
+        }
+        int[] stations = new int[count];
+        int[] lines = new int[count];
+        int[] hops = new int[count];
+        int index = 0;
+        for (int i = start; i < end; i++) {
+            if (neighbourLines[i] == line) {
+                stations[index] = neighbourStations[i];
+                lines[index] = line;
+                hops[index] = neighbourHops[i];
+                index++;
+            }
+        }
+        return new NearbyStations(subwaySystem, stations, lines, hops);
+    }
+}
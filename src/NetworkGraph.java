@@ -0,0 +1,128 @@
+import java.util.Map;
+
+/**
+ * 按站点编号索引的紧凑邻接表（CSR格式）
+ *
+ * 站点i的出边编号为 getFirstEdge(i) 到 getEdgeEnd(i)-1，边的顺序与Station.getAdjacentStations()的遍历顺序一致。
+ * 每条有向边有唯一编号，可以直接作为数组下标使用。创建后不可修改，可以在多个线程间共享。
+ */
+public class NetworkGraph {
+    private final int stationCount; // 站点数
+    private final int lineCount; // 线路数
+    private final int[] offsets; // 站点编号->第一条出边编号，长度为站点数+1
+    private final int[] sources; // 边编号->起点站编号
+    private final int[] targets; // 边编号->终点站编号
+    private final int[] lines; // 边编号->线路编号
+    private final double[] distances; // 边编号->距离（公里）
+
+    public NetworkGraph(SubwaySystem subwaySystem) {
+        stationCount = subwaySystem.getStationCount();
+        lineCount = subwaySystem.getLineCount();
+        offsets = new int[stationCount + 1];
+
+        int edgeCount = 0;
+        for (int i = 0; i < stationCount; i++) {
+            offsets[i] = edgeCount;
+            edgeCount += subwaySystem.getStationById(i).getAdjacentStations().size();
+        }
+        offsets[stationCount] = edgeCount;
+
+        sources = new int[edgeCount];
+        targets = new int[edgeCount];
+        lines = new int[edgeCount];
+        distances = new double[edgeCount];
+        for (int i = 0; i < stationCount; i++) {
+            int edge = offsets[i];
+            for (Map.Entry<Station, Edge> entry : subwaySystem.getStationById(i).getAdjacentStations().entrySet()) {
+                sources[edge] = i;
+                targets[edge] = entry.getKey().getId();
+                lines[edge] = entry.getValue().getLine().getId();
+                distances[edge] = entry.getValue().getDistance();
+                edge++;
+            }
+        }
+    }
+
+    /**
+     * 使用已经构造好的邻接表（例如网络分区中一个区域的子图）
+     * @param lineCount 线路数
+     * @param offsets 站点编号->第一条出边编号，长度为站点数+1
+     * @param sources 边编号->起点站编号
+     * @param targets 边编号->终点站编号
+     * @param lines 边编号->线路编号
+     * @param distances 边编号->距离（公里）
+     */
+    NetworkGraph(int lineCount, int[] offsets, int[] sources, int[] targets, int[] lines, double[] distances) {
+        int edgeCount = targets.length;
+        if (offsets.length == 0 || offsets[offsets.length - 1] != edgeCount || sources.length != edgeCount
+                || lines.length != edgeCount || distances.length != edgeCount) {
+            throw new IllegalArgumentException("邻接表数组长度不一致");
+        }
+        this.stationCount = offsets.length - 1;
+        this.lineCount = lineCount;
+        this.offsets = offsets;
+        this.sources = sources;
+        this.targets = targets;
+        this.lines = lines;
+        this.distances = distances;
+    }
+
+    public int getStationCount() {
+        return stationCount;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * 站点的第一条出边编号
+     */
+    public int getFirstEdge(int station) {
+        return offsets[station];
+    }
+
+    /**
+     * 站点最后一条出边编号加1
+     */
+    public int getEdgeEnd(int station) {
+        return offsets[station + 1];
+    }
+
+    public int getDegree(int station) {
+        return offsets[station + 1] - offsets[station];
+    }
+
+    public int getSource(int edge) {
+        return sources[edge];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public int getLine(int edge) {
+        return lines[edge];
+    }
+
+    public double getDistance(int edge) {
+        return distances[edge];
+    }
+
+    /**
+     * 查找两站之间的边
+     * @return 边编号，两站不相邻时返回-1
+     */
+    public int findEdge(int source, int target) {
+        for (int edge = offsets[source]; edge < offsets[source + 1]; edge++) {
+            if (targets[edge] == target) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+}
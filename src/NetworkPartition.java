@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按线路把网络划分为若干区域
+ *
+ * 每条线路属于一个区域，每条边（线路区间）属于其线路所在的区域。
+ * 一个站点属于其所有边所在的区域；属于多个区域的站点是边界站，跨区域的路径一定经过边界站。
+ *
+ * 划分时按边数从多到少依次放置线路，优先放入与之共用站点最多的区域（相互换乘的线路聚在一起，边界站较少），
+ * 同时限制每个区域的边数不超过平均值的BALANCE倍。划分结果只取决于网络图，不同进程对同一份数据得到相同的划分。
+ */
+public class NetworkPartition {
+    private static final double BALANCE = 1.25;
+
+    private final int regionCount;
+    private final int[] lineRegions; // 线路编号->区域编号
+    private final int[][] regionEdges; // 区域编号->边编号（升序）
+    private final int[][] regionStations; // 区域编号->站点编号（升序）
+    private final int[][] regionBoundaries; // 区域编号->该区域的边界站编号（升序）
+    private final int[] stationRegionOffsets; // 站点编号->在stationRegions中的起始位置，长度为站点数+1
+    private final int[] stationRegions; // 各站点所属的区域编号
+    private final int[] boundaryStations; // 所有边界站编号（升序）
+
+    /**
+     * @param graph 网络图
+     * @param lineRegions 线路编号->区域编号
+     * @param regionCount 区域数
+     */
+    public NetworkPartition(NetworkGraph graph, int[] lineRegions, int regionCount) {
+        if (lineRegions.length != graph.getLineCount()) {
+            throw new IllegalArgumentException("线路数不符: " + lineRegions.length);
+        }
+        for (int region : lineRegions) {
+            if (region < 0 || region >= regionCount) {
+                throw new IllegalArgumentException("区域编号超出范围: " + region);
+            }
+        }
+        this.regionCount = regionCount;
+        this.lineRegions = lineRegions.clone();
+
+        int stationCount = graph.getStationCount();
+        int edgeCount = graph.getEdgeCount();
+        int[] edgeCounts = new int[regionCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            edgeCounts[lineRegions[graph.getLine(edge)]]++;
+        }
+        regionEdges = new int[regionCount][];
+        for (int region = 0; region < regionCount; region++) {
+            regionEdges[region] = new int[edgeCounts[region]];
+        }
+        Arrays.fill(edgeCounts, 0);
+        boolean[][] inRegion = new boolean[regionCount][stationCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int region = lineRegions[graph.getLine(edge)];
+            regionEdges[region][edgeCounts[region]++] = edge;
+            inRegion[region][graph.getSource(edge)] = true;
+            inRegion[region][graph.getTarget(edge)] = true;
+        }
+
+        stationRegionOffsets = new int[stationCount + 1];
+        List<Integer> memberships = new ArrayList<>();
+        List<Integer> boundaries = new ArrayList<>();
+        for (int station = 0; station < stationCount; station++) {
+            stationRegionOffsets[station] = memberships.size();
+            for (int region = 0; region < regionCount; region++) {
+                if (inRegion[region][station]) {
+                    memberships.add(region);
+                }
+            }
+            if (memberships.size() - stationRegionOffsets[station] > 1) {
+                boundaries.add(station);
+            }
+        }
+        stationRegionOffsets[stationCount] = memberships.size();
+        stationRegions = toArray(memberships);
+        boundaryStations = toArray(boundaries);
+
+        regionStations = new int[regionCount][];
+        regionBoundaries = new int[regionCount][];
+        for (int region = 0; region < regionCount; region++) {
+            List<Integer> stations = new ArrayList<>();
+            List<Integer> regionBoundary = new ArrayList<>();
+            for (int station = 0; station < stationCount; station++) {
+                if (inRegion[region][station]) {
+                    stations.add(station);
+                    if (isBoundary(station)) {
+                        regionBoundary.add(station);
+                    }
+                }
+            }
+            regionStations[region] = toArray(stations);
+            regionBoundaries[region] = toArray(regionBoundary);
+        }
+    }
+
+    /**
+     * 按线路聚类划分
+     * @param graph 网络图
+     * @param regionCount 区域数，不超过线路数
+     */
+    public static NetworkPartition byLineClusters(NetworkGraph graph, int regionCount) {
+        int lineCount = graph.getLineCount();
+        int stationCount = graph.getStationCount();
+        if (regionCount <= 0 || regionCount > lineCount) {
+            throw new IllegalArgumentException("区域数必须在1到线路数（" + lineCount + "）之间: " + regionCount);
+        }
+
+        int[] lineEdgeCounts = new int[lineCount];
+        boolean[][] lineStations = new boolean[lineCount][stationCount];
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            int line = graph.getLine(edge);
+            lineEdgeCounts[line]++;
+            lineStations[line][graph.getSource(edge)] = true;
+            lineStations[line][graph.getTarget(edge)] = true;
+        }
+        Integer[] order = new Integer[lineCount];
+        for (int line = 0; line < lineCount; line++) {
+            order[line] = line;
+        }
+        Arrays.sort(order, (a, b) -> lineEdgeCounts[a] != lineEdgeCounts[b]
+            ? Integer.compare(lineEdgeCounts[b], lineEdgeCounts[a]) : Integer.compare(a, b));
+
+        long capacity = (long) Math.ceil(graph.getEdgeCount() * BALANCE / regionCount);
+        int[] lineRegions = new int[lineCount];
+        int[] regionEdgeCounts = new int[regionCount];
+        boolean[][] regionStations = new boolean[regionCount][stationCount];
+        int emptyRegions = regionCount;
+        for (int i = 0; i < lineCount; i++) {
+            int line = order[i];
+            // 剩余线路数等于空区域数时，必须放入空区域，保证每个区域至少有一条线路
+            boolean mustFillEmpty = lineCount - i <= emptyRegions;
+            int best = -1;
+            int bestShared = -1;
+            for (int region = 0; region < regionCount; region++) {
+                boolean empty = regionEdgeCounts[region] == 0;
+                if (mustFillEmpty && !empty) {
+                    continue;
+                }
+                if (!empty && regionEdgeCounts[region] + lineEdgeCounts[line] > capacity) {
+                    continue;
+                }
+                int shared = 0;
+                for (int station = 0; station < stationCount; station++) {
+                    if (lineStations[line][station] && regionStations[region][station]) {
+                        shared++;
+                    }
+                }
+                if (shared > bestShared
+                        || (shared == bestShared && regionEdgeCounts[region] < regionEdgeCounts[best])) {
+                    best = region;
+                    bestShared = shared;
+                }
+            }
+            if (best < 0) {
+                // 所有区域都已满，放入边数最少的区域
+                best = 0;
+                for (int region = 1; region < regionCount; region++) {
+                    if (regionEdgeCounts[region] < regionEdgeCounts[best]) {
+                        best = region;
+                    }
+                }
+            }
+            if (regionEdgeCounts[best] == 0) {
+                emptyRegions--;
+            }
+            lineRegions[line] = best;
+            regionEdgeCounts[best] += lineEdgeCounts[line];
+            for (int station = 0; station < stationCount; station++) {
+                regionStations[best][station] |= lineStations[line][station];
+            }
+        }
+        return new NetworkPartition(graph, lineRegions, regionCount);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    public int getRegionOfLine(int line) {
+        return lineRegions[line];
+    }
+
+    /**
+     * 区域内的边编号（升序），返回内部数组，调用者不能修改
+     */
+    public int[] getRegionEdges(int region) {
+        return regionEdges[region];
+    }
+
+    /**
+     * 区域内的站点编号（升序），返回内部数组，调用者不能修改
+     */
+    public int[] getRegionStations(int region) {
+        return regionStations[region];
+    }
+
+    /**
+     * 区域内的边界站编号（升序），返回内部数组，调用者不能修改
+     */
+    public int[] getRegionBoundaries(int region) {
+        return regionBoundaries[region];
+    }
+
+    /**
+     * 所有边界站编号（升序），返回内部数组，调用者不能修改
+     */
+    public int[] getBoundaryStations() {
+        return boundaryStations;
+    }
+
+    public boolean isBoundary(int station) {
+        return stationRegionOffsets[station + 1] - stationRegionOffsets[station] > 1;
+    }
+
+    /**
+     * 站点所属区域的个数，没有任何区间的站点为0
+     */
+    public int getStationRegionCount(int station) {
+        return stationRegionOffsets[station + 1] - stationRegionOffsets[station];
+    }
+
+    /**
+     * 站点所属的第i个区域（按区域编号升序）
+     */
+    public int getStationRegion(int station, int i) {
+        return stationRegions[stationRegionOffsets[station] + i];
+    }
+
+    public boolean isInRegion(int station, int region) {
+        for (int i = stationRegionOffsets[station]; i < stationRegionOffsets[station + 1]; i++) {
+            if (stationRegions[i] == region) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
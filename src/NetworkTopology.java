@@ -0,0 +1,303 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 网络连通性信息，在加载线路数据后计算
+ *
+ * 包括每个站点所属的连通分量编号、割点（关闭后会使网络断开的站点）和桥（关闭后会使网络断开的区间），
+ * 全部保存为按站点编号或边编号索引的数组。判断两站是否可达只需比较分量编号；
+ * 关闭单个站点或区间是否会使网络断开也只需O(1)，关闭多个时在受影响的分量内做一次搜索。
+ */
+public class NetworkTopology {
+    private final NetworkGraph graph;
+    private final int[] components; // 站点编号->连通分量编号
+    private final int[] componentSizes; // 连通分量编号->站点数
+    private final int largestComponent; // 站点最多的连通分量
+    private final boolean[] articulationPoints; // 站点编号->是否为割点
+    private final boolean[] bridges; // 边编号->是否为桥
+
+    public NetworkTopology(NetworkGraph graph) {
+        this.graph = graph;
+        int stationCount = graph.getStationCount();
+        components = new int[stationCount];
+        Arrays.fill(components, -1);
+
+        // 广度优先搜索标记连通分量
+        int[] queue = new int[stationCount];
+        List<Integer> sizes = new ArrayList<>();
+        for (int start = 0; start < stationCount; start++) {
+            if (components[start] >= 0) {
+                continue;
+            }
+            int component = sizes.size();
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            components[start] = component;
+            while (head < tail) {
+                int station = queue[head++];
+                for (int edge = graph.getFirstEdge(station); edge < graph.getEdgeEnd(station); edge++) {
+                    int next = graph.getTarget(edge);
+                    if (components[next] < 0) {
+                        components[next] = component;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            sizes.add(tail);
+        }
+        componentSizes = new int[sizes.size()];
+        int largest = -1;
+        for (int i = 0; i < componentSizes.length; i++) {
+            componentSizes[i] = sizes.get(i);
+            if (largest < 0 || componentSizes[i] > componentSizes[largest]) {
+                largest = i;
+            }
+        }
+        largestComponent = largest;
+
+        articulationPoints = new boolean[stationCount];
+        bridges = new boolean[graph.getEdgeCount()];
+        findArticulationPointsAndBridges();
+    }
+
+    /**
+     * 使用已经计算好的连通分量、割点和桥（例如从缓存中读取）
+     */
+    NetworkTopology(NetworkGraph graph, int[] components, boolean[] articulationPoints, boolean[] bridges) {
+        if (components.length != graph.getStationCount() || articulationPoints.length != graph.getStationCount()
+                || bridges.length != graph.getEdgeCount()) {
+            throw new IllegalArgumentException("连通性信息与网络图大小不一致");
+        }
+        this.graph = graph;
+        this.components = components;
+        this.articulationPoints = articulationPoints;
+        this.bridges = bridges;
+        int componentCount = 0;
+        for (int component : components) {
+            if (component < 0) {
+                throw new IllegalArgumentException("无效的连通分量编号: " + component);
+            }
+            componentCount = Math.max(componentCount, component + 1);
+        }
+        componentSizes = new int[componentCount];
+        for (int component : components) {
+            componentSizes[component]++;
+        }
+        int largest = -1;
+        for (int i = 0; i < componentCount; i++) {
+            if (largest < 0 || componentSizes[i] > componentSizes[largest]) {
+                largest = i;
+            }
+        }
+        largestComponent = largest;
+    }
+
+    /**
+     * 非递归的Tarjan算法求割点和桥
+     */
+    private void findArticulationPointsAndBridges() {
+        int stationCount = graph.getStationCount();
+        int[] discovery = new int[stationCount]; // 访问次序，从1开始，0表示未访问
+        int[] low = new int[stationCount];
+        int[] parent = new int[stationCount];
+        int[] cursor = new int[stationCount]; // 下一条待访问的边
+        int[] childCount = new int[stationCount];
+        int[] stack = new int[stationCount];
+        int time = 0;
+
+        for (int root = 0; root < stationCount; root++) {
+            if (discovery[root] != 0) {
+                continue;
+            }
+            int top = 0;
+            stack[top] = root;
+            parent[root] = -1;
+            discovery[root] = low[root] = ++time;
+            cursor[root] = graph.getFirstEdge(root);
+
+            while (top >= 0) {
+                int station = stack[top];
+                if (cursor[station] < graph.getEdgeEnd(station)) {
+                    int edge = cursor[station]++;
+                    int next = graph.getTarget(edge);
+                    if (discovery[next] == 0) {
+                        parent[next] = station;
+                        childCount[station]++;
+                        discovery[next] = low[next] = ++time;
+                        cursor[next] = graph.getFirstEdge(next);
+                        stack[++top] = next;
+                    } else if (next != parent[station]) {
+                        low[station] = Math.min(low[station], discovery[next]);
+                    }
+                    continue;
+                }
+
+                // station的所有边都已访问，回到父节点
+                top--;
+                int up = parent[station];
+                if (up < 0) {
+                    continue;
+                }
+                low[up] = Math.min(low[up], low[station]);
+                if (parent[up] >= 0 && low[station] >= discovery[up]) {
+                    articulationPoints[up] = true;
+                }
+                if (low[station] > discovery[up]) {
+                    bridges[graph.findEdge(up, station)] = true;
+                    bridges[graph.findEdge(station, up)] = true;
+                }
+            }
+            if (childCount[root] > 1) {
+                articulationPoints[root] = true;
+            }
+        }
+    }
+
+    public int getComponent(int station) {
+        return components[station];
+    }
+
+    public int getComponentCount() {
+        return componentSizes.length;
+    }
+
+    public int getComponentSize(int component) {
+        return componentSizes[component];
+    }
+
+    public int getLargestComponent() {
+        return largestComponent;
+    }
+
+    /**
+     * 两站之间是否存在路径
+     */
+    public boolean isConnected(int source, int target) {
+        return components[source] == components[target];
+    }
+
+    public boolean isArticulationPoint(int station) {
+        return articulationPoints[station];
+    }
+
+    public boolean isBridge(int edge) {
+        return bridges[edge];
+    }
+
+    /**
+     * 获取不在最大连通分量中的站点
+     */
+    public int[] getDisconnectedStations() {
+        int count = 0;
+        for (int component : components) {
+            if (component != largestComponent) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        int index = 0;
+        for (int station = 0; station < components.length; station++) {
+            if (components[station] != largestComponent) {
+                result[index++] = station;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 关闭一组站点后，其余站点原本连通的部分是否会断开
+     * @param closedStations 关闭的站点编号
+     */
+    public boolean isDisconnectedByStations(int[] closedStations) {
+        if (closedStations.length == 0) {
+            return false;
+        }
+        if (closedStations.length == 1) {
+            return articulationPoints[closedStations[0]];
+        }
+        boolean[] closed = new boolean[graph.getStationCount()];
+        for (int station : closedStations) {
+            closed[station] = true;
+        }
+        return isDisconnected(closed, null);
+    }
+
+    /**
+     * 关闭一组区间（边）后网络是否会断开
+     * @param closedEdges 关闭的边编号，双向区间需要同时给出两个方向的边
+     */
+    public boolean isDisconnectedByEdges(int[] closedEdges) {
+        if (closedEdges.length == 0) {
+            return false;
+        }
+        boolean[] closed = new boolean[graph.getEdgeCount()];
+        for (int edge : closedEdges) {
+            if (bridges[edge]) {
+                return true;
+            }
+            closed[edge] = true;
+        }
+        return isDisconnected(null, closed);
+    }
+
+    /**
+     * 在关闭站点或边之后，检查每个受影响的连通分量是否仍然连通
+     */
+    private boolean isDisconnected(boolean[] closedStations, boolean[] closedEdges) {
+        int stationCount = graph.getStationCount();
+        boolean[] affected = new boolean[componentSizes.length];
+        for (int station = 0; station < stationCount; station++) {
+            if (closedStations != null && closedStations[station]) {
+                affected[components[station]] = true;
+            }
+        }
+        if (closedEdges != null) {
+            for (int edge = 0; edge < closedEdges.length; edge++) {
+                if (closedEdges[edge]) {
+                    affected[components[graph.getSource(edge)]] = true;
+                }
+            }
+        }
+
+        boolean[] visited = new boolean[stationCount];
+        int[] queue = new int[stationCount];
+        for (int component = 0; component < affected.length; component++) {
+            if (!affected[component]) {
+                continue;
+            }
+            int open = 0;
+            int start = -1;
+            for (int station = 0; station < stationCount; station++) {
+                if (components[station] == component && (closedStations == null || !closedStations[station])) {
+                    open++;
+                    start = station;
+                }
+            }
+            if (open == 0) {
+                continue;
+            }
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            visited[start] = true;
+            while (head < tail) {
+                int station = queue[head++];
+                for (int edge = graph.getFirstEdge(station); edge < graph.getEdgeEnd(station); edge++) {
+                    int next = graph.getTarget(edge);
+                    if (visited[next] || (closedEdges != null && closedEdges[edge])
+                            || (closedStations != null && closedStations[next])) {
+                        continue;
+                    }
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+            if (tail < open) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
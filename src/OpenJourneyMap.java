@@ -0,0 +1,267 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 未完成行程表：卡号->进站（或先到达的出站）记录
+ *
+ * 使用开放定址（线性探测）的哈希表，每个槽位24字节，依次为卡号（long）、时间戳（long）和记录代码（int），
+ * 全部保存在ByteBuffer中，可以选择堆外内存（直接缓冲区），不为每条记录创建对象。
+ * 表按卡号哈希分成若干段，每段各自加锁和扩容，不同段之间的操作互不阻塞。
+ *
+ * 记录代码是由调用者编码的非零int，本类只使用其符号：正数表示进站记录，负数表示出站记录；0表示空槽位，不能作为代码。
+ */
+public class OpenJourneyMap {
+    /** exchange的结果：记录已保存，没有可以配对的记录 */
+    public static final int STORED = 0;
+    /** exchange的结果：与已有的相反方向记录配对，该记录已删除 */
+    public static final int MATCHED = 1;
+    /** exchange的结果：覆盖了同一方向的已有记录（重复进站或重复出站） */
+    public static final int REPLACED = 2;
+
+    private static final int SLOT_SIZE = 24;
+    private static final int TIME_OFFSET = 8;
+    private static final int CODE_OFFSET = 16;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final boolean direct;
+
+    /**
+     * @param expectedSize 预计同时存在的未完成行程数
+     * @param concurrency 段数（向上取整为2的幂），决定可以同时操作的线程数
+     * @param direct 是否使用堆外内存
+     */
+    public OpenJourneyMap(int expectedSize, int concurrency, boolean direct) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("预计大小不能为负数: " + expectedSize);
+        }
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("段数必须为正数: " + concurrency);
+        }
+        int segmentCount = 1;
+        while (segmentCount < concurrency) {
+            segmentCount <<= 1;
+        }
+        segments = new Segment[segmentCount];
+        segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+        this.direct = direct;
+        int perSegment = expectedSize / segmentCount + 1;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(capacityFor(perSegment), direct);
+        }
+    }
+
+    public OpenJourneyMap(int expectedSize) {
+        this(expectedSize, Runtime.getRuntime().availableProcessors() * 4, false);
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * 保存一条记录；如果该卡已有相反方向的记录，则删除并返回该记录
+     * @param card 卡号
+     * @param code 记录代码，非零，正数为进站，负数为出站，其余位的含义由调用者决定
+     * @param time 时间戳
+     * @param matched 配对成功时写入已有记录，[0]为记录代码，[1]为时间戳
+     * @return STORED、MATCHED或REPLACED
+     */
+    public int exchange(long card, int code, long time, long[] matched) {
+        if (code == 0) {
+            throw new IllegalArgumentException("记录代码不能为0");
+        }
+        long hash = mix(card);
+        Segment segment = segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+        synchronized (segment) {
+            return segment.exchange(card, (int) hash, code, time, matched);
+        }
+    }
+
+    /**
+     * 删除一张卡的记录
+     * @return 是否存在该记录
+     */
+    public boolean remove(long card) {
+        long hash = mix(card);
+        Segment segment = segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+        synchronized (segment) {
+            int slot = segment.find(card, (int) hash);
+            if (slot < 0) {
+                return false;
+            }
+            segment.delete(slot);
+            return true;
+        }
+    }
+
+    /**
+     * 当前记录数
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 占用的内存（字节）
+     */
+    public long getMemoryUsage() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += (long) segment.capacity * SLOT_SIZE;
+            }
+        }
+        return bytes;
+    }
+
+    private static int capacityFor(int size) {
+        // 装载因子不超过0.5
+        int capacity = 16;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * 64位哈希混合（MurmurHash3的finalizer），高位用于选择段，低位用于槽位
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * 一段哈希表，所有方法都在持有该段的锁时调用
+     */
+    private static final class Segment {
+        private final boolean direct;
+        private ByteBuffer slots;
+        private int capacity;
+        private int mask;
+        private int size;
+
+        Segment(int capacity, boolean direct) {
+            this.direct = direct;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            slots = direct ? ByteBuffer.allocateDirect(capacity * SLOT_SIZE)
+                           : ByteBuffer.allocate(capacity * SLOT_SIZE);
+            slots.order(ByteOrder.nativeOrder());
+        }
+
+        int find(long card, int hash) {
+            int slot = hash & mask;
+            while (true) {
+                int base = slot * SLOT_SIZE;
+                if (slots.getInt(base + CODE_OFFSET) == 0) {
+                    return -1;
+                }
+                if (slots.getLong(base) == card) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        int exchange(long card, int hash, int code, long time, long[] matched) {
+            int slot = hash & mask;
+            while (true) {
+                int base = slot * SLOT_SIZE;
+                int existing = slots.getInt(base + CODE_OFFSET);
+                if (existing == 0) {
+                    break;
+                }
+                if (slots.getLong(base) == card) {
+                    if ((existing > 0) != (code > 0)) {
+                        matched[0] = existing;
+                        matched[1] = slots.getLong(base + TIME_OFFSET);
+                        delete(slot);
+                        return MATCHED;
+                    }
+                    slots.putLong(base + TIME_OFFSET, time);
+                    slots.putInt(base + CODE_OFFSET, code);
+                    return REPLACED;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if ((size + 1) * 2 > capacity) {
+                resize();
+                slot = hash & mask;
+                while (slots.getInt(slot * SLOT_SIZE + CODE_OFFSET) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+            }
+            write(slot, card, time, code);
+            size++;
+            return STORED;
+        }
+
+        private void write(int slot, long card, long time, int code) {
+            int base = slot * SLOT_SIZE;
+            slots.putLong(base, card);
+            slots.putLong(base + TIME_OFFSET, time);
+            slots.putInt(base + CODE_OFFSET, code);
+        }
+
+        /**
+         * 删除槽位，并把后续探测链上的记录前移，不使用删除标记
+         */
+        void delete(int slot) {
+            size--;
+            int hole = slot;
+            int next = (slot + 1) & mask;
+            while (true) {
+                int base = next * SLOT_SIZE;
+                int code = slots.getInt(base + CODE_OFFSET);
+                if (code == 0) {
+                    break;
+                }
+                long card = slots.getLong(base);
+                int home = (int) mix(card) & mask;
+                // home不在(hole, next]之间时，该记录可以移到空位
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    write(hole, card, slots.getLong(base + TIME_OFFSET), code);
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            slots.putInt(hole * SLOT_SIZE + CODE_OFFSET, 0);
+        }
+
+        private void resize() {
+            ByteBuffer old = slots;
+            int oldCapacity = capacity;
+            allocate(capacity * 2);
+            for (int i = 0; i < oldCapacity; i++) {
+                int base = i * SLOT_SIZE;
+                int code = old.getInt(base + CODE_OFFSET);
+                if (code == 0) {
+                    continue;
+                }
+                long card = old.getLong(base);
+                int slot = (int) mix(card) & mask;
+                while (slots.getInt(slot * SLOT_SIZE + CODE_OFFSET) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                write(slot, card, old.getLong(base + TIME_OFFSET), code);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 并行的有界全路径搜索
+ *
+ * 在搜索树的前几层把每个分支拆分为ForkJoinPool任务（由工作窃取负责负载均衡），
+ * 更深的部分在每个任务内顺序搜索，使用线程本地的已访问位图和路径缓冲区，只为找到的路径创建对象。
+ * 各分支结果按边的顺序合并后再按CompactPath.compareTo稳定排序，因此结果与线程数和调度无关。
+ */
+public class ParallelPathSearch {
+    private static final int DEFAULT_SPLIT_DEPTH = 3;
+
+    // 每个工作线程复用的搜索缓冲区
+    private static final ThreadLocal<SearchBuffer> BUFFERS = new ThreadLocal<SearchBuffer>() {
+        @Override
+        protected SearchBuffer initialValue() {
+            return new SearchBuffer();
+        }
+    };
+
+    private final SubwaySystem subwaySystem;
+    private final ForkJoinPool pool;
+    private final int splitDepth;
+
+    /**
+     * 使用公共ForkJoinPool，在前3层拆分任务
+     */
+    public ParallelPathSearch(SubwaySystem subwaySystem) {
+        this(subwaySystem, ForkJoinPool.commonPool(), DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * @param subwaySystem 已加载数据的地铁系统
+     * @param pool 执行搜索的线程池
+     * @param splitDepth 拆分为并行任务的搜索树层数
+     */
+    public ParallelPathSearch(SubwaySystem subwaySystem, ForkJoinPool pool, int splitDepth) {
+        if (splitDepth < 0) {
+            throw new IllegalArgumentException("拆分层数不能为负数: " + splitDepth);
+        }
+        this.subwaySystem = subwaySystem;
+        this.pool = pool;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * 查找从起点到终点经过站点数不超过上限的所有无环路径
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @param maxStations 路径最多经过的站点数（含起点和终点）
+     * @return 按距离（相同时按换乘次数）排序的路径集合
+     */
+    public List<CompactPath> findAllPaths(String startName, String endName, int maxStations) {
+        Station startStation = subwaySystem.getStation(startName);
+        Station endStation = subwaySystem.getStation(endName);
+
+        if (startStation == null) {
+            throw new IllegalArgumentException("起点站不存在: " + startName);
+        }
+        if (endStation == null) {
+            throw new IllegalArgumentException("终点站不存在: " + endName);
+        }
+        if (maxStations <= 0) {
+            throw new IllegalArgumentException("站点数上限必须为正数: " + maxStations);
+        }
+
+        NetworkGraph graph = subwaySystem.getNetworkGraph();
+        CompactPath start = CompactPath.start(startStation.getId());
+        List<CompactPath> result = pool.invoke(new SearchTask(graph, endStation.getId(), maxStations, start, 0));
+        // 稳定排序，距离和换乘次数都相同的路径保持搜索顺序
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * 搜索以某个路径前缀开始的所有路径
+     */
+    private class SearchTask extends RecursiveTask<List<CompactPath>> {
+        private static final long serialVersionUID = 1L;
+
+        private final NetworkGraph graph;
+        private final int end;
+        private final int maxStations;
+        private final CompactPath prefix;
+        private final int depth;
+
+        SearchTask(NetworkGraph graph, int end, int maxStations, CompactPath prefix, int depth) {
+            this.graph = graph;
+            this.end = end;
+            this.maxStations = maxStations;
+            this.prefix = prefix;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<CompactPath> compute() {
+            List<CompactPath> result = new ArrayList<>();
+            int current = prefix.getLastStationId();
+            if (current == end) {
+                result.add(prefix);
+                return result;
+            }
+            if (prefix.getStationCount() >= maxStations) {
+                return result;
+            }
+            if (depth >= splitDepth) {
+                searchSequentially(result);
+                return result;
+            }
+
+            // 拆分阶段的前缀不超过splitDepth站，沿前缀判断站点是否已经访问
+            List<SearchTask> children = new ArrayList<>();
+            for (int edge = graph.getFirstEdge(current); edge < graph.getEdgeEnd(current); edge++) {
+                int next = graph.getTarget(edge);
+                if (!prefix.containsStation(next)) {
+                    CompactPath path = prefix.extend(next, graph.getLine(edge), graph.getDistance(edge));
+                    children.add(new SearchTask(graph, end, maxStations, path, depth + 1));
+                }
+            }
+            invokeAll(children);
+            // 按分支顺序合并
+            for (SearchTask child : children) {
+                result.addAll(child.join());
+            }
+            return result;
+        }
+
+        /**
+         * 使用线程本地缓冲区的非递归深度优先搜索
+         */
+        private void searchSequentially(List<CompactPath> result) {
+            SearchBuffer buffer = BUFFERS.get();
+            buffer.ensureCapacity(graph.getStationCount());
+            long[] visited = buffer.visited;
+            int[] edges = buffer.edges;
+            int[] cursors = buffer.cursors;
+
+            prefix.markStations(visited);
+
+            int base = prefix.getStationCount();
+            int first = prefix.getLastStationId();
+            int top = 0; // 当前路径在前缀之后又经过的边数
+            cursors[0] = graph.getFirstEdge(first);
+
+            while (top >= 0) {
+                int station = top == 0 ? first : graph.getTarget(edges[top - 1]);
+                if (cursors[top] == graph.getEdgeEnd(station)) {
+                    // 回溯
+                    if (top > 0) {
+                        visited[station >>> 6] &= ~(1L << station);
+                    }
+                    top--;
+                    continue;
+                }
+
+                int edge = cursors[top]++;
+                int next = graph.getTarget(edge);
+                if ((visited[next >>> 6] & (1L << next)) != 0) {
+                    continue;
+                }
+                if (next == end) {
+                    result.add(materialize(edges, top, edge));
+                    continue;
+                }
+                if (base + top + 1 >= maxStations) {
+                    continue;
+                }
+
+                edges[top] = edge;
+                visited[next >>> 6] |= 1L << next;
+                top++;
+                cursors[top] = graph.getFirstEdge(next);
+            }
+
+            prefix.clearStations(visited);
+        }
+
+        private CompactPath materialize(int[] edges, int count, int lastEdge) {
+            CompactPath path = prefix;
+            for (int i = 0; i < count; i++) {
+                int edge = edges[i];
+                path = path.extend(graph.getTarget(edge), graph.getLine(edge), graph.getDistance(edge));
+            }
+            return path.extend(graph.getTarget(lastEdge), graph.getLine(lastEdge), graph.getDistance(lastEdge));
+        }
+    }
+
+    /**
+     * 线程本地的搜索缓冲区
+     */
+    private static class SearchBuffer {
+        long[] visited = new long[0]; // 已访问站点位图，使用后恢复为全0
+        int[] edges = new int[0]; // 当前路径经过的边
+        int[] cursors = new int[0]; // 每层下一条待尝试的边
+
+        void ensureCapacity(int stationCount) {
+            int words = (stationCount + 63) >>> 6;
+            if (visited.length < words) {
+                visited = new long[words];
+            }
+            if (edges.length < stationCount + 1) {
+                edges = new int[stationCount + 1];
+                cursors = new int[stationCount + 1];
+            }
+        }
+    }
+}
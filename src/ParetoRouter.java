@@ -0,0 +1,316 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 多目标Pareto路径查询：同时考虑距离、换乘次数和票价档位
+ *
+ * 使用多标签的Dijkstra（label-setting）算法。每个标签压缩在一个long中：
+ * 高40位为距离（米），中间16位为换乘次数，低8位为票价档位，因此按long比较即按距离优先的字典序比较。
+ * 标签按（站点，到达线路）分组保存，新标签被同组或终点已有标签支配时直接丢弃，并删除同组中被它支配的标签。
+ *
+ * 票价档位是距离的非递减函数，所以结果中距离更长的路径一定换乘更少；
+ * 返回的集合中每条路径都不存在另一条距离、换乘次数和票价都不更差的路径。
+ */
+public class ParetoRouter {
+    private static final int DISTANCE_SHIFT = 24;
+    private static final int TRANSFER_SHIFT = 8;
+    private static final long TRANSFER_MASK = 0xFFFFL << TRANSFER_SHIFT;
+    private static final long TIER_MASK = 0xFFL;
+    private static final int DEFAULT_MAX_TRANSFERS = 6;
+
+    private final SubwaySystem subwaySystem;
+    private final int maxTransfers;
+
+    public ParetoRouter(SubwaySystem subwaySystem) {
+        this(subwaySystem, DEFAULT_MAX_TRANSFERS);
+    }
+
+    /**
+     * @param subwaySystem 已加载数据的地铁系统
+     * @param maxTransfers 换乘次数上限
+     */
+    public ParetoRouter(SubwaySystem subwaySystem, int maxTransfers) {
+        if (maxTransfers < 0 || maxTransfers > 0xFFFF) {
+            throw new IllegalArgumentException("无效的换乘次数上限: " + maxTransfers);
+        }
+        this.subwaySystem = subwaySystem;
+        this.maxTransfers = maxTransfers;
+    }
+
+    /**
+     * 查询两站之间的Pareto最优路径集合
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @return 按距离从短到长排列的路径，无法到达时为空
+     */
+    public List<Path> findParetoPaths(String startName, String endName) {
+        Station startStation = subwaySystem.getStation(startName);
+        Station endStation = subwaySystem.getStation(endName);
+
+        if (startStation == null) {
+            throw new IllegalArgumentException("起点站不存在: " + startName);
+        }
+        if (endStation == null) {
+            throw new IllegalArgumentException("终点站不存在: " + endName);
+        }
+
+        NetworkGraph graph = subwaySystem.getNetworkGraph();
+        PricingSystem pricingSystem = subwaySystem.getPricingSystem();
+        int target = endStation.getId();
+        int lineCount = graph.getLineCount();
+
+        Labels labels = new Labels();
+        LabelHeap heap = new LabelHeap();
+        // 各（站点，线路）组的标签，保存标签编号
+        int[][] bags = new int[graph.getStationCount() * lineCount][];
+        int[] bagSizes = new int[bags.length];
+        int[] targetBag = new int[4];
+        int targetSize = 0;
+
+        int first = labels.add(pack(0, 0, pricingSystem.getFareTier(0)), startStation.getId(), -1, -1);
+        heap.push(labels.words[first], first);
+
+        while (!heap.isEmpty()) {
+            int label = heap.pop();
+            if (labels.dead[label]) {
+                continue;
+            }
+            int station = labels.stations[label];
+            if (station == target) {
+                continue;
+            }
+            long word = labels.words[label];
+            long meters = word >>> DISTANCE_SHIFT;
+            int transfers = (int) ((word & TRANSFER_MASK) >>> TRANSFER_SHIFT);
+            int line = labels.lines[label];
+
+            for (int edge = graph.getFirstEdge(station); edge < graph.getEdgeEnd(station); edge++) {
+                int next = graph.getTarget(edge);
+                int edgeLine = graph.getLine(edge);
+                int nextTransfers = transfers + (line >= 0 && line != edgeLine ? 1 : 0);
+                if (nextTransfers > maxTransfers || labels.onPath(label, next)) {
+                    continue;
+                }
+                long nextMeters = meters + Math.round(graph.getDistance(edge) * 1000);
+                long nextWord = pack(nextMeters, nextTransfers, pricingSystem.getFareTier(nextMeters / 1000.0));
+
+                // 被终点已有的标签支配
+                if (dominatedBy(nextWord, labels, targetBag, targetSize)) {
+                    continue;
+                }
+                int bag = next == target ? -1 : next * lineCount + edgeLine;
+                if (bag >= 0) {
+                    if (bags[bag] == null) {
+                        bags[bag] = new int[4];
+                    }
+                    if (dominatedBy(nextWord, labels, bags[bag], bagSizes[bag])) {
+                        continue;
+                    }
+                    bagSizes[bag] = removeDominated(nextWord, labels, bags[bag], bagSizes[bag]);
+                } else {
+                    targetSize = removeDominated(nextWord, labels, targetBag, targetSize);
+                }
+
+                int created = labels.add(nextWord, next, edgeLine, label);
+                if (bag >= 0) {
+                    if (bagSizes[bag] == bags[bag].length) {
+                        bags[bag] = Arrays.copyOf(bags[bag], bagSizes[bag] * 2);
+                    }
+                    bags[bag][bagSizes[bag]++] = created;
+                    heap.push(nextWord, created);
+                } else {
+                    if (targetSize == targetBag.length) {
+                        targetBag = Arrays.copyOf(targetBag, targetSize * 2);
+                    }
+                    targetBag[targetSize++] = created;
+                }
+            }
+        }
+
+        int[] result = Arrays.copyOf(targetBag, targetSize);
+        long[] order = new long[targetSize];
+        for (int i = 0; i < targetSize; i++) {
+            order[i] = labels.words[result[i]];
+        }
+        List<Path> paths = new ArrayList<>();
+        for (int index : sortByWord(result, order)) {
+            paths.add(buildPath(labels, index));
+        }
+        return paths;
+    }
+
+    private static long pack(long meters, int transfers, int tier) {
+        return (meters << DISTANCE_SHIFT) | ((long) transfers << TRANSFER_SHIFT) | tier;
+    }
+
+    /**
+     * a是否支配b：三个目标都不更差
+     */
+    private static boolean dominates(long a, long b) {
+        return (a >>> DISTANCE_SHIFT) <= (b >>> DISTANCE_SHIFT)
+            && (a & TRANSFER_MASK) <= (b & TRANSFER_MASK)
+            && (a & TIER_MASK) <= (b & TIER_MASK);
+    }
+
+    private static boolean dominatedBy(long word, Labels labels, int[] bag, int size) {
+        for (int i = 0; i < size; i++) {
+            if (dominates(labels.words[bag[i]], word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 删除组中被新标签支配的标签
+     * @return 删除后组中剩余的标签数
+     */
+    private static int removeDominated(long word, Labels labels, int[] bag, int size) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int label = bag[i];
+            if (dominates(word, labels.words[label])) {
+                labels.dead[label] = true;
+            } else {
+                bag[kept++] = label;
+            }
+        }
+        return kept;
+    }
+
+    private static int[] sortByWord(int[] indices, long[] words) {
+        // 终点标签很少，直接插入排序
+        for (int i = 1; i < indices.length; i++) {
+            int index = indices[i];
+            long word = words[i];
+            int j = i - 1;
+            while (j >= 0 && words[j] > word) {
+                indices[j + 1] = indices[j];
+                words[j + 1] = words[j];
+                j--;
+            }
+            indices[j + 1] = index;
+            words[j + 1] = word;
+        }
+        return indices;
+    }
+
+    private Path buildPath(Labels labels, int label) {
+        int length = 0;
+        for (int current = label; current >= 0; current = labels.parents[current]) {
+            length++;
+        }
+        int[] stations = new int[length];
+        for (int current = label, i = length - 1; current >= 0; current = labels.parents[current], i--) {
+            stations[i] = labels.stations[current];
+        }
+        Path path = new Path();
+        path.addFirstStation(subwaySystem.getStationById(stations[0]));
+        for (int i = 1; i < length; i++) {
+            Station previous = subwaySystem.getStationById(stations[i - 1]);
+            Station station = subwaySystem.getStationById(stations[i]);
+            Edge edge = previous.getAdjacentStations().get(station);
+            path.addStation(station, edge.getLine(), edge.getDistance());
+        }
+        return path;
+    }
+
+    /**
+     * 标签存储，使用并行的基本类型数组
+     */
+    private static class Labels {
+        long[] words = new long[256];
+        int[] stations = new int[256];
+        int[] lines = new int[256];
+        int[] parents = new int[256];
+        boolean[] dead = new boolean[256];
+        int size;
+
+        int add(long word, int station, int line, int parent) {
+            if (size == words.length) {
+                int capacity = size * 2;
+                words = Arrays.copyOf(words, capacity);
+                stations = Arrays.copyOf(stations, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                dead = Arrays.copyOf(dead, capacity);
+            }
+            words[size] = word;
+            stations[size] = station;
+            lines[size] = line;
+            parents[size] = parent;
+            return size++;
+        }
+
+        /**
+         * 站点是否已在该标签对应的路径上（保证路径无环）
+         */
+        boolean onPath(int label, int station) {
+            for (int current = label; current >= 0; current = parents[current]) {
+                if (stations[current] == station) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 以标签值为键的二叉最小堆
+     */
+    private static class LabelHeap {
+        long[] keys = new long[256];
+        int[] values = new int[256];
+        int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(long key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int pop() {
+            int result = values[0];
+            size--;
+            long key = keys[size];
+            int value = values[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                values[i] = values[child];
+                i = child;
+            }
+            keys[i] = key;
+            values[i] = value;
+            return result;
+        }
+    }
+}
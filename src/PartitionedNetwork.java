@@ -0,0 +1,445 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分区网络上的最短路径查询
+ *
+ * 网络按NetworkPartition划分为若干区域，每个区域由一个RegionWorker（进程内的RegionGraph或远程的RemoteRegionWorker）负责，
+ * 本类只保存分区信息和边界站之间的覆盖图：覆盖图的边是同一区域内两个边界站之间的区域内最短距离，在构造时向各区域查询得到。
+ * 组装路径只需要站点、线路和区间表，构造时从SubwaySystem复制，不保留SubwaySystem和整个网络的图。
+ *
+ * 跨区域的最短路径由三段组成：起点到某个边界站（起点所在区域内）、边界站之间（覆盖图上的最短路径）、
+ * 边界站到终点（终点所在区域内）。起点和终点在同一区域时还要比较区域内的直接路径。
+ * 线路区间是双向的，边界站到终点的距离用终点到边界站的距离代替。
+ */
+public class PartitionedNetwork {
+    private final Station[] stations; // 站点编号->站点，只有名称和编号
+    private final Line[] lines; // 线路编号->线路，只有名称和编号
+    private final Map<String, Station> stationsByName;
+    // 边编号->终点站编号、线路编号和区间距离，用于把区域返回的边编号还原为路径中的区间
+    private final int[] edgeTargets;
+    private final int[] edgeLines;
+    private final double[] edgeDistances;
+    private final NetworkPartition partition;
+    private final RegionWorker[] workers; // 区域编号->区域查询
+    private final int[] boundaryStations;
+    private final int[] boundaryIndex; // 站点编号->边界站序号，不是边界站时为-1
+    private final double[] overlayDistances; // 边界站序号a*边界站数+b->区域内最短距离的最小值
+    private final int[] overlayRegions; // 取得最小值的区域，不相连时为-1
+
+    /**
+     * 向各区域查询边界站之间的距离，构造覆盖图
+     * @param subwaySystem 已加载数据的地铁系统，只在构造时使用
+     * @param partition 网络分区
+     * @param workers 每个区域一个查询实现，顺序不限
+     */
+    public PartitionedNetwork(SubwaySystem subwaySystem, NetworkPartition partition,
+                              List<? extends RegionWorker> workers) throws IOException {
+        NetworkGraph graph = subwaySystem.getNetworkGraph();
+        int stationCount = graph.getStationCount();
+        stations = new Station[stationCount];
+        stationsByName = new HashMap<>(stationCount * 2);
+        for (int id = 0; id < stationCount; id++) {
+            stations[id] = new Station(subwaySystem.getStationById(id).getName(), id);
+            stationsByName.put(stations[id].getName(), stations[id]);
+        }
+        lines = new Line[subwaySystem.getLineCount()];
+        for (int id = 0; id < lines.length; id++) {
+            lines[id] = new Line(subwaySystem.getLineById(id).getName(), id);
+        }
+        int edgeCount = graph.getEdgeCount();
+        edgeTargets = new int[edgeCount];
+        edgeLines = new int[edgeCount];
+        edgeDistances = new double[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            edgeTargets[edge] = graph.getTarget(edge);
+            edgeLines[edge] = graph.getLine(edge);
+            edgeDistances[edge] = graph.getDistance(edge);
+        }
+
+        this.partition = partition;
+        this.workers = new RegionWorker[partition.getRegionCount()];
+        for (RegionWorker worker : workers) {
+            int region = worker.getRegion();
+            if (region < 0 || region >= this.workers.length || this.workers[region] != null) {
+                throw new IllegalArgumentException("区域编号无效或重复: " + region);
+            }
+            this.workers[region] = worker;
+        }
+        for (int region = 0; region < this.workers.length; region++) {
+            if (this.workers[region] == null) {
+                throw new IllegalArgumentException("缺少区域" + region + "的查询实现");
+            }
+        }
+
+        boundaryStations = partition.getBoundaryStations();
+        boundaryIndex = new int[stationCount];
+        Arrays.fill(boundaryIndex, -1);
+        for (int i = 0; i < boundaryStations.length; i++) {
+            boundaryIndex[boundaryStations[i]] = i;
+        }
+        int boundaryCount = boundaryStations.length;
+        overlayDistances = new double[boundaryCount * boundaryCount];
+        overlayRegions = new int[boundaryCount * boundaryCount];
+        Arrays.fill(overlayDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(overlayRegions, -1);
+        for (int region = 0; region < this.workers.length; region++) {
+            int[] boundaries = partition.getRegionBoundaries(region);
+            for (int from : boundaries) {
+                double[] distances = this.workers[region].getDistances(from, boundaries);
+                for (int j = 0; j < boundaries.length; j++) {
+                    int index = boundaryIndex[from] * boundaryCount + boundaryIndex[boundaries[j]];
+                    if (boundaries[j] != from && distances[j] < overlayDistances[index]) {
+                        overlayDistances[index] = distances[j];
+                        overlayRegions[index] = region;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 在进程内为每个区域创建RegionGraph
+     * @param subwaySystem 已加载数据的地铁系统
+     * @param regionCount 区域数
+     */
+    public static PartitionedNetwork inProcess(SubwaySystem subwaySystem, int regionCount) throws IOException {
+        NetworkGraph graph = subwaySystem.getNetworkGraph();
+        NetworkPartition partition = NetworkPartition.byLineClusters(graph, regionCount);
+        List<RegionGraph> workers = new ArrayList<>();
+        for (int region = 0; region < regionCount; region++) {
+            workers.add(new RegionGraph(graph, partition, region));
+        }
+        return new PartitionedNetwork(subwaySystem, partition, workers);
+    }
+
+    public NetworkPartition getPartition() {
+        return partition;
+    }
+
+    public int getBoundaryCount() {
+        return boundaryStations.length;
+    }
+
+    /**
+     * 覆盖图的有向边数
+     */
+    public int getOverlayEdgeCount() {
+        int count = 0;
+        for (int region : overlayRegions) {
+            if (region >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 查询结果：距离和各段区域内路径（区域、起点、终点）
+     */
+    private static final class Route {
+        final double distance;
+        final int[] legs; // 每段三个int：区域编号、起点站编号、终点站编号
+
+        Route(double distance, int[] legs) {
+            this.distance = distance;
+            this.legs = legs;
+        }
+    }
+
+    private Route route(int source, int target) throws IOException {
+        if (source == target) {
+            return new Route(0, new int[0]);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        int directRegion = -1;
+        for (int i = 0; i < partition.getStationRegionCount(source); i++) {
+            int region = partition.getStationRegion(source, i);
+            if (partition.isInRegion(target, region)) {
+                double distance = workers[region].getDistances(source, new int[] {target})[0];
+                if (distance < best) {
+                    best = distance;
+                    directRegion = region;
+                }
+            }
+        }
+
+        // 覆盖图上的Dijkstra，初始距离为起点在所属区域内到各边界站的距离
+        int boundaryCount = boundaryStations.length;
+        double[] distances = new double[boundaryCount];
+        int[] entryRegions = new int[boundaryCount];
+        int[] previous = new int[boundaryCount];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(previous, -1);
+        for (int i = 0; i < partition.getStationRegionCount(source); i++) {
+            int region = partition.getStationRegion(source, i);
+            int[] boundaries = partition.getRegionBoundaries(region);
+            double[] fromSource = workers[region].getDistances(source, boundaries);
+            for (int j = 0; j < boundaries.length; j++) {
+                int index = boundaryIndex[boundaries[j]];
+                if (fromSource[j] < distances[index]) {
+                    distances[index] = fromSource[j];
+                    entryRegions[index] = region;
+                }
+            }
+        }
+        // 覆盖图较稠密（每个区域的边界站两两相连），使用O(n^2)的Dijkstra
+        boolean[] settled = new boolean[boundaryCount];
+        while (true) {
+            int current = -1;
+            for (int i = 0; i < boundaryCount; i++) {
+                if (!settled[i] && distances[i] != Double.POSITIVE_INFINITY
+                        && (current < 0 || distances[i] < distances[current])) {
+                    current = i;
+                }
+            }
+            if (current < 0) {
+                break;
+            }
+            settled[current] = true;
+            int row = current * boundaryCount;
+            for (int next = 0; next < boundaryCount; next++) {
+                double candidate = distances[current] + overlayDistances[row + next];
+                if (!settled[next] && candidate < distances[next]) {
+                    distances[next] = candidate;
+                    previous[next] = current;
+                }
+            }
+        }
+
+        int exitBoundary = -1;
+        int exitRegion = -1;
+        for (int i = 0; i < partition.getStationRegionCount(target); i++) {
+            int region = partition.getStationRegion(target, i);
+            int[] boundaries = partition.getRegionBoundaries(region);
+            double[] toTarget = workers[region].getDistances(target, boundaries);
+            for (int j = 0; j < boundaries.length; j++) {
+                int index = boundaryIndex[boundaries[j]];
+                double candidate = distances[index] + toTarget[j];
+                if (candidate < best) {
+                    best = candidate;
+                    exitBoundary = index;
+                    exitRegion = region;
+                }
+            }
+        }
+
+        List<int[]> legs = new ArrayList<>();
+        if (exitBoundary < 0) {
+            if (directRegion >= 0) {
+                legs.add(new int[] {directRegion, source, target});
+            }
+        } else {
+            // 从终点倒推
+            legs.add(new int[] {exitRegion, boundaryStations[exitBoundary], target});
+            int current = exitBoundary;
+            while (previous[current] >= 0) {
+                int from = previous[current];
+                legs.add(new int[] {overlayRegions[from * boundaryCount + current],
+                                    boundaryStations[from], boundaryStations[current]});
+                current = from;
+            }
+            legs.add(new int[] {entryRegions[current], source, boundaryStations[current]});
+        }
+        int[] flattened = new int[legs.size() * 3];
+        int count = 0;
+        for (int i = legs.size() - 1; i >= 0; i--) {
+            int[] leg = legs.get(i);
+            if (leg[1] != leg[2]) {
+                System.arraycopy(leg, 0, flattened, count, 3);
+                count += 3;
+            }
+        }
+        return new Route(best, Arrays.copyOf(flattened, count));
+    }
+
+    /**
+     * 两站之间的最短距离
+     * @param source 起点站点编号
+     * @param target 终点站点编号
+     * @return 距离（公里），不可达时为Double.POSITIVE_INFINITY
+     */
+    public double getDistance(int source, int target) throws IOException {
+        return route(source, target).distance;
+    }
+
+    /**
+     * 两站之间的最短距离
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @return 距离（公里），不可达时为Double.POSITIVE_INFINITY
+     */
+    public double getDistance(String startName, String endName) throws IOException {
+        return getDistance(stationId(startName, "起点站"), stationId(endName, "终点站"));
+    }
+
+    /**
+     * 查找最短路径，各段区域内路径由对应区域查询
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @return 最短路径，不可达时为null
+     */
+    public Path findShortestPath(String startName, String endName) throws IOException {
+        int source = stationId(startName, "起点站");
+        int target = stationId(endName, "终点站");
+        Route route = route(source, target);
+        if (route.distance == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        Path path = new Path();
+        path.addFirstStation(stations[source]);
+        for (int i = 0; i < route.legs.length; i += 3) {
+            int[] edges = workers[route.legs[i]].getPathEdges(route.legs[i + 1], route.legs[i + 2]);
+            for (int edge : edges) {
+                path.addStation(stations[edgeTargets[edge]], lines[edgeLines[edge]], edgeDistances[edge]);
+            }
+        }
+        return path;
+    }
+
+    private int stationId(String name, String role) {
+        Station station = stationsByName.get(name);
+        if (station == null) {
+            throw new IllegalArgumentException(role + "不存在: " + name);
+        }
+        return station.getId();
+    }
+
+    /**
+     * 加载整个网络并构造一个区域的子图；返回后整个网络不再被引用，区域服务进程只保留区域子图
+     */
+    private static RegionGraph loadRegion(String dataFile, int regionCount, int region) throws IOException {
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile(dataFile);
+        NetworkGraph graph = subwaySystem.getNetworkGraph();
+        return new RegionGraph(graph, NetworkPartition.byLineClusters(graph, regionCount), region);
+    }
+
+    /**
+     * 加载整个网络并构造协调端；返回后整个网络不再被引用，协调端只保留分区、覆盖图和组装路径用的表
+     */
+    private static PartitionedNetwork loadCoordinator(String dataFile, int regionCount,
+                                                      List<? extends RegionWorker> workers) throws IOException {
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile(dataFile);
+        NetworkPartition partition = NetworkPartition.byLineClusters(subwaySystem.getNetworkGraph(), regionCount);
+        return new PartitionedNetwork(subwaySystem, partition, workers);
+    }
+
+    /**
+     * 用法：
+     *   （无参数）                                    按线路划分为3个区域，分别用进程内和本机套接字的区域服务与整网结果对比
+     *   serve 数据文件 区域数 区域编号 端口            在本进程中提供一个区域的套接字服务
+     *   query 数据文件 区域数 主机:端口,... 起点 终点  连接各区域服务查询最短路径
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "serve".equals(args[0]) && args.length == 5) {
+            RegionGraph region = loadRegion(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            RegionWorkerServer server = new RegionWorkerServer(region, Integer.parseInt(args[4]));
+            server.start();
+            System.out.println(String.format("区域%d（%d个站点，%d条边）已在端口%d上提供服务",
+                region.getRegion(), region.getStationCount(), region.getEdgeCount(), server.getPort()));
+            Thread.currentThread().join();
+            return;
+        }
+        if (args.length > 0 && "query".equals(args[0]) && args.length == 6) {
+            List<RemoteRegionWorker> workers = new ArrayList<>();
+            try {
+                for (String address : args[3].split(",")) {
+                    workers.add(RemoteRegionWorker.connect(address.trim()));
+                }
+                PartitionedNetwork network = loadCoordinator(args[1], Integer.parseInt(args[2]), workers);
+                Path path = network.findShortestPath(args[4], args[5]);
+                System.out.println(path == null ? "两站之间不可达" : path.toString());
+            } finally {
+                for (RemoteRegionWorker worker : workers) {
+                    worker.close();
+                }
+            }
+            return;
+        }
+        if (args.length > 0) {
+            System.err.println("参数错误，用法见PartitionedNetwork.main的说明");
+            return;
+        }
+
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile("src/subway.txt");
+        NetworkGraph graph = subwaySystem.getNetworkGraph();
+        int regionCount = 3;
+        long start = System.nanoTime();
+        PartitionedNetwork local = inProcess(subwaySystem, regionCount);
+        System.out.println(String.format("进程内分区和覆盖图构造耗时 %.1f ms", (System.nanoTime() - start) / 1e6));
+        NetworkPartition partition = local.getPartition();
+        for (int region = 0; region < regionCount; region++) {
+            StringBuilder lines = new StringBuilder();
+            for (int line = 0; line < subwaySystem.getLineCount(); line++) {
+                if (partition.getRegionOfLine(line) == region) {
+                    lines.append(lines.length() > 0 ? "、" : "").append(subwaySystem.getLineById(line).getName());
+                }
+            }
+            System.out.println(String.format("区域%d: %d个站点，%d条边，%d个边界站（%s）", region,
+                partition.getRegionStations(region).length, partition.getRegionEdges(region).length,
+                partition.getRegionBoundaries(region).length, lines));
+        }
+        System.out.println(String.format("边界站 %d 个，覆盖图 %d 条边",
+            local.getBoundaryCount(), local.getOverlayEdgeCount()));
+
+        DistanceTable table = subwaySystem.getDistanceTable();
+        int n = graph.getStationCount();
+        double maxError = 0;
+        start = System.nanoTime();
+        for (int source = 0; source < n; source++) {
+            for (int target = 0; target < n; target++) {
+                maxError = Math.max(maxError, Math.abs(local.getDistance(source, target) - table.getDistance(source, target)));
+            }
+        }
+        System.out.println(String.format("进程内: %d 次查询耗时 %.1f ms，与整网距离的最大误差 %.2e",
+            n * n, (System.nanoTime() - start) / 1e6, maxError));
+
+        // 每个区域一个本机套接字服务
+        List<RegionWorkerServer> servers = new ArrayList<>();
+        List<RemoteRegionWorker> remotes = new ArrayList<>();
+        try {
+            for (int region = 0; region < regionCount; region++) {
+                RegionWorkerServer server = new RegionWorkerServer(new RegionGraph(graph, partition, region), 0);
+                server.start();
+                servers.add(server);
+                remotes.add(new RemoteRegionWorker("127.0.0.1", server.getPort()));
+            }
+            PartitionedNetwork remote = new PartitionedNetwork(subwaySystem, partition, remotes);
+            maxError = 0;
+            int queries = 0;
+            start = System.nanoTime();
+            for (int source = 0; source < n; source += 7) {
+                for (int target = 0; target < n; target += 5) {
+                    maxError = Math.max(maxError,
+                        Math.abs(remote.getDistance(source, target) - table.getDistance(source, target)));
+                    queries++;
+                }
+            }
+            System.out.println(String.format("套接字: %d 次查询耗时 %.1f ms，与整网距离的最大误差 %.2e",
+                queries, (System.nanoTime() - start) / 1e6, maxError));
+
+            String[][] samples = {{"光谷广场", "中南路"}, {"径河", "汉口北"}, {"常青花园", "钟家村"}};
+            for (String[] sample : samples) {
+                Path path = remote.findShortestPath(sample[0], sample[1]);
+                Path expected = subwaySystem.findShortestPath(sample[0], sample[1]);
+                System.out.println(String.format("%s -> %s: 分区 %.2f 公里，整网 %.2f 公里",
+                    sample[0], sample[1], path.getTotalDistance(), expected.getTotalDistance()));
+            }
+        } finally {
+            table.close();
+            for (RemoteRegionWorker worker : remotes) {
+                worker.close();
+            }
+            for (RegionWorkerServer server : servers) {
+                server.close();
+            }
+        }
+    }
+}
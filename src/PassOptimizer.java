@@ -0,0 +1,517 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 定期票优化：根据每张卡的乘车记录，计算单程票、武汉通和1日票/3日票/7日票组合的最低花费
+ *
+ * 每次乘车的票价从FareTable查出（可能是路由表快照的视图，用完后调用close释放），按天汇总后在乘车日期上做动态规划：
+ * 第i个乘车日的最低花费为以下几种方案中的最小值——当天按次付费，或购买一张覆盖当天的1/3/7日票
+ * （定期票覆盖的日期以双指针维护）。单张卡的时间复杂度与乘车记录数成线性关系。
+ *
+ * 乘车记录以流的方式读入，每读满一组卡就交给线程池处理；线程池的队列有上限，读取速度超过处理速度时由读取线程自己处理。
+ */
+public class PassOptimizer implements AutoCloseable {
+    /** 定期票类型 */
+    public static final String[] PASS_TYPES = {"1日票", "3日票", "7日票"};
+    /** 定期票覆盖的天数 */
+    private static final int[] PASS_DAYS = {1, 3, 7};
+    private static final int CARDS_PER_TASK = 256;
+
+    private final SubwaySystem subwaySystem;
+    private final FareTable fareTable;
+    private final int[] passFares; // 定期票价格（分）
+
+    public PassOptimizer(SubwaySystem subwaySystem) {
+        this.subwaySystem = subwaySystem;
+        this.fareTable = subwaySystem.getFareTable();
+        passFares = new int[PASS_TYPES.length];
+        for (int i = 0; i < PASS_TYPES.length; i++) {
+            passFares[i] = FareTable.toFen(subwaySystem.getPricingSystem().calculateDayPassFare(PASS_TYPES[i]));
+        }
+    }
+
+    /**
+     * 一张卡的乘车记录
+     */
+    public static class TripHistory {
+        private final long card;
+        private int[] days = new int[8];
+        private int[] entryStations = new int[8];
+        private int[] exitStations = new int[8];
+        private int size;
+
+        public TripHistory(long card) {
+            this.card = card;
+        }
+
+        /**
+         * 添加一次乘车
+         * @param day 乘车日期（从1970-01-01起的天数，或任意连续编号的日期）
+         * @param entryStation 进站站点编号
+         * @param exitStation 出站站点编号
+         */
+        public void add(int day, int entryStation, int exitStation) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                entryStations = Arrays.copyOf(entryStations, size * 2);
+                exitStations = Arrays.copyOf(exitStations, size * 2);
+            }
+            days[size] = day;
+            entryStations[size] = entryStation;
+            exitStations[size] = exitStation;
+            size++;
+        }
+
+        public long getCard() {
+            return card;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * 一张卡的最优购票方案
+     */
+    public static class Plan {
+        private final long card;
+        private final long singleTicketCost;
+        private final long wuhanTongCost;
+        private final long optimalCost;
+        private final int[] passStartDays;
+        private final int[] passTypes;
+
+        Plan(long card, long singleTicketCost, long wuhanTongCost, long optimalCost,
+             int[] passStartDays, int[] passTypes) {
+            this.card = card;
+            this.singleTicketCost = singleTicketCost;
+            this.wuhanTongCost = wuhanTongCost;
+            this.optimalCost = optimalCost;
+            this.passStartDays = passStartDays;
+            this.passTypes = passTypes;
+        }
+
+        public long getCard() {
+            return card;
+        }
+
+        /**
+         * 全部使用普通单程票的花费（分）
+         */
+        public long getSingleTicketCost() {
+            return singleTicketCost;
+        }
+
+        /**
+         * 全部使用武汉通的花费（分）
+         */
+        public long getWuhanTongCost() {
+            return wuhanTongCost;
+        }
+
+        /**
+         * 最优方案的花费（分）
+         */
+        public long getOptimalCost() {
+            return optimalCost;
+        }
+
+        /**
+         * 与按次付费（单程票和武汉通中较便宜的一种）相比节省的金额（分）
+         */
+        public long getSavings() {
+            return Math.min(singleTicketCost, wuhanTongCost) - optimalCost;
+        }
+
+        public int getPassCount() {
+            return passTypes.length;
+        }
+
+        /**
+         * 第i张定期票的生效日期
+         */
+        public int getPassStartDay(int i) {
+            return passStartDays[i];
+        }
+
+        /**
+         * 第i张定期票的类型，对应PASS_TYPES的下标
+         */
+        public int getPassType(int i) {
+            return passTypes[i];
+        }
+    }
+
+    /**
+     * 方案监听器，可能被多个线程同时调用
+     */
+    public interface PlanListener {
+        void onPlan(Plan plan);
+    }
+
+    /**
+     * 释放票价表持有的路由表快照引用，之后不能再计算
+     */
+    @Override
+    public void close() {
+        fareTable.close();
+    }
+
+    /**
+     * 计算一张卡的最优购票方案
+     * @param history 乘车记录
+     * @return 最优方案，有无法计价的行程时这些行程不计入
+     */
+    public Plan optimize(TripHistory history) {
+        int size = history.size;
+        // 按日期排序，日期相同时顺序无关
+        long[] keys = new long[size];
+        long singleTicketCost = 0;
+        long wuhanTongCost = 0;
+        for (int i = 0; i < size; i++) {
+            int standard = fareTable.getStandardFare(history.entryStations[i], history.exitStations[i]);
+            int wuhanTong = fareTable.getWuhanTongFare(history.entryStations[i], history.exitStations[i]);
+            if (standard < 0) {
+                standard = 0;
+                wuhanTong = 0;
+            }
+            singleTicketCost += standard;
+            wuhanTongCost += wuhanTong;
+            keys[i] = ((long) history.days[i] << 32) | Math.min(standard, wuhanTong);
+        }
+        Arrays.sort(keys);
+
+        // 按天汇总按次付费的最低花费
+        int[] days = new int[size];
+        long[] dayCosts = new long[size];
+        int dayCount = 0;
+        for (int i = 0; i < size; i++) {
+            int day = (int) (keys[i] >> 32);
+            int fare = (int) keys[i];
+            if (dayCount == 0 || days[dayCount - 1] != day) {
+                days[dayCount++] = day;
+            }
+            dayCosts[dayCount - 1] += fare;
+        }
+
+        // cost[i]为前i个乘车日的最低花费，choice[i]为第i个乘车日采用的方案（-1为按次付费，否则为定期票类型）
+        long[] cost = new long[dayCount + 1];
+        int[] choice = new int[dayCount + 1];
+        int[] previous = new int[dayCount + 1];
+        int[] pointers = new int[PASS_DAYS.length];
+        for (int i = 1; i <= dayCount; i++) {
+            int day = days[i - 1];
+            cost[i] = cost[i - 1] + dayCosts[i - 1];
+            choice[i] = -1;
+            previous[i] = i - 1;
+            for (int type = 0; type < PASS_DAYS.length; type++) {
+                // 定期票覆盖(day - 天数, day]，pointers[type]为第一个在覆盖范围内的乘车日
+                while (days[pointers[type]] <= day - PASS_DAYS[type]) {
+                    pointers[type]++;
+                }
+                long candidate = cost[pointers[type]] + passFares[type];
+                if (candidate < cost[i]) {
+                    cost[i] = candidate;
+                    choice[i] = type;
+                    previous[i] = pointers[type];
+                }
+            }
+        }
+
+        int passCount = 0;
+        for (int i = dayCount; i > 0; i = previous[i]) {
+            if (choice[i] >= 0) {
+                passCount++;
+            }
+        }
+        int[] passStartDays = new int[passCount];
+        int[] passTypes = new int[passCount];
+        int index = passCount;
+        for (int i = dayCount; i > 0; i = previous[i]) {
+            if (choice[i] >= 0) {
+                index--;
+                passTypes[index] = choice[i];
+                passStartDays[index] = days[i - 1] - PASS_DAYS[choice[i]] + 1;
+            }
+        }
+        return new Plan(history.card, singleTicketCost, wuhanTongCost, cost[dayCount], passStartDays, passTypes);
+    }
+
+    /**
+     * 并行计算一系列卡的最优方案
+     * @param source 乘车记录来源，返回null表示结束；只在调用线程中读取
+     * @param threads 线程数
+     * @param listener 方案监听器，可以为null
+     * @return 汇总结果
+     * @throws IllegalStateException 某张卡的计算或监听器抛出异常时，原异常为cause
+     */
+    public Summary optimizeAll(Supplier<TripHistory> source, int threads, PlanListener listener)
+            throws InterruptedException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("线程数必须为正数: " + threads);
+        }
+        Summary summary = new Summary();
+        AtomicReference<Throwable> failure = new AtomicReference<>(); // 第一个失败的任务抛出的异常
+        ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            List<TripHistory> chunk = new ArrayList<>(CARDS_PER_TASK);
+            TripHistory history;
+            // 有任务失败后不再读取和提交
+            while (failure.get() == null && (history = source.get()) != null) {
+                chunk.add(history);
+                if (chunk.size() == CARDS_PER_TASK) {
+                    submit(executor, chunk, summary, listener, failure);
+                    chunk = new ArrayList<>(CARDS_PER_TASK);
+                }
+            }
+            if (!chunk.isEmpty() && failure.get() == null) {
+                submit(executor, chunk, summary, listener, failure);
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("计算最优方案失败", failure.get());
+        }
+        return summary;
+    }
+
+    /**
+     * 提交一批卡；任务中的异常记录到failure（只保留第一个），不会被执行器丢弃
+     */
+    private void submit(ExecutorService executor, List<TripHistory> chunk, Summary summary, PlanListener listener,
+                        AtomicReference<Throwable> failure) {
+        executor.execute(() -> {
+            try {
+                for (TripHistory history : chunk) {
+                    if (failure.get() != null) {
+                        return;
+                    }
+                    Plan plan = optimize(history);
+                    summary.add(history, plan);
+                    if (listener != null) {
+                        listener.onPlan(plan);
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+    }
+
+    /**
+     * 从文件读取乘车记录并计算，每行格式为：卡号,日期,进站,出站
+     * 日期可以是yyyy-MM-dd格式或整数天数；同一张卡的记录必须连续出现
+     * @param filePath 乘车记录文件路径
+     * @param threads 线程数
+     * @param listener 方案监听器，可以为null
+     * @return 汇总结果
+     */
+    public Summary optimizeFile(String filePath, int threads, PlanListener listener)
+            throws IOException, InterruptedException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            TripReader tripReader = new TripReader(reader);
+            Summary summary = optimizeAll(tripReader, threads, listener);
+            if (tripReader.error != null) {
+                throw tripReader.error;
+            }
+            return summary;
+        }
+    }
+
+    /**
+     * 逐张卡读取乘车记录
+     */
+    private class TripReader implements Supplier<TripHistory> {
+        private final BufferedReader reader;
+        private TripHistory current;
+        private IOException error;
+
+        TripReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public TripHistory get() {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] parts = line.split(",");
+                    Station entry = parts.length >= 4 ? subwaySystem.getStation(parts[2].trim()) : null;
+                    Station exit = parts.length >= 4 ? subwaySystem.getStation(parts[3].trim()) : null;
+                    if (entry == null || exit == null) {
+                        System.err.println("无法解析乘车记录: " + line);
+                        continue;
+                    }
+                    long card;
+                    int day;
+                    try {
+                        card = Long.parseLong(parts[0].trim());
+                        String date = parts[1].trim();
+                        day = date.indexOf('-') > 0 ? (int) LocalDate.parse(date).toEpochDay() : Integer.parseInt(date);
+                    } catch (RuntimeException e) {
+                        System.err.println("无法解析乘车记录: " + line);
+                        continue;
+                    }
+
+                    TripHistory finished = null;
+                    if (current != null && current.card != card) {
+                        finished = current;
+                        current = null;
+                    }
+                    if (current == null) {
+                        current = new TripHistory(card);
+                    }
+                    current.add(day, entry.getId(), exit.getId());
+                    if (finished != null) {
+                        return finished;
+                    }
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+            TripHistory last = current;
+            current = null;
+            return last;
+        }
+    }
+
+    /**
+     * 汇总结果
+     */
+    public static class Summary {
+        private final LongAdder cards = new LongAdder();
+        private final LongAdder trips = new LongAdder();
+        private final LongAdder singleTicketCost = new LongAdder();
+        private final LongAdder wuhanTongCost = new LongAdder();
+        private final LongAdder optimalCost = new LongAdder();
+        private final LongAdder cardsWithPasses = new LongAdder();
+        private final LongAdder[] passes = new LongAdder[PASS_TYPES.length];
+
+        Summary() {
+            for (int i = 0; i < passes.length; i++) {
+                passes[i] = new LongAdder();
+            }
+        }
+
+        void add(TripHistory history, Plan plan) {
+            cards.increment();
+            trips.add(history.size);
+            singleTicketCost.add(plan.singleTicketCost);
+            wuhanTongCost.add(plan.wuhanTongCost);
+            optimalCost.add(plan.optimalCost);
+            if (plan.passTypes.length > 0) {
+                cardsWithPasses.increment();
+            }
+            for (int type : plan.passTypes) {
+                passes[type].increment();
+            }
+        }
+
+        public long getCards() {
+            return cards.sum();
+        }
+
+        public long getTrips() {
+            return trips.sum();
+        }
+
+        public long getSingleTicketCost() {
+            return singleTicketCost.sum();
+        }
+
+        public long getWuhanTongCost() {
+            return wuhanTongCost.sum();
+        }
+
+        public long getOptimalCost() {
+            return optimalCost.sum();
+        }
+
+        /**
+         * 购买定期票更便宜的卡数
+         */
+        public long getCardsWithPasses() {
+            return cardsWithPasses.sum();
+        }
+
+        /**
+         * 最优方案中某种定期票的总张数
+         * @param type PASS_TYPES的下标
+         */
+        public long getPasses(int type) {
+            return passes[type].sum();
+        }
+    }
+
+    /**
+     * 参数：[乘车记录文件] [线程数]，不指定文件时生成随机乘车记录
+     */
+    public static void main(String[] args) throws Exception {
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile("src/subway.txt");
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        long start;
+        Summary summary;
+        try (PassOptimizer optimizer = new PassOptimizer(subwaySystem)) {
+            start = System.nanoTime();
+            if (args.length > 0) {
+                summary = optimizer.optimizeFile(args[0], threads, null);
+            } else {
+                // 100万张卡，每张卡在30天内乘车，每天0到6次
+                int stationCount = subwaySystem.getStationCount();
+                Random random = new Random(11);
+                int[] remaining = {1_000_000};
+                summary = optimizer.optimizeAll(() -> {
+                    if (remaining[0]-- <= 0) {
+                        return null;
+                    }
+                    TripHistory history = new TripHistory(remaining[0]);
+                    int intensity = random.nextInt(7);
+                    for (int day = 0; day < 30; day++) {
+                        int trips = random.nextInt(intensity + 1);
+                        for (int i = 0; i < trips; i++) {
+                            history.add(day, random.nextInt(stationCount), random.nextInt(stationCount));
+                        }
+                    }
+                    return history;
+                }, threads, null);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(String.format("卡数: %d，行程数: %d，耗时: %.1f ms",
+            summary.getCards(), summary.getTrips(), elapsed / 1e6));
+        System.out.println(String.format("单程票: %.2f元，武汉通: %.2f元，最优方案: %.2f元",
+            summary.getSingleTicketCost() / 100.0, summary.getWuhanTongCost() / 100.0,
+            summary.getOptimalCost() / 100.0));
+        System.out.println("购买定期票更便宜的卡数: " + summary.getCardsWithPasses());
+        for (int i = 0; i < PASS_TYPES.length; i++) {
+            System.out.println(PASS_TYPES[i] + ": " + summary.getPasses(i) + "张");
+        }
+    }
+}
@@ -0,0 +1,231 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 预计算结果的本地缓存
+ *
+ * 以线路数据文件内容的SHA-256作为指纹，把站点和线路编号、连通性信息（连通分量、割点、桥）和站点间最短距离表
+ * 保存到缓存目录下的“指纹.cache”文件中。下次加载同一份数据时直接读取，不再重新计算。
+ *
+ * 文件格式：魔数、版本、指纹、站点名称和线路名称（按编号）、边数、连通性信息、距离表，最后是以上内容的CRC32。
+ * 魔数、版本、指纹、编号或校验和任何一项不符时视为缓存失效，由调用者重新计算并覆盖缓存。
+ * 写入时先写临时文件再改名，其他进程不会读到写了一半的文件。
+ */
+public class PrecomputationCache {
+    private static final int MAGIC = 0x53425743; // "SBWC"
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".cache";
+
+    private final File directory;
+
+    public PrecomputationCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 计算文件内容的SHA-256指纹
+     * @param filePath 文件路径
+     * @return 十六进制指纹
+     */
+    public static String fingerprint(String filePath) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 所有JDK都必须支持SHA-256
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(Files.readAllBytes(Paths.get(filePath)));
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public File getCacheFile(String fingerprint) {
+        return new File(directory, fingerprint + SUFFIX);
+    }
+
+    /**
+     * 缓存中读取的预计算结果
+     */
+    public static class Entry {
+        private final NetworkTopology topology;
+        private final DistanceTable distanceTable;
+
+        Entry(NetworkTopology topology, DistanceTable distanceTable) {
+            this.topology = topology;
+            this.distanceTable = distanceTable;
+        }
+
+        public NetworkTopology getTopology() {
+            return topology;
+        }
+
+        public DistanceTable getDistanceTable() {
+            return distanceTable;
+        }
+    }
+
+    /**
+     * 读取缓存
+     * @param fingerprint 数据文件指纹
+     * @param subwaySystem 已解析线路数据的地铁系统，用于校验站点和线路编号
+     * @param graph 网络图
+     * @return 预计算结果，缓存不存在或失效时为null
+     */
+    public Entry load(String fingerprint, SubwaySystem subwaySystem, NetworkGraph graph) {
+        File file = getCacheFile(fingerprint);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream raw = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("魔数不符");
+            }
+            if (in.readInt() != VERSION) {
+                throw new IOException("版本不符");
+            }
+            if (!in.readUTF().equals(fingerprint)) {
+                throw new IOException("指纹不符");
+            }
+
+            int stationCount = in.readInt();
+            if (stationCount != subwaySystem.getStationCount()) {
+                throw new IOException("站点数不符");
+            }
+            for (int i = 0; i < stationCount; i++) {
+                if (!in.readUTF().equals(subwaySystem.getStationById(i).getName())) {
+                    throw new IOException("站点编号不符: " + i);
+                }
+            }
+            int lineCount = in.readInt();
+            if (lineCount != subwaySystem.getLineCount()) {
+                throw new IOException("线路数不符");
+            }
+            for (int i = 0; i < lineCount; i++) {
+                if (!in.readUTF().equals(subwaySystem.getLineById(i).getName())) {
+                    throw new IOException("线路编号不符: " + i);
+                }
+            }
+            int edgeCount = in.readInt();
+            if (edgeCount != graph.getEdgeCount()) {
+                throw new IOException("边数不符");
+            }
+
+            int[] components = new int[stationCount];
+            boolean[] articulationPoints = new boolean[stationCount];
+            for (int i = 0; i < stationCount; i++) {
+                components[i] = in.readInt();
+                articulationPoints[i] = in.readBoolean();
+            }
+            boolean[] bridges = new boolean[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                bridges[i] = in.readBoolean();
+            }
+            double[] distances = new double[stationCount * stationCount];
+            for (int i = 0; i < distances.length; i++) {
+                distances[i] = in.readDouble();
+            }
+
+            long checksum = checked.getChecksum().getValue();
+            if (raw.readLong() != checksum) {
+                throw new IOException("校验和不符");
+            }
+            if (raw.read() != -1) {
+                throw new IOException("文件末尾有多余内容");
+            }
+            return new Entry(new NetworkTopology(graph, components, articulationPoints, bridges),
+                             new DistanceTable(stationCount, distances));
+        } catch (EOFException e) {
+            System.err.println("预计算缓存无效，重新计算: " + file + "（文件不完整）");
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("预计算缓存无效，重新计算: " + file + "（" + e.getMessage() + "）");
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存，覆盖同一指纹的旧缓存
+     * @param fingerprint 数据文件指纹
+     * @param subwaySystem 已加载数据的地铁系统
+     * @param graph 网络图
+     * @param topology 连通性信息
+     * @param distanceTable 站点间最短距离表
+     */
+    public void store(String fingerprint, SubwaySystem subwaySystem, NetworkGraph graph,
+                      NetworkTopology topology, DistanceTable distanceTable) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建缓存目录: " + directory);
+        }
+        File file = getCacheFile(fingerprint);
+        File temp = File.createTempFile(fingerprint, ".tmp", directory);
+        try {
+            try (DataOutputStream raw = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                CheckedOutputStream checked = new CheckedOutputStream(raw, new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(fingerprint);
+
+                int stationCount = subwaySystem.getStationCount();
+                out.writeInt(stationCount);
+                for (int i = 0; i < stationCount; i++) {
+                    out.writeUTF(subwaySystem.getStationById(i).getName());
+                }
+                out.writeInt(subwaySystem.getLineCount());
+                for (int i = 0; i < subwaySystem.getLineCount(); i++) {
+                    out.writeUTF(subwaySystem.getLineById(i).getName());
+                }
+                out.writeInt(graph.getEdgeCount());
+
+                for (int i = 0; i < stationCount; i++) {
+                    out.writeInt(topology.getComponent(i));
+                    out.writeBoolean(topology.isArticulationPoint(i));
+                }
+                for (int i = 0; i < graph.getEdgeCount(); i++) {
+                    out.writeBoolean(topology.isBridge(i));
+                }
+                for (int source = 0; source < stationCount; source++) {
+                    for (int target = 0; target < stationCount; target++) {
+                        out.writeDouble(distanceTable.getDistance(source, target));
+                    }
+                }
+                out.flush();
+                raw.writeLong(checked.getChecksum().getValue());
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+}
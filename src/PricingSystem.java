@@ -21,12 +21,38 @@ public class PricingSystem {
      * @return 票价（元）
      */
     public double calculateFare(double distance) {
+        return FARE_TIERS[getFareTier(distance)];
+    }
+    
+    /**
+     * 根据乘车距离计算票价档位，档位越高票价越贵
+     * @param distance 乘车距离（公里）
+     * @return 票价档位（从0开始）
+     */
+    public int getFareTier(double distance) {
         for (int i = 0; i < DISTANCE_TIERS.length; i++) {
             if (distance <= DISTANCE_TIERS[i]) {
-                return FARE_TIERS[i];
+                return i;
             }
         }
-        return FARE_TIERS[FARE_TIERS.length - 1];
+        return FARE_TIERS.length - 1;
+    }
+    
+    /**
+     * 获取票价档位对应的票价（普通单程票）
+     * @param tier 票价档位
+     * @return 票价（元）
+     */
+    public double getTierFare(int tier) {
+        return FARE_TIERS[tier];
+    }
+    
+    /**
+     * 获取票价档位数
+     * @return 档位数
+     */
+    public int getFareTierCount() {
+        return FARE_TIERS.length;
     }
     
     /**
@@ -35,8 +61,24 @@ public class PricingSystem {
      * @return 票价（元）
      */
     public double calculateWuhanTongFare(double distance) {
-        double standardFare = calculateFare(distance);
-        return Math.round(standardFare * WUHAN_TONG_DISCOUNT * 10) / 10.0;
+        return getTierWuhanTongFare(getFareTier(distance));
+    }
+    
+    /**
+     * 获取票价档位对应的武汉通票价（9折后四舍五入到角）
+     * @param tier 票价档位
+     * @return 票价（元）
+     */
+    public double getTierWuhanTongFare(int tier) {
+        return Math.round(FARE_TIERS[tier] * WUHAN_TONG_DISCOUNT * 10) / 10.0;
+    }
+    
+    /**
+     * 获取各票价档位的距离上限，乘车距离超过第i个上限时票价档位至少为i+1
+     * @return 距离上限（公里），从小到大排列
+     */
+    public double[] getDistanceTiers() {
+        return DISTANCE_TIERS.clone();
     }
     
     /**
@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * RAPTOR引擎与Dijkstra最短路径查询的性能对比
+ *
+ * 参数：[查询次数] [线路数据文件] [时刻表文件]
+ */
+public class RaptorBenchmark {
+    public static void main(String[] args) throws IOException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String dataFile = args.length > 1 ? args[1] : "src/subway.txt";
+        String scheduleFile = args.length > 2 ? args[2] : "src/schedule.txt";
+
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile(dataFile);
+        Timetable timetable = Timetable.loadFromFile(subwaySystem, scheduleFile);
+        RaptorEngine engine = new RaptorEngine(timetable);
+
+        // 只在有列车经过的站点之间查询
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < subwaySystem.getStationCount(); i++) {
+            if (timetable.getStationRouteEnd(i) > timetable.getFirstStationRoute(i)) {
+                names.add(subwaySystem.getStationById(i).getName());
+            }
+        }
+        Random random = new Random(42);
+        String[] starts = new String[queries];
+        String[] ends = new String[queries];
+        int[] times = new int[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = names.get(random.nextInt(names.size()));
+            ends[i] = names.get(random.nextInt(names.size()));
+            times[i] = Timetable.parseTime("06:30") + random.nextInt(15 * 3600);
+        }
+
+        // 预热
+        run(engine, subwaySystem, starts, ends, times, Math.min(queries, 2000));
+        run(engine, subwaySystem, starts, ends, times, Math.min(queries, 2000));
+
+        long[] result = run(engine, subwaySystem, starts, ends, times, queries);
+        System.out.println("查询次数: " + queries);
+        System.out.println(String.format("RAPTOR最早到达: 平均 %.1f 微秒/次", result[0] / 1e3 / queries));
+        System.out.println(String.format("Dijkstra最短路径: 平均 %.1f 微秒/次", result[1] / 1e3 / queries));
+        System.out.println("可到达的查询: " + result[2]);
+
+        Journey example = engine.findEarliestArrival("光谷广场", "宗关", Timetable.parseTime("08:10"));
+        System.out.println("\n示例：08:10 从 光谷广场 出发到 宗关");
+        System.out.println(example);
+    }
+
+    /**
+     * @return {RAPTOR总耗时, Dijkstra总耗时, 可到达的查询数}
+     */
+    private static long[] run(RaptorEngine engine, SubwaySystem subwaySystem,
+                              String[] starts, String[] ends, int[] times, int count) {
+        long reachable = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (engine.findEarliestArrival(starts[i], ends[i], times[i]) != null) {
+                reachable++;
+            }
+        }
+        long raptor = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            subwaySystem.findShortestPath(starts[i], ends[i]);
+        }
+        long dijkstra = System.nanoTime() - begin;
+        return new long[]{raptor, dijkstra, reachable};
+    }
+}
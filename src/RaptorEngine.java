@@ -0,0 +1,220 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基于时刻表的RAPTOR（按轮次）行程规划引擎
+ *
+ * 第k轮求出最多乘坐k段车能到达各站的最早时间，每轮只扫描上一轮有改进的站点所在的路线。
+ * 每轮终点到达时间有改进时记录一个行程，因此结果是（到达时间，换乘次数）的Pareto集合：
+ * 第一个是换乘最少的行程，最后一个是最早到达的行程。
+ * 引擎本身不保存查询状态，可以被多个线程同时使用。
+ */
+public class RaptorEngine {
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int DEFAULT_TRANSFER_SECONDS = 180;
+    private static final int DEFAULT_MAX_ROUNDS = 8;
+
+    private final Timetable timetable;
+    private final int transferSeconds; // 换乘所需的最短时间（秒）
+    private final int maxRounds; // 最多乘坐的段数
+
+    public RaptorEngine(Timetable timetable) {
+        this(timetable, DEFAULT_TRANSFER_SECONDS, DEFAULT_MAX_ROUNDS);
+    }
+
+    /**
+     * @param timetable 时刻表
+     * @param transferSeconds 换乘所需的最短时间（秒）
+     * @param maxRounds 最多乘坐的段数（换乘次数上限加1）
+     */
+    public RaptorEngine(Timetable timetable, int transferSeconds, int maxRounds) {
+        if (transferSeconds < 0) {
+            throw new IllegalArgumentException("换乘时间不能为负数: " + transferSeconds);
+        }
+        if (maxRounds <= 0) {
+            throw new IllegalArgumentException("轮数必须为正数: " + maxRounds);
+        }
+        this.timetable = timetable;
+        this.transferSeconds = transferSeconds;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * 查询最早到达的行程
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @param departureTime 出发时刻（当天秒数）
+     * @return 行程，当天无法到达时返回null
+     */
+    public Journey findEarliestArrival(String startName, String endName, int departureTime) {
+        List<Journey> journeys = findJourneys(startName, endName, departureTime);
+        return journeys.isEmpty() ? null : journeys.get(journeys.size() - 1);
+    }
+
+    /**
+     * 查询换乘最少的行程（换乘次数相同时最早到达）
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @param departureTime 出发时刻（当天秒数）
+     * @return 行程，当天无法到达时返回null
+     */
+    public Journey findFewestTransfers(String startName, String endName, int departureTime) {
+        List<Journey> journeys = findJourneys(startName, endName, departureTime);
+        return journeys.isEmpty() ? null : journeys.get(0);
+    }
+
+    /**
+     * 查询到达时间与换乘次数的Pareto最优行程集合
+     * @return 按换乘次数从少到多（到达时间从晚到早）排列的行程
+     */
+    public List<Journey> findJourneys(String startName, String endName, int departureTime) {
+        SubwaySystem subwaySystem = timetable.getSubwaySystem();
+        Station startStation = subwaySystem.getStation(startName);
+        Station endStation = subwaySystem.getStation(endName);
+
+        if (startStation == null) {
+            throw new IllegalArgumentException("起点站不存在: " + startName);
+        }
+        if (endStation == null) {
+            throw new IllegalArgumentException("终点站不存在: " + endName);
+        }
+
+        List<Journey> journeys = new ArrayList<>();
+        if (startStation.equals(endStation)) {
+            journeys.add(new Journey(departureTime, new ArrayList<Journey.Leg>()));
+            return journeys;
+        }
+
+        int source = startStation.getId();
+        int target = endStation.getId();
+        int stationCount = subwaySystem.getStationCount();
+        int routeCount = timetable.getRouteCount();
+
+        int[][] arrival = new int[maxRounds + 1][stationCount]; // 每轮各站最早到达时间
+        int[][] labelRoute = new int[maxRounds + 1][]; // 每轮到达各站所乘坐的路线，-1表示沿用上一轮
+        int[][] labelTrip = new int[maxRounds + 1][];
+        int[][] labelBoard = new int[maxRounds + 1][]; // 上车站在路线中的序号
+        int[][] labelAlight = new int[maxRounds + 1][]; // 下车站在路线中的序号
+        int[] best = new int[stationCount];
+        boolean[] marked = new boolean[stationCount];
+        int[] routeStart = new int[routeCount]; // 本轮各路线需要开始扫描的站点序号
+        int[] queuedRoutes = new int[routeCount];
+
+        Arrays.fill(arrival[0], INFINITY);
+        Arrays.fill(best, INFINITY);
+        Arrays.fill(routeStart, -1);
+        arrival[0][source] = departureTime;
+        best[source] = departureTime;
+        marked[source] = true;
+
+        for (int k = 1; k <= maxRounds; k++) {
+            int[] previous = arrival[k - 1];
+            int[] current = arrival[k];
+            System.arraycopy(previous, 0, current, 0, stationCount);
+            int[] routes = labelRoute[k] = new int[stationCount];
+            int[] trips = labelTrip[k] = new int[stationCount];
+            int[] boards = labelBoard[k] = new int[stationCount];
+            int[] alights = labelAlight[k] = new int[stationCount];
+            Arrays.fill(routes, -1);
+
+            // 收集经过上一轮有改进站点的路线
+            int queued = 0;
+            for (int station = 0; station < stationCount; station++) {
+                if (!marked[station]) {
+                    continue;
+                }
+                marked[station] = false;
+                for (int i = timetable.getFirstStationRoute(station); i < timetable.getStationRouteEnd(station); i++) {
+                    int route = timetable.getStationRoute(i);
+                    int index = timetable.getStationRouteIndex(i);
+                    if (routeStart[route] < 0) {
+                        routeStart[route] = index;
+                        queuedRoutes[queued++] = route;
+                    } else if (index < routeStart[route]) {
+                        routeStart[route] = index;
+                    }
+                }
+            }
+            if (queued == 0) {
+                break;
+            }
+
+            boolean improved = false;
+            for (int q = 0; q < queued; q++) {
+                int route = queuedRoutes[q];
+                int stops = timetable.getStopCount(route);
+                int trip = -1;
+                int board = -1;
+                for (int i = routeStart[route]; i < stops; i++) {
+                    int station = timetable.getStop(route, i);
+                    if (trip >= 0) {
+                        int time = timetable.getArrival(route, trip, i);
+                        if (time < best[station] && time < best[target]) {
+                            current[station] = time;
+                            best[station] = time;
+                            routes[station] = route;
+                            trips[station] = trip;
+                            boards[station] = board;
+                            alights[station] = i;
+                            marked[station] = true;
+                            improved = true;
+                        }
+                    }
+                    // 能否在本站赶上更早的车次
+                    if (previous[station] != INFINITY) {
+                        int ready = previous[station] + (k > 1 ? transferSeconds : 0);
+                        if (trip < 0 || ready <= timetable.getDeparture(route, trip, i)) {
+                            int earliest = timetable.findEarliestTrip(route, i, ready);
+                            if (earliest >= 0 && (trip < 0 || earliest < trip)) {
+                                trip = earliest;
+                                board = i;
+                            }
+                        }
+                    }
+                }
+                routeStart[route] = -1;
+            }
+
+            if (current[target] < previous[target]) {
+                journeys.add(buildJourney(k, source, target, departureTime,
+                                          labelRoute, labelTrip, labelBoard, labelAlight));
+            }
+            if (!improved) {
+                break;
+            }
+        }
+        return journeys;
+    }
+
+    /**
+     * 从第round轮的终点标签回溯出行程
+     */
+    private Journey buildJourney(int round, int source, int target, int departureTime,
+                                 int[][] labelRoute, int[][] labelTrip, int[][] labelBoard, int[][] labelAlight) {
+        SubwaySystem subwaySystem = timetable.getSubwaySystem();
+        List<Journey.Leg> legs = new ArrayList<>();
+        int station = target;
+        int k = round;
+        while (station != source) {
+            // 找到该站时间最后一次被改进的轮次
+            while (labelRoute[k][station] < 0) {
+                k--;
+            }
+            int route = labelRoute[k][station];
+            int trip = labelTrip[k][station];
+            int board = labelBoard[k][station];
+            int alight = labelAlight[k][station];
+            int boardStation = timetable.getStop(route, board);
+            legs.add(0, new Journey.Leg(
+                subwaySystem.getLineById(timetable.getLine(route)),
+                subwaySystem.getStationById(boardStation),
+                subwaySystem.getStationById(station),
+                timetable.getDeparture(route, trip, board),
+                timetable.getArrival(route, trip, alight)));
+            station = boardStation;
+            k--;
+        }
+        return new Journey(departureTime, legs);
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.Arrays;
+
+/**
+ * 网络中一个区域的子图，在进程内回答区域查询
+ *
+ * 只复制区域内的站点和边：站点重新编号为0到区域站点数-1，子图是一个NetworkGraph，直接使用ShortestPathTree搜索，
+ * 结果再换回整个网络的站点和边编号。内存占用与区域大小成正比，与整个网络的大小无关。
+ * 可以在多个线程间共享，每个线程使用自己的ShortestPathTree。
+ */
+public class RegionGraph implements RegionWorker {
+    private final int region;
+    private final int[] stations; // 局部编号->站点编号（升序）
+    private final int[] edges; // 局部边编号->边编号
+    private final NetworkGraph graph; // 使用局部编号的子图
+    private final ThreadLocal<ShortestPathTree> trees;
+
+    /**
+     * @param network 整个网络的图
+     * @param partition 网络分区
+     * @param region 区域编号
+     */
+    public RegionGraph(NetworkGraph network, NetworkPartition partition, int region) {
+        this.region = region;
+        this.stations = partition.getRegionStations(region).clone();
+        int[] regionEdges = partition.getRegionEdges(region);
+        int stationCount = stations.length;
+        int edgeCount = regionEdges.length;
+
+        // 区域边按起点的整网编号升序排列，起点的局部编号也是升序，可以直接构造CSR
+        int[] offsets = new int[stationCount + 1];
+        for (int edge : regionEdges) {
+            offsets[toLocal(network.getSource(edge)) + 1]++;
+        }
+        for (int i = 0; i < stationCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        edges = new int[edgeCount];
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        int[] lines = new int[edgeCount];
+        double[] distances = new double[edgeCount];
+        for (int i = 0; i < edgeCount; i++) {
+            int edge = regionEdges[i];
+            edges[i] = edge;
+            sources[i] = toLocal(network.getSource(edge));
+            targets[i] = toLocal(network.getTarget(edge));
+            lines[i] = network.getLine(edge);
+            distances[i] = network.getDistance(edge);
+        }
+        graph = new NetworkGraph(network.getLineCount(), offsets, sources, targets, lines, distances);
+        trees = ThreadLocal.withInitial(() -> new ShortestPathTree(graph));
+    }
+
+    private int toLocal(int station) {
+        int local = Arrays.binarySearch(stations, station);
+        if (local < 0) {
+            throw new IllegalArgumentException("站点不属于区域" + region + ": " + station);
+        }
+        return local;
+    }
+
+    @Override
+    public int getRegion() {
+        return region;
+    }
+
+    public int getStationCount() {
+        return stations.length;
+    }
+
+    public int getEdgeCount() {
+        return edges.length;
+    }
+
+    @Override
+    public double[] getDistances(int source, int[] targets) {
+        int[] localTargets = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            localTargets[i] = toLocal(targets[i]);
+        }
+        ShortestPathTree tree = trees.get();
+        tree.compute(toLocal(source));
+        double[] result = new double[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            result[i] = tree.getDistance(localTargets[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public int[] getPathEdges(int source, int target) {
+        int localSource = toLocal(source);
+        int localTarget = toLocal(target);
+        ShortestPathTree tree = trees.get();
+        tree.compute(localSource);
+        if (!tree.isReachable(localTarget)) {
+            return null;
+        }
+        int count = 0;
+        for (int station = localTarget; station != localSource; count++) {
+            station = graph.getSource(tree.getPredecessorEdge(station));
+        }
+        int[] result = new int[count];
+        int station = localTarget;
+        for (int i = count - 1; i >= 0; i--) {
+            int edge = tree.getPredecessorEdge(station);
+            result[i] = edges[edge];
+            station = graph.getSource(edge);
+        }
+        return result;
+    }
+}
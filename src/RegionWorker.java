@@ -0,0 +1,29 @@
+import java.io.IOException;
+
+/**
+ * 一个网络区域的查询接口，只在区域内部的区间上搜索，站点和边使用整个网络的编号
+ *
+ * 实现可以是进程内的RegionGraph，也可以是通过套接字访问的RemoteRegionWorker。
+ */
+public interface RegionWorker {
+    /**
+     * @return 区域编号
+     */
+    int getRegion();
+
+    /**
+     * 区域内从起点到各终点的最短距离
+     * @param source 起点站点编号，必须属于该区域
+     * @param targets 终点站点编号，必须属于该区域
+     * @return 与targets一一对应的距离（公里），区域内不可达时为Double.POSITIVE_INFINITY
+     */
+    double[] getDistances(int source, int[] targets) throws IOException;
+
+    /**
+     * 区域内从起点到终点的最短路径
+     * @param source 起点站点编号，必须属于该区域
+     * @param target 终点站点编号，必须属于该区域
+     * @return 路径经过的边编号，从起点到终点排列；区域内不可达时为null
+     */
+    int[] getPathEdges(int source, int target) throws IOException;
+}
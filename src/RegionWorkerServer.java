@@ -0,0 +1,137 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 通过TCP套接字提供一个区域的查询服务，客户端是RemoteRegionWorker
+ *
+ * 协议：连接建立后服务端先发送区域编号（int），之后客户端逐个发送请求，服务端按顺序回复。
+ * 请求以一个字节的类型开始：
+ *   REQUEST_DISTANCES：起点（int）、终点个数（int）、各终点（int），成功时回复各距离（double）
+ *   REQUEST_PATH：起点（int）、终点（int），成功时回复边数（int，不可达时为-1）和各边编号（int）
+ * 回复以一个字节的状态开始，STATUS_ERROR后跟错误信息（UTF）。
+ * 个数超出范围时无法确定请求的长度，回复STATUS_ERROR后关闭连接。
+ */
+public class RegionWorkerServer implements AutoCloseable {
+    static final int REQUEST_DISTANCES = 1;
+    static final int REQUEST_PATH = 2;
+    static final int STATUS_OK = 0;
+    static final int STATUS_ERROR = 1;
+    static final int MAX_COUNT = 1 << 16; // 终点个数和路径边数的上限，远大于一个区域的站点数
+
+    private final RegionWorker worker;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+
+    /**
+     * 在本机回环地址上监听
+     * @param worker 区域查询的实现
+     * @param port 端口，为0时自动选择
+     */
+    public RegionWorkerServer(RegionWorker worker, int port) throws IOException {
+        this.worker = worker;
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.executor = VirtualThreads.newExecutor();
+    }
+
+    public void start() {
+        executor.execute(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    executor.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    if (!serverSocket.isClosed()) {
+                        System.err.println("区域" + worker.getRegion() + "接受连接失败: " + e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            s.setTcpNoDelay(true);
+            out.writeInt(worker.getRegion());
+            out.flush();
+            while (true) {
+                int request;
+                try {
+                    request = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    return; // 客户端关闭连接
+                }
+                if (request == REQUEST_DISTANCES) {
+                    int source = in.readInt();
+                    int count = in.readInt();
+                    if (count < 0 || count > MAX_COUNT) {
+                        writeError(out, "终点个数超出范围: " + count);
+                        out.flush();
+                        return;
+                    }
+                    int[] targets = new int[count];
+                    for (int i = 0; i < targets.length; i++) {
+                        targets[i] = in.readInt();
+                    }
+                    try {
+                        double[] distances = worker.getDistances(source, targets);
+                        out.writeByte(STATUS_OK);
+                        for (double distance : distances) {
+                            out.writeDouble(distance);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        writeError(out, e.getMessage());
+                    }
+                } else if (request == REQUEST_PATH) {
+                    int source = in.readInt();
+                    int target = in.readInt();
+                    try {
+                        int[] edges = worker.getPathEdges(source, target);
+                        out.writeByte(STATUS_OK);
+                        if (edges == null) {
+                            out.writeInt(-1);
+                        } else {
+                            out.writeInt(edges.length);
+                            for (int edge : edges) {
+                                out.writeInt(edge);
+                            }
+                        }
+                    } catch (IllegalArgumentException e) {
+                        writeError(out, e.getMessage());
+                    }
+                } else {
+                    writeError(out, "未知的请求类型: " + request);
+                    out.flush();
+                    return;
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("区域" + worker.getRegion() + "连接异常: " + e.getMessage());
+        }
+    }
+
+    private static void writeError(DataOutputStream out, String message) throws IOException {
+        out.writeByte(STATUS_ERROR);
+        out.writeUTF(String.valueOf(message));
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * 通过套接字访问RegionWorkerServer的区域查询
+ *
+ * 使用一个长连接，请求按顺序发送，多个线程同时调用时依次执行。
+ * 连接和读取回复都有超时；超时或其他I/O错误后请求和回复可能已经错位，连接随即关闭，之后的调用都会失败。
+ */
+public class RemoteRegionWorker implements RegionWorker, AutoCloseable {
+    private static final int DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final int region;
+
+    /**
+     * @param host 主机
+     * @param port 端口
+     * @param timeoutMillis 连接和读取回复的超时（毫秒），为0时不超时
+     */
+    public RemoteRegionWorker(String host, int port, int timeoutMillis) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            region = in.readInt();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    public RemoteRegionWorker(String host, int port) throws IOException {
+        this(host, port, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param address 主机:端口
+     */
+    public static RemoteRegionWorker connect(String address) throws IOException {
+        int index = address.lastIndexOf(':');
+        if (index <= 0) {
+            throw new IllegalArgumentException("地址格式应为 主机:端口: " + address);
+        }
+        return new RemoteRegionWorker(address.substring(0, index), Integer.parseInt(address.substring(index + 1)));
+    }
+
+    @Override
+    public int getRegion() {
+        return region;
+    }
+
+    @Override
+    public synchronized double[] getDistances(int source, int[] targets) throws IOException {
+        try {
+            return requestDistances(source, targets);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private double[] requestDistances(int source, int[] targets) throws IOException {
+        out.writeByte(RegionWorkerServer.REQUEST_DISTANCES);
+        out.writeInt(source);
+        out.writeInt(targets.length);
+        for (int target : targets) {
+            out.writeInt(target);
+        }
+        out.flush();
+        readStatus();
+        double[] distances = new double[targets.length];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = in.readDouble();
+        }
+        return distances;
+    }
+
+    @Override
+    public synchronized int[] getPathEdges(int source, int target) throws IOException {
+        try {
+            return requestPathEdges(source, target);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private int[] requestPathEdges(int source, int target) throws IOException {
+        out.writeByte(RegionWorkerServer.REQUEST_PATH);
+        out.writeInt(source);
+        out.writeInt(target);
+        out.flush();
+        readStatus();
+        int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        if (count > RegionWorkerServer.MAX_COUNT) {
+            throw new IOException("路径边数超出范围: " + count);
+        }
+        int[] edges = new int[count];
+        for (int i = 0; i < count; i++) {
+            edges[i] = in.readInt();
+        }
+        return edges;
+    }
+
+    private void readStatus() throws IOException {
+        int status = in.readUnsignedByte();
+        if (status == RegionWorkerServer.STATUS_ERROR) {
+            throw new IllegalArgumentException(in.readUTF());
+        }
+        if (status != RegionWorkerServer.STATUS_OK) {
+            throw new IOException("未知的回复状态: " + status);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,398 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 路径输出渲染器
+ *
+ * 将路径以文本（与SubwaySystem.formatPath格式相同）或JSON形式直接写入调用方提供的
+ * Appendable或ByteBuffer，不生成中间字符串。站点和线路名称的UTF-8字节及JSON转义形式在创建时预先计算，
+ * 距离和票价使用定点数格式化（距离保留两位小数，票价保留一位小数，四舍五入）。
+ * 路径先转为站点和线路编号，写入每个线程复用的数组，除了扩容之外不分配内存。
+ * 只有一站的路径（没有区间）只输出起点、距离和换乘次数。
+ *
+ * 写入ByteBuffer时空间不足会抛出BufferOverflowException；路径没有站点时抛出IllegalArgumentException。
+ */
+public class RouteRenderer {
+    private static final byte[] TEXT_HEADER = bytes("乘车路线：\n从 ");
+    private static final byte[] TEXT_TAKE = bytes(" 乘坐 ");
+    private static final byte[] TEXT_TO = bytes(" 到 ");
+    private static final byte[] TEXT_TRANSFER = bytes("\n换乘 ");
+    private static final byte[] TEXT_TO_TERMINAL = bytes(" 到终点站 ");
+    private static final byte[] TEXT_DISTANCE = bytes("\n总距离: ");
+    private static final byte[] TEXT_KILOMETERS = bytes("公里");
+    private static final byte[] TEXT_TRANSFERS = bytes("\n换乘次数: ");
+    private static final byte[] JSON_DISTANCE = bytes("{\"distance\":");
+    private static final byte[] JSON_TRANSFERS = bytes(",\"transfers\":");
+    private static final byte[] JSON_FARE = bytes(",\"fare\":");
+    private static final byte[] JSON_WUHAN_TONG_FARE = bytes(",\"wuhanTongFare\":");
+    private static final byte[] JSON_STATIONS = bytes(",\"stations\":[");
+    private static final byte[] JSON_LINES = bytes("],\"lines\":[");
+    private static final byte[] JSON_END = bytes("]}");
+
+    private final PricingSystem pricingSystem;
+    private final String[] stationNames; // 站点编号->名称
+    private final String[] lineNames; // 线路编号->名称
+    private final byte[][] stationNameBytes; // 站点名称的UTF-8字节
+    private final byte[][] lineNameBytes; // 线路名称的UTF-8字节
+    private final String[] stationJson; // 站点名称的JSON字符串形式（含引号）
+    private final String[] lineJson; // 线路名称的JSON字符串形式（含引号）
+    private final byte[][] stationJsonBytes;
+    private final byte[][] lineJsonBytes;
+    private final ThreadLocal<RouteIds> routeIds = ThreadLocal.withInitial(RouteIds::new);
+
+    /**
+     * 每个线程复用的站点和线路编号数组
+     */
+    private static final class RouteIds {
+        int[] stations = new int[64];
+        int[] lines = new int[64];
+        int stationCount;
+        int lineCount;
+
+        RouteIds of(Path path) {
+            List<Station> pathStations = path.getStations();
+            List<Line> pathLines = path.getLines();
+            reserve(pathStations.size(), pathLines.size());
+            for (int i = 0; i < stationCount; i++) {
+                stations[i] = pathStations.get(i).getId();
+            }
+            for (int i = 0; i < lineCount; i++) {
+                lines[i] = pathLines.get(i).getId();
+            }
+            return this;
+        }
+
+        RouteIds of(CompactPath path) {
+            reserve(path.getStationCount(), path.getStationCount() - 1);
+            path.copyIds(stations, lines);
+            return this;
+        }
+
+        private void reserve(int stationCount, int lineCount) {
+            if (stationCount == 0) {
+                throw new IllegalArgumentException("路径没有站点");
+            }
+            if (stations.length < stationCount) {
+                stations = new int[Math.max(stationCount, stations.length * 2)];
+            }
+            if (lines.length < lineCount) {
+                lines = new int[Math.max(lineCount, lines.length * 2)];
+            }
+            this.stationCount = stationCount;
+            this.lineCount = lineCount;
+        }
+    }
+
+    public RouteRenderer(SubwaySystem subwaySystem, PricingSystem pricingSystem) {
+        this.pricingSystem = pricingSystem;
+        int stationCount = subwaySystem.getStationCount();
+        int lineCount = subwaySystem.getLineCount();
+        stationNames = new String[stationCount];
+        stationNameBytes = new byte[stationCount][];
+        stationJson = new String[stationCount];
+        stationJsonBytes = new byte[stationCount][];
+        for (int i = 0; i < stationCount; i++) {
+            stationNames[i] = subwaySystem.getStationById(i).getName();
+            stationNameBytes[i] = bytes(stationNames[i]);
+            stationJson[i] = jsonString(stationNames[i]);
+            stationJsonBytes[i] = bytes(stationJson[i]);
+        }
+        lineNames = new String[lineCount];
+        lineNameBytes = new byte[lineCount][];
+        lineJson = new String[lineCount];
+        lineJsonBytes = new byte[lineCount][];
+        for (int i = 0; i < lineCount; i++) {
+            lineNames[i] = subwaySystem.getLineById(i).getName();
+            lineNameBytes[i] = bytes(lineNames[i]);
+            lineJson[i] = jsonString(lineNames[i]);
+            lineJsonBytes[i] = bytes(lineJson[i]);
+        }
+    }
+
+    /**
+     * 以文本形式输出乘车指南
+     */
+    public void renderText(Path path, Appendable out) throws IOException {
+        renderText(routeIds.get().of(path), path.getTotalDistance(), path.getTransferCount(), out);
+    }
+
+    /**
+     * 以文本形式输出乘车指南
+     */
+    public void renderText(CompactPath path, Appendable out) throws IOException {
+        renderText(routeIds.get().of(path), path.getTotalDistance(), path.getTransferCount(), out);
+    }
+
+    /**
+     * 以文本形式将乘车指南的UTF-8字节写入缓冲区
+     */
+    public void renderText(Path path, ByteBuffer out) {
+        renderText(routeIds.get().of(path), path.getTotalDistance(), path.getTransferCount(), out);
+    }
+
+    /**
+     * 以文本形式将乘车指南的UTF-8字节写入缓冲区
+     */
+    public void renderText(CompactPath path, ByteBuffer out) {
+        renderText(routeIds.get().of(path), path.getTotalDistance(), path.getTransferCount(), out);
+    }
+
+    /**
+     * 以JSON形式输出路径，包含距离、换乘次数、票价、站点和线路
+     */
+    public void renderJson(Path path, Appendable out) throws IOException {
+        renderJson(routeIds.get().of(path), path.getTotalDistance(), path.getTransferCount(), out);
+    }
+
+    /**
+     * 以JSON形式输出路径，包含距离、换乘次数、票价、站点和线路
+     */
+    public void renderJson(CompactPath path, Appendable out) throws IOException {
+        renderJson(routeIds.get().of(path), path.getTotalDistance(), path.getTransferCount(), out);
+    }
+
+    /**
+     * 以JSON形式将路径的UTF-8字节写入缓冲区
+     */
+    public void renderJson(Path path, ByteBuffer out) {
+        renderJson(routeIds.get().of(path), path.getTotalDistance(), path.getTransferCount(), out);
+    }
+
+    /**
+     * 以JSON形式将路径的UTF-8字节写入缓冲区
+     */
+    public void renderJson(CompactPath path, ByteBuffer out) {
+        renderJson(routeIds.get().of(path), path.getTotalDistance(), path.getTransferCount(), out);
+    }
+
+    private void renderText(RouteIds route, double distance, int transfers, Appendable out) throws IOException {
+        int[] stations = route.stations;
+        int[] lines = route.lines;
+        out.append("乘车路线：\n从 ").append(stationNames[stations[0]]);
+        if (route.lineCount > 0) {
+            out.append(" 乘坐 ").append(lineNames[lines[0]]);
+        }
+        for (int i = 1; i < route.stationCount; i++) {
+            // 下一段换乘了其他线路
+            if (i < route.lineCount && lines[i - 1] != lines[i]) {
+                out.append(" 到 ").append(stationNames[stations[i]]);
+                out.append("\n换乘 ").append(lineNames[lines[i]]);
+            } else if (i == route.stationCount - 1) {
+                out.append(" 到终点站 ").append(stationNames[stations[i]]);
+            }
+        }
+        out.append("\n总距离: ");
+        appendFixed(roundHundredths(distance), 2, out);
+        out.append("公里\n换乘次数: ");
+        appendFixed(transfers, 0, out);
+    }
+
+    private void renderText(RouteIds route, double distance, int transfers, ByteBuffer out) {
+        int[] stations = route.stations;
+        int[] lines = route.lines;
+        out.put(TEXT_HEADER).put(stationNameBytes[stations[0]]);
+        if (route.lineCount > 0) {
+            out.put(TEXT_TAKE).put(lineNameBytes[lines[0]]);
+        }
+        for (int i = 1; i < route.stationCount; i++) {
+            if (i < route.lineCount && lines[i - 1] != lines[i]) {
+                out.put(TEXT_TO).put(stationNameBytes[stations[i]]);
+                out.put(TEXT_TRANSFER).put(lineNameBytes[lines[i]]);
+            } else if (i == route.stationCount - 1) {
+                out.put(TEXT_TO_TERMINAL).put(stationNameBytes[stations[i]]);
+            }
+        }
+        out.put(TEXT_DISTANCE);
+        putFixed(roundHundredths(distance), 2, out);
+        out.put(TEXT_KILOMETERS).put(TEXT_TRANSFERS);
+        putFixed(transfers, 0, out);
+    }
+
+    private void renderJson(RouteIds route, double distance, int transfers, Appendable out) throws IOException {
+        int[] stations = route.stations;
+        int[] lines = route.lines;
+        out.append("{\"distance\":");
+        appendFixed(roundHundredths(distance), 2, out);
+        out.append(",\"transfers\":");
+        appendFixed(transfers, 0, out);
+        out.append(",\"fare\":");
+        appendFixed(Math.round(pricingSystem.calculateFare(distance) * 10), 1, out);
+        out.append(",\"wuhanTongFare\":");
+        appendFixed(Math.round(pricingSystem.calculateWuhanTongFare(distance) * 10), 1, out);
+        out.append(",\"stations\":[");
+        for (int i = 0; i < route.stationCount; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(stationJson[stations[i]]);
+        }
+        out.append("],\"lines\":[");
+        for (int i = 0; i < route.lineCount; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(lineJson[lines[i]]);
+        }
+        out.append("]}");
+    }
+
+    private void renderJson(RouteIds route, double distance, int transfers, ByteBuffer out) {
+        int[] stations = route.stations;
+        int[] lines = route.lines;
+        out.put(JSON_DISTANCE);
+        putFixed(roundHundredths(distance), 2, out);
+        out.put(JSON_TRANSFERS);
+        putFixed(transfers, 0, out);
+        out.put(JSON_FARE);
+        putFixed(Math.round(pricingSystem.calculateFare(distance) * 10), 1, out);
+        out.put(JSON_WUHAN_TONG_FARE);
+        putFixed(Math.round(pricingSystem.calculateWuhanTongFare(distance) * 10), 1, out);
+        out.put(JSON_STATIONS);
+        for (int i = 0; i < route.stationCount; i++) {
+            if (i > 0) {
+                out.put((byte) ',');
+            }
+            out.put(stationJsonBytes[stations[i]]);
+        }
+        out.put(JSON_LINES);
+        for (int i = 0; i < route.lineCount; i++) {
+            if (i > 0) {
+                out.put((byte) ',');
+            }
+            out.put(lineJsonBytes[lines[i]]);
+        }
+        out.put(JSON_END);
+    }
+
+    /**
+     * 将距离换算为百分之一公里的整数并四舍五入，结果与String.format("%.2f")一致：
+     * 只有当距离就是最接近x.xx5的那个double时才向上舍入
+     */
+    private static long roundHundredths(double distance) {
+        long hundredths = (long) Math.floor(distance * 100) - 1;
+        // (2n+1)/200.0 是最接近n+0.5个百分之一公里的double
+        while (distance >= (2 * hundredths + 1) / 200.0) {
+            hundredths++;
+        }
+        return hundredths;
+    }
+
+    /**
+     * 以两位小数输出距离，结果与String.format("%.2f")相同，但小数点不受默认区域设置影响，可以用于JSON和TSV
+     */
+    static void appendDistance(double distance, StringBuilder out) {
+        try {
+            appendFixed(roundHundredths(distance), 2, out);
+        } catch (IOException e) {
+            // StringBuilder不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 以两位小数格式化距离，见appendDistance
+     */
+    static String formatDistance(double distance) {
+        StringBuilder sb = new StringBuilder(8);
+        appendDistance(distance, sb);
+        return sb.toString();
+    }
+
+    /**
+     * 输出定点数，value为实际数值乘以10的scale次方
+     */
+    private static void appendFixed(long value, int scale, Appendable out) throws IOException {
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        long divisor = 1;
+        for (int i = 0; i < scale; i++) {
+            divisor *= 10;
+        }
+        long integer = value / divisor;
+        long high = 1;
+        while (high <= integer / 10) {
+            high *= 10;
+        }
+        for (; high > 0; high /= 10) {
+            out.append((char) ('0' + integer / high % 10));
+        }
+        if (scale > 0) {
+            out.append('.');
+            long fraction = value % divisor;
+            for (long digit = divisor / 10; digit > 0; digit /= 10) {
+                out.append((char) ('0' + fraction / digit % 10));
+            }
+        }
+    }
+
+    private static void putFixed(long value, int scale, ByteBuffer out) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        for (int i = 0; i < scale; i++) {
+            divisor *= 10;
+        }
+        long integer = value / divisor;
+        long high = 1;
+        while (high <= integer / 10) {
+            high *= 10;
+        }
+        for (; high > 0; high /= 10) {
+            out.put((byte) ('0' + integer / high % 10));
+        }
+        if (scale > 0) {
+            out.put((byte) '.');
+            long fraction = value % divisor;
+            for (long digit = divisor / 10; digit > 0; digit /= 10) {
+                out.put((byte) ('0' + fraction / digit % 10));
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 将字符串转为带引号的JSON字符串
+     */
+    static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,375 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * 预先计算的路由表快照，保存在堆外内存中
+ *
+ * 包含所有站点对的最短距离（double）、最短路径上到达终点的前驱边（int）以及普通票价和武汉通票价（int，分），
+ * 存放在一个直接缓冲区或内存映射文件中，不占用Java堆，也不增加垃圾回收的扫描量。
+ * 缓冲区只通过绝对位置读取，可以被多个查询线程同时使用。
+ * getDistanceTable和getFareTable返回直接读取缓冲区的DistanceTable和FareTable视图，每个视图持有快照的一个引用。
+ *
+ * 缓冲区以一个头部开始：魔数、版本、站点数、边数和网络图与计价规则的SHA-256指纹。
+ * 使用映射文件时，已有文件的头部与当前网络图和计价规则一致就直接映射，不重新计算；
+ * 否则重新计算并写入临时文件，写完并同步到磁盘后改名替换旧文件，已经映射旧文件的快照不受影响。
+ *
+ * 快照使用引用计数管理内存：创建者持有一个引用，其他线程通过retain获得引用，
+ * 每个引用（包括视图持有的引用）用完后调用close释放，最后一个引用释放时立即释放堆外内存（见DirectBuffers）。
+ */
+public class RoutingSnapshot implements AutoCloseable {
+    private static final int MAGIC = 0x53425752; // "SBWR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64; // 魔数、版本、站点数、边数、32字节指纹，补齐到8的倍数
+    private static final int FINGERPRINT_OFFSET = 16;
+
+    private final NetworkGraph graph;
+    private final PricingSystem pricingSystem;
+    private final int stationCount;
+    private final ByteBuffer buffer;
+    private final int predecessorOffset; // 前驱边表在缓冲区中的起始位置
+    private final int standardFareOffset; // 普通票价表的起始位置
+    private final int wuhanTongFareOffset; // 武汉通票价表的起始位置
+    private final File file; // 内存映射文件，不使用文件时为null
+    private final boolean loadedFromFile; // 是否直接映射了已有的文件
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private RoutingSnapshot(NetworkGraph graph, PricingSystem pricingSystem, ByteBuffer buffer, File file,
+                            boolean loadedFromFile) {
+        this.graph = graph;
+        this.pricingSystem = pricingSystem;
+        this.stationCount = graph.getStationCount();
+        this.buffer = buffer;
+        int pairs = stationCount * stationCount;
+        this.predecessorOffset = HEADER_SIZE + pairs * 8;
+        this.standardFareOffset = predecessorOffset + pairs * 4;
+        this.wuhanTongFareOffset = standardFareOffset + pairs * 4;
+        this.file = file;
+        this.loadedFromFile = loadedFromFile;
+    }
+
+    /**
+     * 在堆外内存中计算路由表
+     * @param graph 网络图
+     * @param pricingSystem 计价系统
+     * @return 快照，调用者持有一个引用
+     */
+    public static RoutingSnapshot build(NetworkGraph graph, PricingSystem pricingSystem) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(requiredBytes(graph)).order(ByteOrder.nativeOrder());
+        RoutingSnapshot snapshot = new RoutingSnapshot(graph, pricingSystem, buffer, null, false);
+        snapshot.fill();
+        snapshot.writeHeader(fingerprint(graph, pricingSystem));
+        return snapshot;
+    }
+
+    /**
+     * 映射路由表文件，由操作系统按需换入换出；文件不存在或与网络图、计价规则不一致时重新计算并替换该文件
+     * @param graph 网络图
+     * @param pricingSystem 计价系统
+     * @param file 映射文件
+     * @return 快照，调用者持有一个引用
+     */
+    public static RoutingSnapshot open(NetworkGraph graph, PricingSystem pricingSystem, File file)
+            throws IOException {
+        int size = requiredBytes(graph);
+        byte[] fingerprint = fingerprint(graph, pricingSystem);
+        if (file.isFile() && file.length() == size) {
+            ByteBuffer buffer;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileChannel channel = raf.getChannel()) {
+                // 映射在通道关闭后仍然有效
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.nativeOrder());
+            }
+            RoutingSnapshot snapshot = new RoutingSnapshot(graph, pricingSystem, buffer, file, true);
+            if (snapshot.matches(fingerprint)) {
+                return snapshot;
+            }
+            snapshot.close();
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile("." + file.getName() + "-", ".tmp", directory);
+        try {
+            MappedByteBuffer buffer;
+            try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                raf.setLength(size);
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            buffer.order(ByteOrder.nativeOrder());
+            RoutingSnapshot snapshot = new RoutingSnapshot(graph, pricingSystem, buffer, file, false);
+            try {
+                snapshot.fill();
+                snapshot.writeHeader(fingerprint);
+                buffer.force();
+                try {
+                    Files.move(temp.toPath(), file.toPath(),
+                               StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException | RuntimeException e) {
+                snapshot.close();
+                throw e;
+            }
+            return snapshot;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static int requiredBytes(NetworkGraph graph) {
+        long stationCount = graph.getStationCount();
+        long size = HEADER_SIZE + stationCount * stationCount * 20;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("站点数过多，路由表超过2GB: " + stationCount);
+        }
+        return (int) size;
+    }
+
+    /**
+     * 网络图（站点数、各边的起点、终点、线路和距离）和计价规则的SHA-256指纹，两者都相同时路由表的内容相同
+     */
+    private static byte[] fingerprint(NetworkGraph graph, PricingSystem pricingSystem) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 所有JDK都必须支持SHA-256
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer record = ByteBuffer.allocate(24);
+        record.putInt(graph.getStationCount()).putInt(graph.getEdgeCount()).putInt(graph.getLineCount());
+        digest.update(record.array(), 0, record.position());
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            record.clear();
+            record.putInt(graph.getSource(edge)).putInt(graph.getTarget(edge)).putInt(graph.getLine(edge))
+                  .putDouble(graph.getDistance(edge));
+            digest.update(record.array(), 0, record.position());
+        }
+        for (double threshold : pricingSystem.getDistanceTiers()) {
+            record.clear();
+            record.putDouble(threshold);
+            digest.update(record.array(), 0, record.position());
+        }
+        for (int tier = 0; tier < pricingSystem.getFareTierCount(); tier++) {
+            record.clear();
+            record.putDouble(pricingSystem.getTierFare(tier)).putDouble(pricingSystem.getTierWuhanTongFare(tier));
+            digest.update(record.array(), 0, record.position());
+        }
+        return digest.digest();
+    }
+
+    private boolean matches(byte[] fingerprint) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != stationCount || buffer.getInt(12) != graph.getEdgeCount()) {
+            return false;
+        }
+        for (int i = 0; i < fingerprint.length; i++) {
+            if (buffer.get(FINGERPRINT_OFFSET + i) != fingerprint[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 写入头部，魔数最后写入
+     */
+    private void writeHeader(byte[] fingerprint) {
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, stationCount);
+        buffer.putInt(12, graph.getEdgeCount());
+        for (int i = 0; i < fingerprint.length; i++) {
+            buffer.put(FINGERPRINT_OFFSET + i, fingerprint[i]);
+        }
+        buffer.putInt(0, MAGIC);
+    }
+
+    /**
+     * 并行计算每个起点的最短路径树，各起点写入缓冲区中互不重叠的区域；每一行的票价用FareKernels批量计算
+     */
+    private void fill() {
+        FareKernels kernels = new FareKernels(pricingSystem);
+        ThreadLocal<ShortestPathTree> trees = ThreadLocal.withInitial(() -> new ShortestPathTree(graph));
+        IntStream.range(0, stationCount).parallel().forEach(source -> {
+            ShortestPathTree tree = trees.get();
+            tree.compute(source);
+            double[] distances = new double[stationCount];
+            tree.copyDistances(distances, 0);
+            int[] standardFares = new int[stationCount];
+            int[] wuhanTongFares = new int[stationCount];
+            kernels.calculateFareTable(distances, standardFares, wuhanTongFares, stationCount);
+            int row = source * stationCount;
+            for (int target = 0; target < stationCount; target++) {
+                buffer.putDouble(HEADER_SIZE + (row + target) * 8, distances[target]);
+                buffer.putInt(predecessorOffset + (row + target) * 4, tree.getPredecessorEdge(target));
+                buffer.putInt(standardFareOffset + (row + target) * 4, standardFares[target]);
+                buffer.putInt(wuhanTongFareOffset + (row + target) * 4, wuhanTongFares[target]);
+            }
+        });
+    }
+
+    /**
+     * 获得一个引用，用完后调用close
+     * @return 快照已经释放时返回false
+     */
+    public boolean retain() {
+        while (true) {
+            int count = references.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放一个引用，最后一个引用释放时释放堆外内存
+     */
+    @Override
+    public void close() {
+        int count = references.decrementAndGet();
+        if (count == 0) {
+            DirectBuffers.free(buffer);
+        } else if (count < 0) {
+            throw new IllegalStateException("路由表快照已经释放");
+        }
+    }
+
+    public boolean isReleased() {
+        return references.get() <= 0;
+    }
+
+    public NetworkGraph getGraph() {
+        return graph;
+    }
+
+    public PricingSystem getPricingSystem() {
+        return pricingSystem;
+    }
+
+    /**
+     * 映射文件，不使用文件时为null
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 是否直接映射了已有的文件（没有重新计算）
+     */
+    public boolean isLoadedFromFile() {
+        return loadedFromFile;
+    }
+
+    /**
+     * 占用的堆外内存（字节）
+     */
+    public long getSizeInBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 直接读取本快照的最短距离表，视图持有快照的一个新引用，用完后调用视图的close
+     */
+    public DistanceTable getDistanceTable() {
+        ensureRetained();
+        return new DistanceTable(stationCount, section(HEADER_SIZE, 8).asDoubleBuffer(), this);
+    }
+
+    /**
+     * 直接读取本快照的票价表，视图持有快照的一个新引用，用完后调用视图的close
+     */
+    public FareTable getFareTable() {
+        ensureRetained();
+        return new FareTable(stationCount, section(standardFareOffset, 4).asIntBuffer(),
+                             section(wuhanTongFareOffset, 4).asIntBuffer(), this);
+    }
+
+    /**
+     * 为视图获得一个引用
+     */
+    private void ensureRetained() {
+        if (!retain()) {
+            throw new IllegalStateException("路由表快照已经释放");
+        }
+    }
+
+    /**
+     * 缓冲区中从offset开始、每个站点对elementSize字节的一段
+     */
+    private ByteBuffer section(int offset, int elementSize) {
+        ByteBuffer section = buffer.duplicate();
+        section.position(offset).limit(offset + stationCount * stationCount * elementSize);
+        return section.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * 两站之间的最短距离
+     * @return 距离（公里），不可达时为Double.POSITIVE_INFINITY
+     */
+    public double getDistance(int source, int target) {
+        return buffer.getDouble(HEADER_SIZE + (source * stationCount + target) * 8);
+    }
+
+    /**
+     * 从source出发的最短路径上到达target的边
+     * @return 边编号，source等于target或不可达时为-1
+     */
+    public int getPredecessorEdge(int source, int target) {
+        return buffer.getInt(predecessorOffset + (source * stationCount + target) * 4);
+    }
+
+    /**
+     * 重建最短路径经过的边
+     * @return 边编号，从起点到终点排列；不可达时为null
+     */
+    public int[] getPathEdges(int source, int target) {
+        if (getDistance(source, target) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        int count = 0;
+        for (int station = target; station != source; count++) {
+            station = graph.getSource(getPredecessorEdge(source, station));
+        }
+        int[] edges = new int[count];
+        int station = target;
+        for (int i = count - 1; i >= 0; i--) {
+            edges[i] = getPredecessorEdge(source, station);
+            station = graph.getSource(edges[i]);
+        }
+        return edges;
+    }
+
+    /**
+     * 重建最短路径
+     * @return 路径，不可达时为null
+     */
+    public Path getPath(SubwaySystem subwaySystem, int source, int target) {
+        int[] edges = getPathEdges(source, target);
+        if (edges == null) {
+            return null;
+        }
+        Path path = new Path();
+        path.addFirstStation(subwaySystem.getStationById(source));
+        for (int edge : edges) {
+            path.addStation(subwaySystem.getStationById(graph.getTarget(edge)),
+                            subwaySystem.getLineById(graph.getLine(edge)), graph.getDistance(edge));
+        }
+        return path;
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * 单源最短路径树，在NetworkGraph上运行Dijkstra算法
+ *
+ * 距离和前驱边保存在基本类型数组中，多次计算复用同一组数组，不产生额外对象。
+ * 一个实例只能在一个线程中使用，并行计算时每个线程各自创建实例。
+ */
+public class ShortestPathTree {
+    private final NetworkGraph graph;
+    private final double[] distances; // 站点编号->到源点的最短距离，不可达时为正无穷
+    private final int[] predecessorEdges; // 站点编号->最短路径上到达该站的边，源点和不可达站点为-1
+    private double[] heapKeys;
+    private int[] heapStations;
+    private int heapSize;
+    private int source = -1;
+
+    public ShortestPathTree(NetworkGraph graph) {
+        this.graph = graph;
+        int stationCount = graph.getStationCount();
+        distances = new double[stationCount];
+        predecessorEdges = new int[stationCount];
+        heapKeys = new double[Math.max(16, stationCount)];
+        heapStations = new int[heapKeys.length];
+    }
+
+    /**
+     * 计算从源点出发的最短路径树
+     * @param source 源点站点编号
+     */
+    public void compute(int source) {
+        this.source = source;
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(predecessorEdges, -1);
+        heapSize = 0;
+        distances[source] = 0;
+        push(0, source);
+
+        while (heapSize > 0) {
+            double distance = heapKeys[0];
+            int station = pop();
+            if (distance > distances[station]) {
+                // 已有更短的距离，忽略过期的堆元素
+                continue;
+            }
+            for (int edge = graph.getFirstEdge(station); edge < graph.getEdgeEnd(station); edge++) {
+                int next = graph.getTarget(edge);
+                double candidate = distance + graph.getDistance(edge);
+                if (candidate < distances[next]) {
+                    distances[next] = candidate;
+                    predecessorEdges[next] = edge;
+                    push(candidate, next);
+                }
+            }
+        }
+    }
+
+    public NetworkGraph getGraph() {
+        return graph;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * 到源点的最短距离，不可达时为Double.POSITIVE_INFINITY
+     */
+    public double getDistance(int station) {
+        return distances[station];
+    }
+
+    /**
+     * 最短路径上到达该站的边，源点或不可达时为-1
+     */
+    public int getPredecessorEdge(int station) {
+        return predecessorEdges[station];
+    }
+
+    public boolean isReachable(int station) {
+        return distances[station] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * 复制所有站点到源点的最短距离
+     */
+    public void copyDistances(double[] target, int offset) {
+        System.arraycopy(distances, 0, target, offset, distances.length);
+    }
+
+    private void push(double key, int station) {
+        if (heapSize == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapStations = Arrays.copyOf(heapStations, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= key) {
+                break;
+            }
+            heapKeys[i] = heapKeys[parent];
+            heapStations[i] = heapStations[parent];
+            i = parent;
+        }
+        heapKeys[i] = key;
+        heapStations[i] = station;
+    }
+
+    private int pop() {
+        int result = heapStations[0];
+        heapSize--;
+        double key = heapKeys[heapSize];
+        int station = heapStations[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (heapKeys[child] >= key) {
+                break;
+            }
+            heapKeys[i] = heapKeys[child];
+            heapStations[i] = heapStations[child];
+            i = child;
+        }
+        heapKeys[i] = key;
+        heapStations[i] = station;
+        return result;
+    }
+}
@@ -0,0 +1,312 @@
+import java.util.Arrays;
+
+/**
+ * 站点空间索引（k-d树），支持最近K个站点和半径范围查询
+ *
+ * 经纬度按站点编号保存在double数组中（没有坐标的站点为NaN）。
+ * 建立索引时以所有站点的平均纬度为基准，把经纬度投影为以公里为单位的平面坐标，城市范围内的误差可以忽略。
+ * k-d树是隐式的：站点按中位数递归划分后存放在一个数组中，区间[from, to)的中点即为该子树的根，
+ * 深度为偶数时按x划分，奇数时按y划分，不需要节点对象。
+ */
+public class SpatialIndex {
+    private static final double KM_PER_DEGREE_LATITUDE = 110.574;
+    private static final double KM_PER_DEGREE_LONGITUDE = 111.320;
+
+    private final double[] latitudes; // 站点编号->纬度
+    private final double[] longitudes; // 站点编号->经度
+    private final double kmPerDegreeLongitude; // 基准纬度处每度经度的公里数
+    private final int[] treeStations; // k-d树中的站点编号
+    private final double[] treeX; // k-d树中的平面坐标（公里）
+    private final double[] treeY;
+
+    /**
+     * @param latitudes 站点编号->纬度，没有坐标的站点为NaN
+     * @param longitudes 站点编号->经度，没有坐标的站点为NaN
+     */
+    public SpatialIndex(double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("纬度和经度数组长度不一致");
+        }
+        this.latitudes = latitudes.clone();
+        this.longitudes = longitudes.clone();
+
+        int count = 0;
+        double latitudeSum = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            if (hasLocation(i)) {
+                count++;
+                latitudeSum += latitudes[i];
+            }
+        }
+        kmPerDegreeLongitude = KM_PER_DEGREE_LONGITUDE
+            * Math.cos(Math.toRadians(count == 0 ? 0 : latitudeSum / count));
+
+        treeStations = new int[count];
+        treeX = new double[count];
+        treeY = new double[count];
+        int index = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            if (hasLocation(i)) {
+                treeStations[index] = i;
+                treeX[index] = projectX(longitudes[i]);
+                treeY[index] = projectY(latitudes[i]);
+                index++;
+            }
+        }
+        build(0, count, 0);
+    }
+
+    /**
+     * 按中位数递归划分区间
+     */
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        double[] keys = depth % 2 == 0 ? treeX : treeY;
+        // 区间内按划分坐标排序（只在建立索引时执行，站点数不多，排序比选择算法更简单）
+        Integer[] sorted = new Integer[to - from];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = from + i;
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(keys[a], keys[b]));
+        int[] stations = new int[sorted.length];
+        double[] xs = new double[sorted.length];
+        double[] ys = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            stations[i] = treeStations[sorted[i]];
+            xs[i] = treeX[sorted[i]];
+            ys[i] = treeY[sorted[i]];
+        }
+        System.arraycopy(stations, 0, treeStations, from, stations.length);
+        System.arraycopy(xs, 0, treeX, from, xs.length);
+        System.arraycopy(ys, 0, treeY, from, ys.length);
+
+        int middle = (from + to) >>> 1;
+        build(from, middle, depth + 1);
+        build(middle + 1, to, depth + 1);
+    }
+
+    private double projectX(double longitude) {
+        return longitude * kmPerDegreeLongitude;
+    }
+
+    private double projectY(double latitude) {
+        return latitude * KM_PER_DEGREE_LATITUDE;
+    }
+
+    public boolean hasLocation(int station) {
+        return !Double.isNaN(latitudes[station]) && !Double.isNaN(longitudes[station]);
+    }
+
+    public double getLatitude(int station) {
+        return latitudes[station];
+    }
+
+    public double getLongitude(int station) {
+        return longitudes[station];
+    }
+
+    /**
+     * 有坐标的站点数
+     */
+    public int size() {
+        return treeStations.length;
+    }
+
+    /**
+     * 两个坐标之间的距离（公里）
+     */
+    public double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dx = projectX(longitude1) - projectX(longitude2);
+        double dy = projectY(latitude1) - projectY(latitude2);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * 距离指定坐标最近的k个站点
+     * @param latitude 纬度
+     * @param longitude 经度
+     * @param k 站点数
+     * @return 按距离从近到远排列的站点
+     */
+    public NearestStations findNearest(double latitude, double longitude, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("站点数必须为正数: " + k);
+        }
+        KnnSearch search = new KnnSearch(Math.min(k, treeStations.length), projectX(longitude), projectY(latitude));
+        search.visit(0, treeStations.length, 0);
+        return search.result();
+    }
+
+    /**
+     * 距离指定坐标不超过radius公里的站点
+     * @param latitude 纬度
+     * @param longitude 经度
+     * @param radius 半径（公里）
+     * @return 按距离从近到远排列的站点
+     */
+    public NearestStations findWithinRadius(double latitude, double longitude, double radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("半径不能为负数: " + radius);
+        }
+        double x = projectX(longitude);
+        double y = projectY(latitude);
+        int[] stations = new int[16];
+        double[] squared = new double[16];
+        int count = 0;
+        double radiusSquared = radius * radius;
+
+        // 显式栈保存待访问的区间和深度
+        int[] stack = new int[3 * 64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = treeStations.length;
+        stack[top++] = 0;
+        while (top > 0) {
+            int depth = stack[--top];
+            int to = stack[--top];
+            int from = stack[--top];
+            if (from >= to) {
+                continue;
+            }
+            int middle = (from + to) >>> 1;
+            double dx = treeX[middle] - x;
+            double dy = treeY[middle] - y;
+            double d = dx * dx + dy * dy;
+            if (d <= radiusSquared) {
+                if (count == stations.length) {
+                    stations = Arrays.copyOf(stations, count * 2);
+                    squared = Arrays.copyOf(squared, count * 2);
+                }
+                stations[count] = treeStations[middle];
+                squared[count] = d;
+                count++;
+            }
+            double delta = depth % 2 == 0 ? x - treeX[middle] : y - treeY[middle];
+            if (delta >= -radius) {
+                stack[top++] = middle + 1;
+                stack[top++] = to;
+                stack[top++] = depth + 1;
+            }
+            if (delta <= radius) {
+                stack[top++] = from;
+                stack[top++] = middle;
+                stack[top++] = depth + 1;
+            }
+        }
+        return sorted(stations, squared, count);
+    }
+
+    /**
+     * 按距离插入排序（结果通常只有几个到几十个站点），并把距离的平方换算为距离
+     */
+    private static NearestStations sorted(int[] stations, double[] squared, int count) {
+        int[] resultStations = Arrays.copyOf(stations, count);
+        double[] distances = Arrays.copyOf(squared, count);
+        for (int i = 1; i < count; i++) {
+            int station = resultStations[i];
+            double distance = distances[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > distance) {
+                resultStations[j + 1] = resultStations[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            resultStations[j + 1] = station;
+            distances[j + 1] = distance;
+        }
+        for (int i = 0; i < count; i++) {
+            distances[i] = Math.sqrt(distances[i]);
+        }
+        return new NearestStations(resultStations, distances);
+    }
+
+    /**
+     * 最近k个站点的搜索状态，以最大堆保存当前的k个候选
+     */
+    private class KnnSearch {
+        private final int k;
+        private final double x;
+        private final double y;
+        private final int[] heapStations;
+        private final double[] heapDistances; // 距离的平方
+        private int size;
+
+        KnnSearch(int k, double x, double y) {
+            this.k = k;
+            this.x = x;
+            this.y = y;
+            heapStations = new int[k];
+            heapDistances = new double[k];
+        }
+
+        void visit(int from, int to, int depth) {
+            if (from >= to || k == 0) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            double dx = treeX[middle] - x;
+            double dy = treeY[middle] - y;
+            offer(treeStations[middle], dx * dx + dy * dy);
+
+            double delta = depth % 2 == 0 ? x - treeX[middle] : y - treeY[middle];
+            // 先访问查询点所在的一侧，另一侧只有可能更近时才访问
+            if (delta < 0) {
+                visit(from, middle, depth + 1);
+                if (size < k || delta * delta < heapDistances[0]) {
+                    visit(middle + 1, to, depth + 1);
+                }
+            } else {
+                visit(middle + 1, to, depth + 1);
+                if (size < k || delta * delta < heapDistances[0]) {
+                    visit(from, middle, depth + 1);
+                }
+            }
+        }
+
+        private void offer(int station, double distance) {
+            if (size < k) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (heapDistances[parent] >= distance) {
+                        break;
+                    }
+                    heapDistances[i] = heapDistances[parent];
+                    heapStations[i] = heapStations[parent];
+                    i = parent;
+                }
+                heapDistances[i] = distance;
+                heapStations[i] = station;
+                return;
+            }
+            if (distance >= heapDistances[0]) {
+                return;
+            }
+            // 替换堆顶（当前最远的候选）并下沉
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heapDistances[child + 1] > heapDistances[child]) {
+                    child++;
+                }
+                if (heapDistances[child] <= distance) {
+                    break;
+                }
+                heapDistances[i] = heapDistances[child];
+                heapStations[i] = heapStations[child];
+                i = child;
+            }
+            heapDistances[i] = distance;
+            heapStations[i] = station;
+        }
+
+        NearestStations result() {
+            return sorted(heapStations, heapDistances, size);
+        }
+    }
+}
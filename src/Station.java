@@ -7,11 +7,17 @@ import java.util.Objects;
  */
 public class Station {
     private String name; // 站点名称
+    private int id; // 站点编号，按加载顺序从0开始
     private Map<String, Line> lines; // 该站点所属的线路，线路名称->线路对象
     private Map<Station, Edge> adjacentStations; // 相邻站点及连接边
     
     public Station(String name) {
+        this(name, -1);
+    }
+    
+    public Station(String name, int id) {
         this.name = name;
+        this.id = id;
         this.lines = new HashMap<>();
         this.adjacentStations = new HashMap<>();
     }
@@ -20,6 +26,10 @@ public class Station {
         return name;
     }
     
+    public int getId() {
+        return id;
+    }
+    
     public void addLine(Line line) {
         lines.put(line.getName(), line);
     }
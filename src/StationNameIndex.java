@@ -0,0 +1,412 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 站点名称索引，支持前缀查询、模糊查询（有界编辑距离）和排序后的自动补全
+ *
+ * 站名和别名（如拼音）按字符建立字典树，以数组保存（第一个子节点、下一个兄弟节点、字符）。
+ * 所有名称排序后依次插入，节点按先序编号，因此任一节点子树中的名称在排序后的名称数组中是连续的一段，
+ * 前缀查询只需找到前缀对应的节点再读取这一段。
+ * 模糊查询在字典树上逐层计算编辑距离矩阵的一行，某一行的最小值超过距离上限时跳过整棵子树。
+ *
+ * 结果排序依次比较：编辑距离、是否完全匹配、是否为站名（而非别名）、站点所属线路数（多者优先）、名称长度。
+ * 搜索使用的矩阵、栈和候选数组是线程本地的缓冲区，每次查询只分配结果数组。
+ */
+public class StationNameIndex {
+    private static final ThreadLocal<SearchBuffer> BUFFERS = new ThreadLocal<SearchBuffer>() {
+        @Override
+        protected SearchBuffer initialValue() {
+            return new SearchBuffer();
+        }
+    };
+
+    private final SubwaySystem subwaySystem;
+    private final int stationCount;
+
+    // 排序后的名称
+    private final String[] keys;
+    private final int[] keyStations; // 名称->站点编号
+    private final boolean[] keyAliases; // 名称是否为别名
+
+    // 字典树
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final char[] labels;
+    private final int[] depths;
+    private final int[] terminalStart; // 节点->在该节点结束的名称范围
+    private final int[] terminalEnd;
+    private final int[] subtreeStart; // 节点->子树中名称的范围
+    private final int[] subtreeEnd;
+    private final int maxDepth;
+
+    /**
+     * @param subwaySystem 已加载数据的地铁系统
+     * @param aliases 站名->别名列表，可以为空
+     */
+    public StationNameIndex(SubwaySystem subwaySystem, Map<String, List<String>> aliases) {
+        this.subwaySystem = subwaySystem;
+        this.stationCount = subwaySystem.getStationCount();
+
+        List<String[]> entries = new ArrayList<>(); // {名称, 站点编号, 是否别名}
+        for (int i = 0; i < stationCount; i++) {
+            entries.add(new String[] {normalize(subwaySystem.getStationById(i).getName()), String.valueOf(i), ""});
+        }
+        for (Map.Entry<String, List<String>> entry : aliases.entrySet()) {
+            Station station = subwaySystem.getStation(entry.getKey());
+            if (station == null) {
+                System.err.println("别名对应的站点不存在: " + entry.getKey());
+                continue;
+            }
+            for (String alias : entry.getValue()) {
+                String key = normalize(alias);
+                if (!key.isEmpty()) {
+                    entries.add(new String[] {key, String.valueOf(station.getId()), "alias"});
+                }
+            }
+        }
+        Collections.sort(entries, (a, b) -> a[0].compareTo(b[0]));
+
+        int keyCount = entries.size();
+        keys = new String[keyCount];
+        keyStations = new int[keyCount];
+        keyAliases = new boolean[keyCount];
+        int nodeCapacity = 1;
+        for (int i = 0; i < keyCount; i++) {
+            String[] entry = entries.get(i);
+            keys[i] = entry[0];
+            keyStations[i] = Integer.parseInt(entry[1]);
+            keyAliases[i] = !entry[2].isEmpty();
+            nodeCapacity += keys[i].length();
+        }
+
+        int[] firstChild = new int[nodeCapacity];
+        int[] nextSibling = new int[nodeCapacity];
+        int[] lastChild = new int[nodeCapacity];
+        char[] labels = new char[nodeCapacity];
+        int[] depths = new int[nodeCapacity];
+        int[] terminalStart = new int[nodeCapacity];
+        int[] terminalEnd = new int[nodeCapacity];
+        int[] subtreeStart = new int[nodeCapacity];
+        int[] subtreeEnd = new int[nodeCapacity];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        Arrays.fill(lastChild, -1);
+
+        // 按排序后的顺序插入，path[d]为上一个名称在深度d的节点
+        int nodeCount = 1;
+        int longest = 0;
+        int[] path = new int[1];
+        String previous = "";
+        for (int i = 0; i < keyCount; i++) {
+            String key = keys[i];
+            longest = Math.max(longest, key.length());
+            if (path.length <= key.length()) {
+                path = Arrays.copyOf(path, key.length() + 1);
+            }
+            int common = 0;
+            while (common < key.length() && common < previous.length()
+                    && key.charAt(common) == previous.charAt(common)) {
+                common++;
+            }
+            for (int d = common; d < key.length(); d++) {
+                int parent = path[d];
+                int node = nodeCount++;
+                labels[node] = key.charAt(d);
+                depths[node] = d + 1;
+                subtreeStart[node] = i;
+                terminalStart[node] = i;
+                terminalEnd[node] = i;
+                if (lastChild[parent] < 0) {
+                    firstChild[parent] = node;
+                } else {
+                    nextSibling[lastChild[parent]] = node;
+                }
+                lastChild[parent] = node;
+                path[d + 1] = node;
+            }
+            int terminal = path[key.length()];
+            if (terminalEnd[terminal] == terminalStart[terminal]) {
+                terminalStart[terminal] = i;
+            }
+            terminalEnd[terminal] = i + 1;
+            for (int d = 0; d <= key.length(); d++) {
+                subtreeEnd[path[d]] = i + 1;
+            }
+            previous = key;
+        }
+
+        this.firstChild = Arrays.copyOf(firstChild, nodeCount);
+        this.nextSibling = Arrays.copyOf(nextSibling, nodeCount);
+        this.labels = Arrays.copyOf(labels, nodeCount);
+        this.depths = Arrays.copyOf(depths, nodeCount);
+        this.terminalStart = Arrays.copyOf(terminalStart, nodeCount);
+        this.terminalEnd = Arrays.copyOf(terminalEnd, nodeCount);
+        this.subtreeStart = Arrays.copyOf(subtreeStart, nodeCount);
+        this.subtreeEnd = Arrays.copyOf(subtreeEnd, nodeCount);
+        this.maxDepth = longest;
+    }
+
+    public StationNameIndex(SubwaySystem subwaySystem) {
+        this(subwaySystem, Collections.<String, List<String>>emptyMap());
+    }
+
+    /**
+     * 统一名称格式：去掉空白，ASCII字母转为小写（用于拼音）
+     */
+    public static String normalize(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 名称以指定前缀开头的站点
+     * @param prefix 前缀
+     * @param limit 最多返回的站点数，不能为负数
+     * @return 站点编号，按排序规则排列
+     */
+    public int[] findByPrefix(String prefix, int limit) {
+        checkLimit(limit);
+        String query = normalize(prefix);
+        int node = 0;
+        for (int i = 0; i < query.length() && node >= 0; i++) {
+            node = findChild(node, query.charAt(i));
+        }
+        if (node < 0) {
+            return new int[0];
+        }
+        SearchBuffer buffer = BUFFERS.get();
+        buffer.ensureCapacity(0, 0, stationCount);
+        Candidates candidates = new Candidates(buffer);
+        for (int key = subtreeStart[node]; key < subtreeEnd[node]; key++) {
+            candidates.add(key, 0, query.length());
+        }
+        return candidates.top(limit);
+    }
+
+    /**
+     * 与输入的编辑距离不超过上限的站点
+     * @param input 输入的名称
+     * @param maxDistance 编辑距离上限
+     * @param limit 最多返回的站点数，不能为负数
+     * @return 站点编号，按排序规则排列
+     */
+    public int[] findSimilar(String input, int maxDistance, int limit) {
+        return search(normalize(input), maxDistance, limit, false);
+    }
+
+    /**
+     * 自动补全：名称的某个前缀与输入的编辑距离不超过上限的站点，完全匹配和距离小的排在前面
+     * @param input 用户已输入的部分名称
+     * @param maxDistance 编辑距离上限，为0时等同于前缀查询
+     * @param limit 最多返回的站点数，不能为负数
+     * @return 站点编号，按排序规则排列
+     */
+    public int[] complete(String input, int maxDistance, int limit) {
+        return search(normalize(input), maxDistance, limit, true);
+    }
+
+    /**
+     * 精确查找名称或别名对应的站点
+     * @return 站点编号，不存在时为-1
+     */
+    public int lookup(String name) {
+        String query = normalize(name);
+        int node = 0;
+        for (int i = 0; i < query.length() && node >= 0; i++) {
+            node = findChild(node, query.charAt(i));
+        }
+        if (node <= 0 || terminalEnd[node] == terminalStart[node]) {
+            return -1;
+        }
+        return keyStations[terminalStart[node]];
+    }
+
+    /**
+     * 在字典树上按编辑距离搜索
+     * @param prefixMatch 为true时比较输入与名称的前缀，否则比较完整名称
+     */
+    private int[] search(String query, int maxDistance, int limit, boolean prefixMatch) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("编辑距离上限不能为负数: " + maxDistance);
+        }
+        checkLimit(limit);
+        int width = query.length() + 1;
+        SearchBuffer buffer = BUFFERS.get();
+        buffer.ensureCapacity((maxDepth + 1) * width, firstChild.length, stationCount);
+        int[] rows = buffer.rows;
+        for (int j = 0; j < width; j++) {
+            rows[j] = j;
+        }
+        Candidates candidates = new Candidates(buffer);
+        // 显式栈：节点及其祖先前缀的最小距离（仅自动补全使用）
+        int[] stack = buffer.stack;
+        int[] inherited = buffer.inherited;
+        int top = 0;
+        // 空前缀与输入的距离为输入长度
+        int rootDistance = prefixMatch && query.length() <= maxDistance ? query.length() : Integer.MAX_VALUE;
+        for (int child = firstChild[0]; child >= 0; child = nextSibling[child]) {
+            stack[top] = child;
+            inherited[top] = rootDistance;
+            top++;
+        }
+
+        while (top > 0) {
+            top--;
+            int node = stack[top];
+            int best = inherited[top];
+            int depth = depths[node];
+            int row = depth * width;
+            int previousRow = row - width;
+            char c = labels[node];
+            rows[row] = depth;
+            int rowMin = depth;
+            for (int j = 1; j < width; j++) {
+                int cost = query.charAt(j - 1) == c ? 0 : 1;
+                int value = Math.min(Math.min(rows[row + j - 1] + 1, rows[previousRow + j] + 1),
+                                     rows[previousRow + j - 1] + cost);
+                rows[row + j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            int distance = rows[row + width - 1];
+
+            if (prefixMatch) {
+                best = Math.min(best, distance);
+                if (rowMin > maxDistance) {
+                    // 更深的前缀不会更接近输入，子树中的名称都使用祖先前缀的距离
+                    if (best <= maxDistance) {
+                        for (int key = subtreeStart[node]; key < subtreeEnd[node]; key++) {
+                            candidates.add(key, best, query.length());
+                        }
+                    }
+                    continue;
+                }
+                if (best <= maxDistance) {
+                    for (int key = terminalStart[node]; key < terminalEnd[node]; key++) {
+                        candidates.add(key, best, query.length());
+                    }
+                }
+            } else {
+                if (distance <= maxDistance) {
+                    for (int key = terminalStart[node]; key < terminalEnd[node]; key++) {
+                        candidates.add(key, distance, query.length());
+                    }
+                }
+                if (rowMin > maxDistance) {
+                    continue;
+                }
+            }
+            for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+                stack[top] = child;
+                inherited[top] = best;
+                top++;
+            }
+        }
+        return candidates.top(limit);
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("返回数量上限不能为负数: " + limit);
+        }
+    }
+
+    private int findChild(int node, char c) {
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            if (labels[child] == c) {
+                return child;
+            }
+            if (labels[child] > c) {
+                // 子节点按字符排序
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 每个线程复用的搜索缓冲区
+     */
+    private static class SearchBuffer {
+        int[] rows = new int[0]; // 编辑距离矩阵，每个深度一行
+        int[] stack = new int[0]; // 待访问的节点
+        int[] inherited = new int[0]; // 待访问节点祖先前缀的最小距离
+        long[] scores = new long[16]; // 候选结果，按找到的数量增长
+        long[] seen = new long[0]; // 已输出站点位图，使用后恢复为全0
+
+        void ensureCapacity(int cells, int nodeCount, int stationCount) {
+            if (rows.length < cells) {
+                rows = new int[cells];
+            }
+            if (stack.length < nodeCount) {
+                stack = new int[nodeCount];
+                inherited = new int[nodeCount];
+            }
+            int words = (stationCount + 63) >>> 6;
+            if (seen.length < words) {
+                seen = new long[words];
+            }
+        }
+    }
+
+    /**
+     * 候选结果，每个候选按排序规则编码为一个long，排序后去掉重复站点
+     */
+    private class Candidates {
+        private final SearchBuffer buffer;
+        private long[] scores;
+        private int size;
+
+        Candidates(SearchBuffer buffer) {
+            this.buffer = buffer;
+            this.scores = buffer.scores;
+        }
+
+        /**
+         * 编码：编辑距离(8位) | 非完全匹配(1位) | 别名(1位) | 255-线路数(8位) | 名称长度(12位) | 站点编号(20位)
+         */
+        void add(int key, int distance, int queryLength) {
+            if (size == scores.length) {
+                scores = Arrays.copyOf(scores, size * 2);
+                buffer.scores = scores;
+            }
+            int station = keyStations[key];
+            int lineCount = Math.min(255, subwaySystem.getStationById(station).getLines().size());
+            int length = Math.min(4095, keys[key].length());
+            long score = (long) Math.min(255, distance) << 42;
+            score |= (long) (keys[key].length() == queryLength && distance == 0 ? 0 : 1) << 41;
+            score |= (long) (keyAliases[key] ? 1 : 0) << 40;
+            score |= (long) (255 - lineCount) << 32;
+            score |= (long) length << 20;
+            score |= station;
+            scores[size++] = score;
+        }
+
+        int[] top(int limit) {
+            Arrays.sort(scores, 0, size);
+            long[] seen = buffer.seen;
+            int[] result = new int[Math.min(limit, size)];
+            int count = 0;
+            for (int i = 0; i < size && count < result.length; i++) {
+                int station = (int) (scores[i] & 0xFFFFF);
+                if ((seen[station >>> 6] & (1L << station)) == 0) {
+                    seen[station >>> 6] |= 1L << station;
+                    result[count++] = station;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                seen[result[i] >>> 6] &= ~(1L << result[i]);
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        }
+    }
+}
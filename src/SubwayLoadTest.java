@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 地铁查询服务的本地压力测试
+ * 启动内嵌的SubwayServer，用大量并发连接请求最短路径接口，统计吞吐量和延迟分位数
+ *
+ * 参数：[并发连接数] [持续秒数] [数据文件]
+ */
+public class SubwayLoadTest {
+    private static final String[][] QUERIES = {
+        {"光谷广场", "中南路"},
+        {"径河", "汉口北"},
+        {"宗关", "洪山广场"},
+        {"常青花园", "钟家村"},
+        {"后湖大道", "王家湾"}
+    };
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String dataFile = args.length > 2 ? args[2] : "src/subway.txt";
+
+        // 保持与并发数相同的长连接
+        System.setProperty("http.maxConnections", String.valueOf(concurrency));
+
+        SubwaySystem subwaySystem = new SubwaySystem();
+        subwaySystem.loadFromFile(dataFile);
+        SubwayServer server = new SubwayServer(subwaySystem, 0);
+        server.start();
+
+        String[] urls = new String[QUERIES.length];
+        for (int i = 0; i < QUERIES.length; i++) {
+            urls[i] = "http://127.0.0.1:" + server.getPort() + "/api/shortest?from="
+                + URLEncoder.encode(QUERIES[i][0], "UTF-8") + "&to=" + URLEncoder.encode(QUERIES[i][1], "UTF-8");
+        }
+
+        System.out.println("并发连接数: " + concurrency + "，持续时间: " + seconds + " 秒"
+            + (VirtualThreads.isAvailable() ? "（虚拟线程）" : "（平台线程）"));
+
+        ExecutorService clients = VirtualThreads.newExecutor();
+        try {
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            AtomicLong errors = new AtomicLong();
+            // 每个客户端线程记录到自己的直方图，内存与请求数无关
+            LoadGenerator.Histogram[] latencies = new LoadGenerator.Histogram[concurrency];
+            CountDownLatch done = new CountDownLatch(concurrency);
+
+            long begin = System.nanoTime();
+            for (int c = 0; c < concurrency; c++) {
+                final int client = c;
+                clients.execute(() -> {
+                    LoadGenerator.Histogram histogram = new LoadGenerator.Histogram();
+                    try {
+                        int count = 0;
+                        while (System.nanoTime() < deadline) {
+                            long start = System.nanoTime();
+                            if (!get(urls[(client + count) % urls.length])) {
+                                errors.incrementAndGet();
+                            }
+                            histogram.record(System.nanoTime() - start);
+                            count++;
+                        }
+                    } finally {
+                        latencies[client] = histogram;
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+            long elapsed = System.nanoTime() - begin;
+
+            LoadGenerator.Histogram all = new LoadGenerator.Histogram();
+            for (LoadGenerator.Histogram histogram : latencies) {
+                all.add(histogram);
+            }
+
+            System.out.println("请求总数: " + all.getTotalCount() + "，失败: " + errors.get());
+            System.out.println(String.format("吞吐量: %.0f 请求/秒", all.getTotalCount() / (elapsed / 1e9)));
+            System.out.println(String.format("p50: %.2f ms，p99: %.2f ms，p99.9: %.2f ms，最大: %.2f ms",
+                all.getPercentile(0.50) / 1e6, all.getPercentile(0.99) / 1e6, all.getPercentile(0.999) / 1e6,
+                all.getMax() / 1e6));
+        } finally {
+            // 内嵌服务器的线程不是守护线程，出错时也要停止，否则进程不会退出
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+
+    private static boolean get(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            byte[] buffer = new byte[4096];
+            while (in != null && in.read(buffer) >= 0) {
+                // 读完响应体以便复用连接
+            }
+            if (in != null) {
+                in.close();
+            }
+            return status == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多个城市地铁网络的注册表
+ *
+ * 网络注册时只记录数据文件，第一次查询时才加载；同一网络的并发首次查询只加载一次。
+ * 所有网络共享一个计价系统和一个名称符号表。
+ * 后台线程定期卸载空闲超时的网络；已加载网络的估算内存超过预算时，按最近访问时间从早到晚卸载其他网络。
+ * 卸载只是丢弃对SubwaySystem的引用，正在使用它的查询不受影响，下次查询时重新加载。
+ */
+public class SubwayRegistry implements AutoCloseable {
+    // 内存估算参数（字节），包括对象头、HashMap条目和名称字符串
+    private static final long BYTES_PER_STATION = 512;
+    private static final long BYTES_PER_EDGE = 160;
+    private static final long BYTES_PER_STATION_PAIR = 12; // 距离表和票价表
+
+    private final PricingSystem pricingSystem = new PricingSystem();
+    private final SymbolTable symbolTable = new SymbolTable();
+    private final Map<String, Network> networks = new ConcurrentHashMap<>();
+    private final long idleNanos;
+    private final long memoryBudget;
+    private final File cacheDirectory;
+    private final ScheduledExecutorService sweeper;
+
+    // 统计信息
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 一个已注册的网络
+     */
+    private static final class Network {
+        final String dataFile;
+        volatile SubwaySystem system; // 未加载或已卸载时为null
+        volatile long lastAccess;
+        volatile long estimatedBytes;
+
+        Network(String dataFile) {
+            this.dataFile = dataFile;
+        }
+    }
+
+    /**
+     * @param idleTimeout 空闲超时，不大于0时不按空闲时间卸载
+     * @param unit 空闲超时的单位
+     * @param memoryBudget 已加载网络的估算内存上限（字节），不大于0时不限制
+     * @param cacheDirectory 预计算缓存目录，为null时不使用缓存
+     */
+    public SubwayRegistry(long idleTimeout, TimeUnit unit, long memoryBudget, File cacheDirectory) {
+        this.idleNanos = unit.toNanos(idleTimeout);
+        this.memoryBudget = memoryBudget;
+        this.cacheDirectory = cacheDirectory;
+        if (idleNanos > 0) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "subway-registry-sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), idleNanos / 2);
+            sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    /**
+     * 不按空闲时间卸载，不限制内存，不使用缓存
+     */
+    public SubwayRegistry() {
+        this(0, TimeUnit.MILLISECONDS, 0, null);
+    }
+
+    /**
+     * 注册一个网络（不立即加载）；同名网络已存在时替换并卸载旧网络，下次查询时按新文件加载
+     * @param id 网络名称，如城市名
+     * @param dataFile 线路数据文件路径
+     */
+    public void register(String id, String dataFile) {
+        Network previous = networks.put(id, new Network(dataFile));
+        if (previous != null) {
+            evict(previous);
+        }
+    }
+
+    /**
+     * 注销一个网络
+     * @return 该网络是否存在
+     */
+    public boolean unregister(String id) {
+        Network network = networks.remove(id);
+        if (network == null) {
+            return false;
+        }
+        evict(network);
+        return true;
+    }
+
+    public boolean isRegistered(String id) {
+        return networks.containsKey(id);
+    }
+
+    public boolean isLoaded(String id) {
+        Network network = networks.get(id);
+        return network != null && network.system != null;
+    }
+
+    /**
+     * 获取网络，尚未加载时加载
+     * @param id 网络名称
+     * @return 已加载数据的地铁系统
+     */
+    public SubwaySystem get(String id) throws IOException {
+        Network network = networks.get(id);
+        if (network == null) {
+            throw new IllegalArgumentException("网络不存在: " + id);
+        }
+        network.lastAccess = System.nanoTime();
+        SubwaySystem system = network.system;
+        if (system != null) {
+            hits.increment();
+            return system;
+        }
+        synchronized (network) {
+            system = network.system;
+            if (system != null) {
+                hits.increment();
+                return system;
+            }
+            system = new SubwaySystem(pricingSystem, symbolTable);
+            if (cacheDirectory != null) {
+                system.setCacheDirectory(cacheDirectory);
+            }
+            system.loadFromFile(network.dataFile);
+            int stationCount = system.getStationCount();
+            network.estimatedBytes = stationCount * BYTES_PER_STATION
+                + system.getNetworkGraph().getEdgeCount() * BYTES_PER_EDGE
+                + (long) stationCount * stationCount * BYTES_PER_STATION_PAIR;
+            network.system = system;
+            // 加载可能耗时较长，按加载完成的时间计算空闲，避免刚加载就被后台线程卸载
+            network.lastAccess = System.nanoTime();
+            loads.increment();
+        }
+        if (networks.get(id) != network) {
+            // 加载期间该网络被注销或替换，不再保留；本次查询仍然使用加载的结果
+            evict(network);
+            return system;
+        }
+        enforceMemoryBudget(network);
+        return system;
+    }
+
+    /**
+     * 卸载空闲超时的网络
+     */
+    public void evictIdle() {
+        if (idleNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (Network network : networks.values()) {
+            if (network.system != null && now - network.lastAccess > idleNanos) {
+                evict(network);
+            }
+        }
+    }
+
+    /**
+     * 已加载网络超过内存预算时，按最近访问时间从早到晚卸载，current（刚刚加载的网络）除外
+     */
+    private void enforceMemoryBudget(Network current) {
+        if (memoryBudget <= 0 || getEstimatedMemoryUsage() <= memoryBudget) {
+            return;
+        }
+        List<Network> loaded = new ArrayList<>();
+        for (Network network : networks.values()) {
+            if (network != current && network.system != null) {
+                loaded.add(network);
+            }
+        }
+        Collections.sort(loaded, (a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+        for (Network network : loaded) {
+            if (getEstimatedMemoryUsage() <= memoryBudget) {
+                break;
+            }
+            evict(network);
+        }
+    }
+
+    private void evict(Network network) {
+        SubwaySystem system;
+        synchronized (network) {
+            system = network.system;
+            network.system = null;
+        }
+        if (system != null) {
+            // 释放本网络持有的堆外路由表引用
+            system.dropRoutingSnapshot();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 已加载网络的估算内存（字节）
+     */
+    public long getEstimatedMemoryUsage() {
+        long total = 0;
+        for (Network network : networks.values()) {
+            if (network.system != null) {
+                total += network.estimatedBytes;
+            }
+        }
+        return total;
+    }
+
+    public List<String> getNetworkIds() {
+        List<String> ids = new ArrayList<>(networks.keySet());
+        Collections.sort(ids);
+        return ids;
+    }
+
+    public PricingSystem getPricingSystem() {
+        return pricingSystem;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        for (Network network : networks.values()) {
+            evict(network);
+        }
+    }
+
+    /**
+     * 参数：网络名称=数据文件 ...，不指定时把src/subway.txt注册为三个网络，演示共享符号表和按预算卸载
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<String[]> entries = new ArrayList<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index <= 0) {
+                System.err.println("参数格式应为 网络名称=数据文件: " + arg);
+                return;
+            }
+            entries.add(new String[] {arg.substring(0, index), arg.substring(index + 1)});
+        }
+        if (entries.isEmpty()) {
+            entries.add(new String[] {"武汉", "src/subway.txt"});
+            entries.add(new String[] {"武汉（测试）", "src/subway.txt"});
+            entries.add(new String[] {"武汉（备用）", "src/subway.txt"});
+        }
+
+        // 预算只够同时加载两个网络
+        try (SubwayRegistry registry = new SubwayRegistry(200, TimeUnit.MILLISECONDS, 1_000_000, null)) {
+            for (String[] entry : entries) {
+                registry.register(entry[0], entry[1]);
+            }
+            for (String[] entry : entries) {
+                long start = System.nanoTime();
+                SubwaySystem system = registry.get(entry[0]);
+                System.out.println(String.format("%s: %d个站点，加载耗时 %.1f ms，估算内存 %d KB",
+                    entry[0], system.getStationCount(), (System.nanoTime() - start) / 1e6,
+                    registry.getEstimatedMemoryUsage() / 1024));
+            }
+            System.out.println("符号表中的名称数: " + registry.getSymbolTable().size());
+            for (String id : registry.getNetworkIds()) {
+                System.out.println(id + (registry.isLoaded(id) ? ": 已加载" : ": 已卸载"));
+            }
+            Thread.sleep(500);
+            System.out.println(String.format("空闲后: 命中 %d，加载 %d，卸载 %d，估算内存 %d KB",
+                registry.getHits(), registry.getLoads(), registry.getEvictions(),
+                registry.getEstimatedMemoryUsage() / 1024));
+        }
+    }
+}
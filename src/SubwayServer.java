@@ -0,0 +1,371 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 地铁查询HTTP服务，基于JDK内置的HttpServer，以JSON格式对外提供查询
+ *
+ * 接口列表：
+ * /api/shortest?from=&to=        最短路径
+ * /api/routes?from=&to=&k=       前K条最短路径
+ * /api/nearby?station=&n=        n站以内的站点
+ * /api/transfers                 所有中转站
+ * /api/fare?from=&to=            单程票价，或 /api/fare?type=1日票 查询定期票价
+ * /api/stations?q=&limit=&fuzzy= 站名自动补全，fuzzy为允许的编辑距离
+ *
+ * 请求处理运行在虚拟线程上（JDK不支持时使用平台线程），相同的并发请求只计算一次
+ */
+public class SubwayServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_K = 3;
+    private static final int MAX_K = 20;
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 100;
+    private static final int MAX_FUZZY = 3;
+
+    private final SubwaySystem subwaySystem;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // 正在处理中的请求，请求地址->响应结果
+    private final Map<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+
+    public SubwayServer(SubwaySystem subwaySystem, int port) throws IOException {
+        this.subwaySystem = subwaySystem;
+        this.server = HttpServer.create(new InetSocketAddress(port), 4096);
+        this.executor = VirtualThreads.newExecutor();
+
+        server.createContext("/api/shortest", exchange -> handle(exchange, this::shortest));
+        server.createContext("/api/routes", exchange -> handle(exchange, this::routes));
+        server.createContext("/api/nearby", exchange -> handle(exchange, this::nearby));
+        server.createContext("/api/transfers", exchange -> handle(exchange, this::transfers));
+        server.createContext("/api/fare", exchange -> handle(exchange, this::fare));
+        server.createContext("/api/stations", exchange -> handle(exchange, this::stations));
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 查询处理器，根据请求参数生成JSON响应
+     */
+    private interface QueryHandler {
+        String handle(Map<String, String> params);
+    }
+
+    /**
+     * 响应结果
+     */
+    private static class Response {
+        final int status;
+        final byte[] body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private void handle(HttpExchange exchange, QueryHandler handler) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, new Response(405, errorJson("只支持GET请求")));
+                return;
+            }
+
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            String key = exchange.getRequestURI().getPath() + "?" + (rawQuery == null ? "" : rawQuery);
+
+            // 合并相同的并发请求：第一个请求负责计算，其余请求等待其结果
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            CompletableFuture<Response> existing = inFlight.putIfAbsent(key, future);
+            if (existing == null) {
+                try {
+                    future.complete(execute(handler, rawQuery));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, future);
+                }
+            } else {
+                future = existing;
+            }
+
+            send(exchange, future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, new Response(500, errorJson("请求被中断")));
+        } catch (ExecutionException e) {
+            send(exchange, new Response(500, errorJson(String.valueOf(e.getCause().getMessage()))));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response execute(QueryHandler handler, String rawQuery) {
+        try {
+            return new Response(200, handler.handle(parseQuery(rawQuery)));
+        } catch (IllegalArgumentException e) {
+            return new Response(400, errorJson(e.getMessage()));
+        } catch (Exceptions.PathNotFoundException e) {
+            return new Response(404, errorJson(e.getMessage()));
+        }
+    }
+
+    private void send(HttpExchange exchange, Response response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, response.body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response.body);
+        }
+    }
+
+    private String shortest(Map<String, String> params) {
+        String from = required(params, "from");
+        String to = required(params, "to");
+        Path path = subwaySystem.findShortestPath(from, to);
+        if (path == null) {
+            throw new Exceptions.PathNotFoundException(from, to);
+        }
+        StringBuilder sb = new StringBuilder();
+        appendPath(sb, path);
+        return sb.toString();
+    }
+
+    private String routes(Map<String, String> params) {
+        String from = required(params, "from");
+        String to = required(params, "to");
+        int k = intParam(params, "k", DEFAULT_K);
+        if (k <= 0 || k > MAX_K) {
+            throw new IllegalArgumentException("k必须在1到" + MAX_K + "之间: " + k);
+        }
+        List<Path> paths = subwaySystem.findKShortestPaths(from, to, k);
+        if (paths.isEmpty()) {
+            throw new Exceptions.PathNotFoundException(from, to);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"routes\":[");
+        for (int i = 0; i < paths.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendPath(sb, paths.get(i));
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private String nearby(Map<String, String> params) {
+        String stationName = required(params, "station");
+        int n = intParam(params, "n", 1);
+        NearbyStations nearbyStations = subwaySystem.findStationsWithinDistance(stationName, n);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"station\":");
+        appendString(sb, stationName);
+        sb.append(",\"n\":").append(n).append(",\"stations\":[");
+        for (int i = 0; i < nearbyStations.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"name\":");
+            appendString(sb, nearbyStations.getStationName(i));
+            sb.append(",\"line\":");
+            appendString(sb, nearbyStations.getLineName(i));
+            sb.append(",\"hops\":").append(nearbyStations.getHops(i)).append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private String transfers(Map<String, String> params) {
+        List<Map.Entry<String, Set<String>>> transferStations = subwaySystem.getTransferStations();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"stations\":[");
+        for (int i = 0; i < transferStations.size(); i++) {
+            Map.Entry<String, Set<String>> entry = transferStations.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"name\":");
+            appendString(sb, entry.getKey());
+            sb.append(",\"lines\":");
+            appendStrings(sb, entry.getValue());
+            sb.append('}');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private String fare(Map<String, String> params) {
+        String ticketType = params.get("type");
+        if (ticketType != null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"type\":");
+            appendString(sb, ticketType);
+            sb.append(",\"fare\":").append(subwaySystem.calculateDayPassFare(ticketType)).append('}');
+            return sb.toString();
+        }
+
+        String from = required(params, "from");
+        String to = required(params, "to");
+        Path path = subwaySystem.findShortestPath(from, to);
+        if (path == null) {
+            throw new Exceptions.PathNotFoundException(from, to);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"from\":");
+        appendString(sb, from);
+        sb.append(",\"to\":");
+        appendString(sb, to);
+        sb.append(",\"distance\":");
+        RouteRenderer.appendDistance(path.getTotalDistance(), sb);
+        sb.append(",\"fare\":").append(subwaySystem.calculateFare(path));
+        sb.append(",\"wuhanTongFare\":").append(subwaySystem.calculateWuhanTongFare(path));
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private String stations(Map<String, String> params) {
+        String query = params.containsKey("q") ? params.get("q") : "";
+        int limit = intParam(params, "limit", DEFAULT_LIMIT);
+        int fuzzy = intParam(params, "fuzzy", query.length() >= 3 ? 1 : 0);
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit必须在1到" + MAX_LIMIT + "之间: " + limit);
+        }
+        if (fuzzy < 0 || fuzzy > MAX_FUZZY) {
+            throw new IllegalArgumentException("fuzzy必须在0到" + MAX_FUZZY + "之间: " + fuzzy);
+        }
+        int[] matches = subwaySystem.getStationNameIndex().complete(query, fuzzy, limit);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"q\":");
+        appendString(sb, query);
+        sb.append(",\"stations\":[");
+        for (int i = 0; i < matches.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendString(sb, subwaySystem.getStationById(matches[i]).getName());
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private void appendPath(StringBuilder sb, Path path) {
+        try {
+            subwaySystem.getRouteRenderer().renderJson(path, sb);
+        } catch (IOException e) {
+            // StringBuilder不会抛出IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void appendStrings(StringBuilder sb, Iterable<String> values) {
+        sb.append('[');
+        boolean first = true;
+        for (String value : values) {
+            if (!first) {
+                sb.append(',');
+            }
+            appendString(sb, value);
+            first = false;
+        }
+        sb.append(']');
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append(RouteRenderer.jsonString(value));
+    }
+
+    private static String errorJson(String message) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"error\":");
+        appendString(sb, message);
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("缺少参数: " + name);
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("参数" + name + "不是整数: " + value);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        try {
+            for (String pair : rawQuery.split("&")) {
+                int index = pair.indexOf('=');
+                if (index < 0) {
+                    params.put(URLDecoder.decode(pair, "UTF-8"), "");
+                } else {
+                    params.put(URLDecoder.decode(pair.substring(0, index), "UTF-8"),
+                               URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return params;
+    }
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        String dataFile = args.length > 1 ? args[1] : "src/subway.txt";
+
+        SubwaySystem subwaySystem = new SubwaySystem();
+        try {
+            subwaySystem.loadFromFile(dataFile);
+            subwaySystem.buildNeighbourhoodIndex(5);
+            SubwayServer server = new SubwayServer(subwaySystem, port);
+            server.start();
+            System.out.println("地铁查询服务已启动，端口: " + server.getPort()
+                + (VirtualThreads.isAvailable() ? "（虚拟线程）" : "（平台线程）"));
+        } catch (IOException e) {
+            System.err.println("启动服务失败: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,20 +1,58 @@
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
  * 地铁系统类，核心类，包含所有地铁线路和站点信息，实现各种查询功能
  */
 public class SubwaySystem {
+    private static final int LOCATION_CANDIDATES = 5; // 从坐标出发时考虑的候选进站站点数
+    private static final double DEFAULT_WALKING_FACTOR = 7.0;
+    
     private Map<String, Station> stations; // 所有站点，站点名称->站点
     private Map<String, Line> lines; // 所有线路，线路名称->线路
-    private PricingSystem pricingSystem; // 计价系统
+    private List<Station> stationsById; // 所有站点，按编号排列
+    private List<Line> linesById; // 所有线路，按编号排列
+    private PricingSystem pricingSystem; // 计价系统，可以由多个地铁系统共享
+    private final SymbolTable symbolTable; // 站点和线路名称的共享符号表，为null时不共享
+    private volatile RouteRenderer routeRenderer; // 路径输出渲染器，首次使用时创建
+    private volatile NetworkGraph networkGraph; // 按编号索引的紧凑邻接表，首次使用时创建
+    private volatile DistanceTable distanceTable; // 堆上的站点间最短距离表，没有路由表快照时首次使用时创建
+    private volatile FareTable fareTable; // 堆上的站点间票价表，没有路由表快照时首次使用时创建
+    private NetworkTopology networkTopology; // 连通性信息，加载数据时计算
+    private volatile NeighbourhoodIndex neighbourhoodIndex; // k站邻域索引，可选
+    private int neighbourhoodMaxHops; // k站邻域索引的站数上限，0表示不建立索引
+    private Map<String, List<String>> stationAliases = new HashMap<>(); // 站名->别名（如拼音）
+    private volatile StationNameIndex stationNameIndex; // 站名索引，加载数据时建立
+    private Map<String, double[]> stationCoordinates; // 站名->{纬度, 经度}，可选
+    private volatile SpatialIndex spatialIndex; // 站点空间索引，加载坐标后建立
+    private volatile RoutingSnapshot routingSnapshot; // 堆外路由表快照，可选
+    private boolean routingSnapshotEnabled; // 重新加载数据时是否重建路由表快照
+    private File routingSnapshotFile; // 路由表快照的映射文件，为null时使用直接内存
+    private File cacheDirectory; // 预计算缓存目录，为null时不使用缓存
+    private boolean loadedFromCache; // 最近一次加载是否使用了缓存
     
     public SubwaySystem() {
+        this(new PricingSystem(), null);
+    }
+    
+    /**
+     * 创建与其他地铁系统共享计价系统和名称符号表的地铁系统
+     * @param pricingSystem 计价系统
+     * @param symbolTable 名称符号表，为null时不共享名称
+     */
+    public SubwaySystem(PricingSystem pricingSystem, SymbolTable symbolTable) {
         stations = new HashMap<>();
         lines = new HashMap<>();
-        pricingSystem = new PricingSystem();
+        stationsById = new ArrayList<>();
+        linesById = new ArrayList<>();
+        this.pricingSystem = pricingSystem;
+        this.symbolTable = symbolTable;
     }
     
     /**
@@ -81,6 +119,305 @@ public class SubwaySystem {
             }
         }
         reader.close();
+        routeRenderer = null;
+        networkGraph = null;
+        distanceTable = null;
+        fareTable = null;
+        loadDerivedStructures(filePath);
+        reportDisconnectedStations();
+        stationNameIndex = new StationNameIndex(this, stationAliases);
+        spatialIndex = stationCoordinates == null ? null : buildSpatialIndex(stationCoordinates);
+        neighbourhoodIndex = null;
+        if (neighbourhoodMaxHops > 0) {
+            neighbourhoodIndex = new NeighbourhoodIndex(this, neighbourhoodMaxHops);
+        }
+        if (routingSnapshotEnabled) {
+            replaceRoutingSnapshot(routingSnapshotFile == null ? RoutingSnapshot.build(getNetworkGraph(), pricingSystem)
+                                   : RoutingSnapshot.open(getNetworkGraph(), pricingSystem, routingSnapshotFile));
+        }
+    }
+    
+    /**
+     * 在堆外内存中建立路由表快照（所有站点对的最短距离、前驱边和票价）；重新加载数据时会自动重建，旧快照在不再使用后释放
+     * 建立后getDistanceTable和getFareTable直接读取快照，不再在堆上计算
+     * @param file 映射文件，已有文件与当前网络和计价规则一致时直接使用；为null时使用直接内存
+     */
+    public void buildRoutingSnapshot(File file) throws IOException {
+        RoutingSnapshot snapshot = file == null ? RoutingSnapshot.build(getNetworkGraph(), pricingSystem)
+                                                : RoutingSnapshot.open(getNetworkGraph(), pricingSystem, file);
+        routingSnapshotEnabled = true;
+        routingSnapshotFile = file;
+        replaceRoutingSnapshot(snapshot);
+    }
+    
+    /**
+     * 释放路由表快照，之后重新加载数据时不再重建
+     */
+    public void dropRoutingSnapshot() {
+        routingSnapshotEnabled = false;
+        routingSnapshotFile = null;
+        replaceRoutingSnapshot(null);
+    }
+    
+    private void replaceRoutingSnapshot(RoutingSnapshot snapshot) {
+        RoutingSnapshot previous = routingSnapshot;
+        routingSnapshot = snapshot;
+        // 建立快照后不再使用堆上的距离表和票价表；释放快照后下次使用时重新计算
+        distanceTable = null;
+        fareTable = null;
+        if (previous != null) {
+            // 释放本对象持有的引用，正在使用的线程释放各自的引用后内存才会被释放
+            previous.close();
+        }
+    }
+    
+    /**
+     * 获取当前的路由表快照并持有一个引用，用完后必须调用close（可以使用try-with-resources）
+     * @return 快照，尚未建立时为null
+     */
+    public RoutingSnapshot acquireRoutingSnapshot() {
+        while (true) {
+            RoutingSnapshot snapshot = routingSnapshot;
+            if (snapshot == null || snapshot.retain()) {
+                return snapshot;
+            }
+            if (routingSnapshot == snapshot) {
+                return null;
+            }
+            // 快照刚被替换，读取新的快照
+        }
+    }
+    
+    /**
+     * 获取按当前网络图建立的路由表快照并持有一个引用，没有时返回null（例如重新加载数据、尚未重建快照时）
+     */
+    private RoutingSnapshot acquireCurrentRoutingSnapshot() {
+        RoutingSnapshot snapshot = acquireRoutingSnapshot();
+        if (snapshot != null && snapshot.getGraph() != getNetworkGraph()) {
+            snapshot.close();
+            return null;
+        }
+        return snapshot;
+    }
+    
+    /**
+     * 设置预计算缓存目录，之后加载数据时优先从缓存读取连通性信息和距离表
+     * @param directory 缓存目录，为null时不使用缓存
+     */
+    public void setCacheDirectory(File directory) {
+        this.cacheDirectory = directory;
+    }
+    
+    /**
+     * 最近一次加载数据时是否从缓存读取了预计算结果
+     */
+    public boolean isLoadedFromCache() {
+        return loadedFromCache;
+    }
+    
+    /**
+     * 计算连通性信息；设置了缓存目录时先按数据文件指纹读取缓存，缓存不存在或失效时重新计算并写入缓存
+     */
+    private void loadDerivedStructures(String filePath) throws IOException {
+        loadedFromCache = false;
+        if (cacheDirectory == null) {
+            networkTopology = new NetworkTopology(getNetworkGraph());
+            return;
+        }
+        PrecomputationCache cache = new PrecomputationCache(cacheDirectory);
+        String fingerprint = PrecomputationCache.fingerprint(filePath);
+        PrecomputationCache.Entry entry = cache.load(fingerprint, this, getNetworkGraph());
+        if (entry != null) {
+            networkTopology = entry.getTopology();
+            distanceTable = entry.getDistanceTable();
+            loadedFromCache = true;
+            return;
+        }
+        networkTopology = new NetworkTopology(getNetworkGraph());
+        try {
+            cache.store(fingerprint, this, getNetworkGraph(), networkTopology, heapDistanceTable());
+        } catch (IOException e) {
+            System.err.println("写入预计算缓存失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 建立k站邻域索引，之后n不超过maxHops的邻近站点查询直接从索引中读取；重新加载数据时会自动重建
+     * @param maxHops 索引的站数上限
+     */
+    public void buildNeighbourhoodIndex(int maxHops) {
+        NeighbourhoodIndex index = new NeighbourhoodIndex(this, maxHops);
+        neighbourhoodMaxHops = maxHops;
+        neighbourhoodIndex = index;
+    }
+    
+    /**
+     * 加载站名别名文件并重建站名索引，每行格式为：站名,别名1,别名2,...
+     * @param filePath 别名文件路径
+     */
+    public void loadStationAliases(String filePath) throws IOException {
+        Map<String, List<String>> aliases = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                List<String> names = aliases.computeIfAbsent(parts[0].trim(), k -> new ArrayList<>());
+                for (int i = 1; i < parts.length; i++) {
+                    names.add(parts[i].trim());
+                }
+            }
+        }
+        stationAliases = aliases;
+        stationNameIndex = new StationNameIndex(this, aliases);
+    }
+    
+    /**
+     * 获取站名索引，用于前缀、模糊查询和自动补全
+     * @return 站名索引
+     */
+    public StationNameIndex getStationNameIndex() {
+        StationNameIndex index = stationNameIndex;
+        if (index == null) {
+            index = new StationNameIndex(this, stationAliases);
+            stationNameIndex = index;
+        }
+        return index;
+    }
+    
+    /**
+     * 加载站点坐标文件并建立空间索引，每行格式为：站名,纬度,经度；文件中没有的站点不参与坐标查询
+     * @param filePath 坐标文件路径
+     */
+    public void loadStationCoordinates(String filePath) throws IOException {
+        Map<String, double[]> coordinates = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                try {
+                    coordinates.put(parts[0].trim(), new double[] {
+                        Double.parseDouble(parts[1].trim()), Double.parseDouble(parts[2].trim())});
+                } catch (RuntimeException e) {
+                    System.err.println("无法解析站点坐标: " + line);
+                }
+            }
+        }
+        stationCoordinates = coordinates;
+        spatialIndex = buildSpatialIndex(coordinates);
+    }
+    
+    private SpatialIndex buildSpatialIndex(Map<String, double[]> coordinates) {
+        double[] latitudes = new double[stationsById.size()];
+        double[] longitudes = new double[stationsById.size()];
+        Arrays.fill(latitudes, Double.NaN);
+        Arrays.fill(longitudes, Double.NaN);
+        for (Map.Entry<String, double[]> entry : coordinates.entrySet()) {
+            Station station = stations.get(entry.getKey());
+            if (station == null) {
+                System.err.println("坐标对应的站点不存在: " + entry.getKey());
+                continue;
+            }
+            latitudes[station.getId()] = entry.getValue()[0];
+            longitudes[station.getId()] = entry.getValue()[1];
+        }
+        return new SpatialIndex(latitudes, longitudes);
+    }
+    
+    /**
+     * 获取站点空间索引
+     * @return 空间索引，尚未加载坐标时为null
+     */
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+    
+    /**
+     * 查询距离指定坐标最近的k个站点
+     * @param latitude 纬度
+     * @param longitude 经度
+     * @param k 站点数
+     * @return 按直线距离从近到远排列的站点
+     */
+    public NearestStations findNearestStations(double latitude, double longitude, int k) {
+        return requireSpatialIndex().findNearest(latitude, longitude, k);
+    }
+    
+    /**
+     * 查询从指定坐标出发到终点站的路线
+     * 在最近的几个站点中选择“步行距离*步行系数+地铁距离”最小的站点进站，步行系数表示步行1公里相当于乘地铁多少公里
+     * @param latitude 出发点纬度
+     * @param longitude 出发点经度
+     * @param endName 终点站名称
+     * @param walkingFactor 步行系数
+     * @return 路线，无法到达终点时为null
+     */
+    public LocationRoute findRouteFromLocation(double latitude, double longitude, String endName, double walkingFactor) {
+        Station end = stations.get(endName);
+        if (end == null) {
+            throw new IllegalArgumentException("终点站不存在: " + endName);
+        }
+        NearestStations candidates = requireSpatialIndex().findNearest(latitude, longitude, LOCATION_CANDIDATES);
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        try (DistanceTable distances = getDistanceTable()) {
+            for (int i = 0; i < candidates.size(); i++) {
+                double cost = candidates.getDistance(i) * walkingFactor
+                    + distances.getDistance(candidates.getStationId(i), end.getId());
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = i;
+                }
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+        Station entry = getStationById(candidates.getStationId(best));
+        Path path = findShortestPath(entry.getName(), endName);
+        return path == null ? null : new LocationRoute(entry, candidates.getDistance(best), path);
+    }
+    
+    /**
+     * 查询从指定坐标出发到终点站的路线，步行1公里按乘地铁7公里计算（步行约5公里/小时，地铁约35公里/小时）
+     */
+    public LocationRoute findRouteFromLocation(double latitude, double longitude, String endName) {
+        return findRouteFromLocation(latitude, longitude, endName, DEFAULT_WALKING_FACTOR);
+    }
+    
+    private SpatialIndex requireSpatialIndex() {
+        SpatialIndex index = spatialIndex;
+        if (index == null) {
+            throw new IllegalStateException("尚未加载站点坐标");
+        }
+        return index;
+    }
+    
+    /**
+     * 报告与主网络不连通的站点（通常是数据文件中的站名或格式错误）
+     */
+    private void reportDisconnectedStations() {
+        int[] disconnected = networkTopology.getDisconnectedStations();
+        if (disconnected.length == 0) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < disconnected.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(stationsById.get(disconnected[i]).getName());
+        }
+        System.err.println("以下站点与主网络不连通: " + sb);
     }
     
     /**
@@ -103,8 +440,12 @@ public class SubwaySystem {
     private Line getOrCreateLine(String lineName) {
         Line line = lines.get(lineName);
         if (line == null) {
-            line = new Line(lineName);
+            if (symbolTable != null) {
+                lineName = symbolTable.intern(lineName);
+            }
+            line = new Line(lineName, linesById.size());
             lines.put(lineName, line);
+            linesById.add(line);
         }
         return line;
     }
@@ -115,8 +456,12 @@ public class SubwaySystem {
     private Station getOrCreateStation(String stationName) {
         Station station = stations.get(stationName);
         if (station == null) {
-            station = new Station(stationName);
+            if (symbolTable != null) {
+                stationName = symbolTable.intern(stationName);
+            }
+            station = new Station(stationName, stationsById.size());
             stations.put(stationName, station);
+            stationsById.add(station);
         }
         return station;
     }
@@ -151,6 +496,18 @@ public class SubwaySystem {
         }
         
         List<Map.Entry<String, Map.Entry<String, Integer>>> result = new ArrayList<>();
+        NeighbourhoodIndex index = neighbourhoodIndex;
+        if (index != null && n <= index.getMaxHops()) {
+            NearbyStations nearby = index.query(startStation.getId(), n);
+            for (int i = 0; i < nearby.size(); i++) {
+                result.add(new AbstractMap.SimpleEntry<>(
+                    nearby.getStationName(i),
+                    new AbstractMap.SimpleEntry<>(nearby.getLineName(i), nearby.getHops(i))
+                ));
+            }
+            return result;
+        }
+        
         Set<String> visited = new HashSet<>();
         Queue<Object[]> queue = new LinkedList<>();
         
@@ -190,6 +547,35 @@ public class SubwaySystem {
         return result;
     }
     
+    /**
+     * 查找距离给定站点n站内的所有站点，结果不使用装箱类型；已建立邻域索引且n不超过其上限时直接复制索引数据
+     * @param stationName 起始站点名称
+     * @param n 距离（站数）
+     * @return 满足条件的站点，顺序与getStationsWithinDistance一致
+     */
+    public NearbyStations findStationsWithinDistance(String stationName, int n) {
+        Station startStation = stations.get(stationName);
+        if (startStation == null) {
+            throw new IllegalArgumentException("站点不存在: " + stationName);
+        }
+        NeighbourhoodIndex index = neighbourhoodIndex;
+        if (index != null && n <= index.getMaxHops()) {
+            return index.query(startStation.getId(), n);
+        }
+        
+        List<Map.Entry<String, Map.Entry<String, Integer>>> entries = getStationsWithinDistance(stationName, n);
+        int[] stationIds = new int[entries.size()];
+        int[] lineIds = new int[entries.size()];
+        int[] hops = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            Map.Entry<String, Map.Entry<String, Integer>> entry = entries.get(i);
+            stationIds[i] = stations.get(entry.getKey()).getId();
+            lineIds[i] = lines.get(entry.getValue().getKey()).getId();
+            hops[i] = entry.getValue().getValue();
+        }
+        return new NearbyStations(this, stationIds, lineIds, hops);
+    }
+    
     /**
      * 查找从起点到终点的所有可能路径（无环路径）
      * @param startName 起点站名称
@@ -208,23 +594,69 @@ public class SubwaySystem {
         }
         
         List<Path> result = new ArrayList<>();
-        Path currentPath = new Path();
-        currentPath.addFirstStation(startStation);
-        Set<Station> visited = new HashSet<>();
-        visited.add(startStation);
+        if (!isConnected(startStation, endStation)) {
+            return result;
+        }
+        for (CompactPath path : findAllCompactPaths(startStation, endStation, Integer.MAX_VALUE)) {
+            result.add(path.toPath(this));
+        }
+        return result;
+    }
+    
+    /**
+     * 查找从起点到终点的所有可能路径（无环路径），结果以紧凑形式表示
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @return 所有可能的路径集合
+     */
+    public List<CompactPath> findAllCompactPaths(String startName, String endName) {
+        return findAllCompactPaths(startName, endName, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * 查找从起点到终点经过站点数不超过上限的所有无环路径，结果以紧凑形式表示
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @param maxStations 路径最多经过的站点数（含起点和终点）
+     * @return 满足条件的路径集合
+     */
+    public List<CompactPath> findAllCompactPaths(String startName, String endName, int maxStations) {
+        Station startStation = stations.get(startName);
+        Station endStation = stations.get(endName);
         
-        findAllPathsDFS(startStation, endStation, visited, currentPath, result);
+        if (startStation == null) {
+            throw new IllegalArgumentException("起点站不存在: " + startName);
+        }
+        if (endStation == null) {
+            throw new IllegalArgumentException("终点站不存在: " + endName);
+        }
         
+        return findAllCompactPaths(startStation, endStation, maxStations);
+    }
+    
+    private List<CompactPath> findAllCompactPaths(Station startStation, Station endStation, int maxStations) {
+        List<CompactPath> result = new ArrayList<>();
+        if (!isConnected(startStation, endStation)) {
+            return result;
+        }
+        CompactPath currentPath = CompactPath.start(startStation.getId());
+        long[] visited = new long[(stationsById.size() + 63) >>> 6];
+        visited[startStation.getId() >>> 6] |= 1L << startStation.getId();
+        findAllPathsDFS(startStation, endStation, maxStations, currentPath, visited, result);
         return result;
     }
     
     /**
      * 使用深度优先搜索查找所有路径
+     * 路径共享前缀，每一步只新建一个节点；已访问站点记录在整个搜索共用的位图中，进入站点时置位，回溯时清除
      */
-    private void findAllPathsDFS(Station current, Station end, Set<Station> visited, 
-                                 Path currentPath, List<Path> result) {
+    private void findAllPathsDFS(Station current, Station end, int maxStations,
+                                 CompactPath currentPath, long[] visited, List<CompactPath> result) {
         if (current.equals(end)) {
-            result.add(new Path(currentPath));
+            result.add(currentPath);
+            return;
+        }
+        if (currentPath.getStationCount() >= maxStations) {
             return;
         }
         
@@ -232,12 +664,12 @@ public class SubwaySystem {
             Station next = entry.getKey();
             Edge edge = entry.getValue();
             
-            if (!visited.contains(next)) {
-                visited.add(next);
-                Path newPath = new Path(currentPath);
-                newPath.addStation(next, edge.getLine(), edge.getDistance());
-                findAllPathsDFS(next, end, visited, newPath, result);
-                visited.remove(next);
+            int nextId = next.getId();
+            if ((visited[nextId >>> 6] & (1L << nextId)) == 0) {
+                CompactPath newPath = currentPath.extend(nextId, edge.getLine().getId(), edge.getDistance());
+                visited[nextId >>> 6] |= 1L << nextId;
+                findAllPathsDFS(next, end, maxStations, newPath, visited, result);
+                visited[nextId >>> 6] &= ~(1L << nextId);
             }
         }
     }
@@ -259,6 +691,30 @@ public class SubwaySystem {
             throw new IllegalArgumentException("终点站不存在: " + endName);
         }
         
+        if (!isConnected(startStation, endStation)) {
+            return null;
+        }
+        return findShortestPath(startStation, endStation,
+                                Collections.<Station>emptySet(), Collections.<Edge>emptySet());
+    }
+    
+    /**
+     * 根据预先计算的连通分量判断两站之间是否存在路径
+     */
+    private boolean isConnected(Station startStation, Station endStation) {
+        return networkTopology == null || networkTopology.isConnected(startStation.getId(), endStation.getId());
+    }
+    
+    /**
+     * 使用Dijkstra算法查找最短路径，可以屏蔽部分站点和边（供K短路径算法使用）
+     * @param startStation 起点站
+     * @param endStation 终点站
+     * @param blockedStations 不允许经过的站点
+     * @param blockedEdges 不允许经过的边
+     * @return 最短路径，不存在时返回null
+     */
+    private Path findShortestPath(Station startStation, Station endStation,
+                                  Set<Station> blockedStations, Set<Edge> blockedEdges) {
         // 使用Dijkstra算法找最短路径
         Map<Station, Double> distances = new HashMap<>();
         Map<Station, Station> previousStations = new HashMap<>();
@@ -288,6 +744,9 @@ public class SubwaySystem {
             for (Map.Entry<Station, Edge> entry : current.getAdjacentStations().entrySet()) {
                 Station neighbor = entry.getKey();
                 Edge edge = entry.getValue();
+                if (blockedStations.contains(neighbor) || blockedEdges.contains(edge)) {
+                    continue;
+                }
                 double distance = distances.get(current) + edge.getDistance();
                 
                 if (distance < distances.get(neighbor)) {
@@ -307,6 +766,14 @@ public class SubwaySystem {
             return null;
         }
         
+        return buildPath(startStation, endStation, previousStations, previousEdges);
+    }
+    
+    /**
+     * 根据最短路径树重建从起点到终点的路径
+     */
+    private Path buildPath(Station startStation, Station endStation,
+                           Map<Station, Station> previousStations, Map<Station, Edge> previousEdges) {
         // 重建路径
         Path path = new Path();
         Station current = endStation;
@@ -331,49 +798,241 @@ public class SubwaySystem {
     }
     
     /**
-     * 将路径以简洁形式输出
-     * @param path 路径对象
-     * @return 格式化的路径信息
+     * 查找从同一起点到多个终点的最短路径，一次Dijkstra搜索在所有终点都确定后即停止
+     * @param startName 起点站名称
+     * @param endNames 终点站名称集合
+     * @return 终点站名称->最短路径，无法到达的终点对应null
      */
-    public String formatPath(Path path) {
-        if (path == null || path.getStations().size() <= 1) {
-            return "无效路径";
+    public Map<String, Path> findShortestPaths(String startName, Collection<String> endNames) {
+        Station startStation = stations.get(startName);
+        if (startStation == null) {
+            throw new IllegalArgumentException("起点站不存在: " + startName);
+        }
+        Set<Station> targets = new HashSet<>();
+        for (String endName : endNames) {
+            Station endStation = stations.get(endName);
+            if (endStation == null) {
+                throw new IllegalArgumentException("终点站不存在: " + endName);
+            }
+            targets.add(endStation);
         }
         
-        StringBuilder sb = new StringBuilder();
-        sb.append("乘车路线：\n");
+        Map<Station, Double> distances = new HashMap<>();
+        Map<Station, Station> previousStations = new HashMap<>();
+        Map<Station, Edge> previousEdges = new HashMap<>();
+        PriorityQueue<Station> queue = new PriorityQueue<>(
+            Comparator.comparingDouble(station -> distances.getOrDefault(station, Double.MAX_VALUE))
+        );
+        
+        distances.put(startStation, 0.0);
+        queue.add(startStation);
+        Set<Station> remaining = new HashSet<>(targets);
+        
+        while (!queue.isEmpty() && !remaining.isEmpty()) {
+            Station current = queue.poll();
+            remaining.remove(current);
+            double currentDistance = distances.get(current);
+            
+            for (Map.Entry<Station, Edge> entry : current.getAdjacentStations().entrySet()) {
+                Station neighbor = entry.getKey();
+                Edge edge = entry.getValue();
+                double distance = currentDistance + edge.getDistance();
+                
+                if (distance < distances.getOrDefault(neighbor, Double.MAX_VALUE)) {
+                    distances.put(neighbor, distance);
+                    previousStations.put(neighbor, current);
+                    previousEdges.put(neighbor, edge);
+                    
+                    // 重新入队，以更新优先级
+                    queue.remove(neighbor);
+                    queue.add(neighbor);
+                }
+            }
+        }
         
-        List<Station> stations = path.getStations();
-        List<Line> lines = path.getLines();
+        Map<String, Path> result = new HashMap<>();
+        for (Station target : targets) {
+            if (previousStations.get(target) == null) {
+                result.put(target.getName(), null);
+            } else {
+                result.put(target.getName(), buildPath(startStation, target, previousStations, previousEdges));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 查找从起点到终点的前K条最短路径（Yen算法，无环路径）
+     * @param startName 起点站名称
+     * @param endName 终点站名称
+     * @param k 需要的路径条数
+     * @return 按距离从短到长排列的路径集合，最多k条
+     */
+    public List<Path> findKShortestPaths(String startName, String endName, int k) {
+        Station startStation = stations.get(startName);
+        Station endStation = stations.get(endName);
+        
+        if (startStation == null) {
+            throw new IllegalArgumentException("起点站不存在: " + startName);
+        }
+        if (endStation == null) {
+            throw new IllegalArgumentException("终点站不存在: " + endName);
+        }
+        if (k <= 0) {
+            throw new IllegalArgumentException("路径条数必须为正数: " + k);
+        }
         
-        Line currentLine = lines.get(0);
-        Station startStation = stations.get(0);
-        Station currentStation = startStation;
+        List<Path> result = new ArrayList<>();
+        Path first = findShortestPath(startName, endName);
+        if (first == null) {
+            return result;
+        }
+        result.add(first);
         
-        sb.append("从 ").append(startStation.getName()).append(" 乘坐 ").append(currentLine.getName());
+        PriorityQueue<Path> candidates = new PriorityQueue<>();
+        Set<List<Station>> seen = new HashSet<>();
+        seen.add(first.getStations());
         
-        for (int i = 1; i < stations.size(); i++) {
-            Line line = lines.get(i-1);
-            Station station = stations.get(i);
+        while (result.size() < k) {
+            Path previous = result.get(result.size() - 1);
+            List<Station> previousStations = previous.getStations();
             
-            // 检查是否换乘
-            if (i < lines.size() && !line.equals(lines.get(i))) {
-                sb.append(" 到 ").append(station.getName()).append("\n");
-                sb.append("换乘 ").append(lines.get(i).getName());
-                currentLine = lines.get(i);
-            } else if (i == stations.size() - 1) {
-                sb.append(" 到终点站 ").append(station.getName());
+            for (int i = 0; i < previousStations.size() - 1; i++) {
+                Station spurStation = previousStations.get(i);
+                List<Station> rootStations = previousStations.subList(0, i + 1);
+                
+                // 屏蔽与已有路径共享同一前缀的下一条边
+                Set<Edge> blockedEdges = new HashSet<>();
+                for (Path path : result) {
+                    List<Station> pathStations = path.getStations();
+                    if (pathStations.size() > i + 1 && pathStations.subList(0, i + 1).equals(rootStations)) {
+                        blockedEdges.add(spurStation.getAdjacentStations().get(pathStations.get(i + 1)));
+                    }
+                }
+                // 屏蔽前缀上的站点，保证路径无环
+                Set<Station> blockedStations = new HashSet<>(rootStations.subList(0, i));
+                
+                Path spurPath = findShortestPath(spurStation, endStation, blockedStations, blockedEdges);
+                if (spurPath == null) {
+                    continue;
+                }
+                
+                Path candidate = new Path();
+                candidate.addFirstStation(startStation);
+                for (int j = 1; j <= i; j++) {
+                    Station station = previousStations.get(j);
+                    Edge edge = previousStations.get(j - 1).getAdjacentStations().get(station);
+                    candidate.addStation(station, edge.getLine(), edge.getDistance());
+                }
+                List<Station> spurStations = spurPath.getStations();
+                for (int j = 1; j < spurStations.size(); j++) {
+                    Station station = spurStations.get(j);
+                    Edge edge = spurStations.get(j - 1).getAdjacentStations().get(station);
+                    candidate.addStation(station, edge.getLine(), edge.getDistance());
+                }
+                
+                if (seen.add(candidate.getStations())) {
+                    candidates.add(candidate);
+                }
             }
             
-            currentStation = station;
+            if (candidates.isEmpty()) {
+                break;
+            }
+            result.add(candidates.poll());
         }
         
-        sb.append("\n总距离: ").append(String.format("%.2f", path.getTotalDistance())).append("公里");
-        sb.append("\n换乘次数: ").append(path.getTransferCount());
+        return result;
+    }
+    
+    /**
+     * 将路径以简洁形式输出
+     * @param path 路径对象
+     * @return 格式化的路径信息
+     */
+    public String formatPath(Path path) {
+        if (path == null || path.getStations().size() <= 1) {
+            return "无效路径";
+        }
         
+        StringBuilder sb = new StringBuilder();
+        try {
+            getRouteRenderer().renderText(path, sb);
+        } catch (IOException e) {
+            // StringBuilder不会抛出IOException
+            throw new IllegalStateException(e);
+        }
         return sb.toString();
     }
     
+    /**
+     * 获取路径输出渲染器，可将路径直接写入Appendable或ByteBuffer
+     * @return 路径输出渲染器
+     */
+    public RouteRenderer getRouteRenderer() {
+        RouteRenderer renderer = routeRenderer;
+        if (renderer == null) {
+            renderer = new RouteRenderer(this, pricingSystem);
+            routeRenderer = renderer;
+        }
+        return renderer;
+    }
+    
+    /**
+     * 获取按站点编号索引的紧凑邻接表
+     * @return 网络图
+     */
+    public NetworkGraph getNetworkGraph() {
+        NetworkGraph graph = networkGraph;
+        if (graph == null) {
+            graph = new NetworkGraph(this);
+            networkGraph = graph;
+        }
+        return graph;
+    }
+    
+    /**
+     * 获取站点间最短距离表；建立了路由表快照时返回直接读取快照的视图，否则返回堆上的表（首次调用时计算）
+     * 用完后调用close（可以使用try-with-resources）：视图持有快照的一个引用，释放后快照被替换时内存才会立即释放
+     * @return 最短距离表
+     */
+    public DistanceTable getDistanceTable() {
+        try (RoutingSnapshot snapshot = acquireCurrentRoutingSnapshot()) {
+            if (snapshot != null) {
+                return snapshot.getDistanceTable();
+            }
+        }
+        return heapDistanceTable();
+    }
+    
+    /**
+     * 获取站点间票价表；建立了路由表快照时返回直接读取快照的视图，否则返回堆上的表（首次调用时计算）
+     * 用完后调用close（可以使用try-with-resources），与getDistanceTable相同
+     * @return 票价表
+     */
+    public FareTable getFareTable() {
+        try (RoutingSnapshot snapshot = acquireCurrentRoutingSnapshot()) {
+            if (snapshot != null) {
+                return snapshot.getFareTable();
+            }
+        }
+        FareTable table = fareTable;
+        if (table == null) {
+            table = new FareTable(heapDistanceTable(), pricingSystem);
+            fareTable = table;
+        }
+        return table;
+    }
+    
+    private DistanceTable heapDistanceTable() {
+        DistanceTable table = distanceTable;
+        if (table == null) {
+            table = new DistanceTable(getNetworkGraph());
+            distanceTable = table;
+        }
+        return table;
+    }
+    
     /**
      * 计算路径票价（普通单程票）
      * @param path 路径对象
@@ -401,6 +1060,62 @@ public class SubwaySystem {
         return pricingSystem.calculateDayPassFare(ticketType);
     }
     
+    /**
+     * 获取网络连通性信息（加载数据时计算）
+     * @return 连通性信息，尚未加载数据时为null
+     */
+    public NetworkTopology getNetworkTopology() {
+        return networkTopology;
+    }
+    
+    /**
+     * 判断关闭一组站点后，网络中其余站点之间是否会出现无法到达的情况
+     * @param closedStationNames 关闭的站点名称
+     * @return 是否会使网络断开
+     */
+    public boolean isDisconnectedByClosure(Collection<String> closedStationNames) {
+        int[] closed = new int[closedStationNames.size()];
+        int i = 0;
+        for (String name : closedStationNames) {
+            Station station = stations.get(name);
+            if (station == null) {
+                throw new IllegalArgumentException("站点不存在: " + name);
+            }
+            closed[i++] = station.getId();
+        }
+        return networkTopology.isDisconnectedByStations(closed);
+    }
+    
+    /**
+     * 判断关闭两个相邻站点之间的区间后网络是否会断开
+     * @param stationName1 区间一端的站点名称
+     * @param stationName2 区间另一端的站点名称
+     * @return 是否会使网络断开
+     */
+    public boolean isDisconnectedBySegmentClosure(String stationName1, String stationName2) {
+        Station station1 = stations.get(stationName1);
+        Station station2 = stations.get(stationName2);
+        if (station1 == null) {
+            throw new IllegalArgumentException("站点不存在: " + stationName1);
+        }
+        if (station2 == null) {
+            throw new IllegalArgumentException("站点不存在: " + stationName2);
+        }
+        int edge = getNetworkGraph().findEdge(station1.getId(), station2.getId());
+        if (edge < 0) {
+            throw new IllegalArgumentException("站点不相邻: " + stationName1 + ", " + stationName2);
+        }
+        return networkTopology.isBridge(edge);
+    }
+    
+    /**
+     * 获取计价系统
+     * @return 计价系统
+     */
+    public PricingSystem getPricingSystem() {
+        return pricingSystem;
+    }
+    
     /**
      * 获取站点
      * @param name 站点名称
@@ -419,6 +1134,40 @@ public class SubwaySystem {
         return lines.get(name);
     }
     
+    /**
+     * 按编号获取站点
+     * @param id 站点编号
+     * @return 站点对象
+     */
+    public Station getStationById(int id) {
+        return stationsById.get(id);
+    }
+    
+    /**
+     * 按编号获取线路
+     * @param id 线路编号
+     * @return 线路对象
+     */
+    public Line getLineById(int id) {
+        return linesById.get(id);
+    }
+    
+    /**
+     * 获取站点数量（站点编号范围为0到数量-1）
+     * @return 站点数量
+     */
+    public int getStationCount() {
+        return stationsById.size();
+    }
+    
+    /**
+     * 获取线路数量（线路编号范围为0到数量-1）
+     * @return 线路数量
+     */
+    public int getLineCount() {
+        return linesById.size();
+    }
+    
     /**
      * 获取所有站点
      * @return 所有站点的Map
@@ -0,0 +1,26 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 共享的名称符号表
+ * 多个SubwaySystem加载数据时通过同一个符号表取得站点和线路名称，相同的名称只保留一个String对象
+ */
+public class SymbolTable {
+    private final ConcurrentHashMap<String, String> symbols = new ConcurrentHashMap<>();
+
+    /**
+     * 返回与name内容相同的共享字符串
+     * @param name 名称
+     * @return 符号表中的字符串，第一次出现时即为name本身
+     */
+    public String intern(String name) {
+        String existing = symbols.putIfAbsent(name, name);
+        return existing == null ? name : existing;
+    }
+
+    /**
+     * 符号表中的名称数
+     */
+    public int size() {
+        return symbols.size();
+    }
+}
@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
@@ -8,7 +9,13 @@ import java.util.Set;
  * 测试类，用于测试地铁系统的各项功能
  */
 public class Test {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // 批量查询模式：--batch 查询文件|- [--format tsv|json] [--threads 线程数] [--output 输出文件] [--data 数据文件]
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            BatchQueries.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         SubwaySystem subwaySystem = new SubwaySystem();
         
         try {
@@ -0,0 +1,280 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 列车时刻表，供RAPTOR引擎使用
+ *
+ * 每条线路的每个运行方向是一条“路线”。路线的站点序列和各车次的到发时刻都存放在连续的基本类型数组中：
+ * 路线r的第j个站点为 routeStops[routeStopOffset[r] + j]，
+ * 车次t在第j站的到达和出发时刻（当天秒数）为 arrivals/departures[routeTimeOffset[r] + t * 站点数 + j]，
+ * 扫描一个车次的后续站点时访问的是相邻内存。同一路线的车次按出发时间排序且互不超车。
+ *
+ * 时刻表由时刻表文件生成：每行给出线路名称、首班车、末班车、发车间隔、运行速度和停站时间，
+ * 各站时刻根据subway.txt中的站间距推算。
+ */
+public class Timetable {
+    private final SubwaySystem subwaySystem;
+    private final int routeCount;
+    private final int[] routeLine; // 路线->线路编号
+    private final int[] routeStopOffset; // 路线->站点序列起始位置，长度为路线数+1
+    private final int[] routeStops; // 各路线的站点编号
+    private final int[] routeTripCount; // 路线->车次数
+    private final int[] routeTimeOffset; // 路线->时刻数组起始位置
+    private final int[] arrivals; // 到达时刻（当天秒数）
+    private final int[] departures; // 出发时刻（当天秒数）
+    private final int[] stationRouteOffset; // 站点->经过该站的路线列表起始位置，长度为站点数+1
+    private final int[] stationRoutes; // 经过各站点的路线
+    private final int[] stationRouteIndex; // 站点在对应路线中的序号
+
+    private Timetable(SubwaySystem subwaySystem, List<RouteBuilder> routes) {
+        this.subwaySystem = subwaySystem;
+        routeCount = routes.size();
+        routeLine = new int[routeCount];
+        routeStopOffset = new int[routeCount + 1];
+        routeTripCount = new int[routeCount];
+        routeTimeOffset = new int[routeCount + 1];
+
+        int stopTotal = 0;
+        int timeTotal = 0;
+        for (int r = 0; r < routeCount; r++) {
+            RouteBuilder route = routes.get(r);
+            routeLine[r] = route.lineId;
+            routeStopOffset[r] = stopTotal;
+            routeTimeOffset[r] = timeTotal;
+            routeTripCount[r] = route.tripStarts.length;
+            stopTotal += route.stops.length;
+            timeTotal += route.stops.length * route.tripStarts.length;
+        }
+        routeStopOffset[routeCount] = stopTotal;
+        routeTimeOffset[routeCount] = timeTotal;
+
+        routeStops = new int[stopTotal];
+        arrivals = new int[timeTotal];
+        departures = new int[timeTotal];
+        int stationCount = subwaySystem.getStationCount();
+        int[] routesPerStation = new int[stationCount];
+        for (int r = 0; r < routeCount; r++) {
+            RouteBuilder route = routes.get(r);
+            int stops = route.stops.length;
+            System.arraycopy(route.stops, 0, routeStops, routeStopOffset[r], stops);
+            for (int stop : route.stops) {
+                routesPerStation[stop]++;
+            }
+            for (int t = 0; t < route.tripStarts.length; t++) {
+                int base = routeTimeOffset[r] + t * stops;
+                for (int j = 0; j < stops; j++) {
+                    arrivals[base + j] = route.tripStarts[t] + route.arrivalOffsets[j];
+                    departures[base + j] = route.tripStarts[t] + route.departureOffsets[j];
+                }
+            }
+        }
+
+        stationRouteOffset = new int[stationCount + 1];
+        for (int i = 0; i < stationCount; i++) {
+            stationRouteOffset[i + 1] = stationRouteOffset[i] + routesPerStation[i];
+        }
+        stationRoutes = new int[stationRouteOffset[stationCount]];
+        stationRouteIndex = new int[stationRouteOffset[stationCount]];
+        int[] fill = new int[stationCount];
+        for (int r = 0; r < routeCount; r++) {
+            for (int j = 0; j < getStopCount(r); j++) {
+                int station = getStop(r, j);
+                int index = stationRouteOffset[station] + fill[station]++;
+                stationRoutes[index] = r;
+                stationRouteIndex[index] = j;
+            }
+        }
+    }
+
+    /**
+     * 从时刻表文件生成时刻表
+     * @param subwaySystem 已加载线路数据的地铁系统
+     * @param filePath 时刻表文件路径
+     * @return 时刻表
+     */
+    public static Timetable loadFromFile(SubwaySystem subwaySystem, String filePath) throws IOException {
+        List<RouteBuilder> routes = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length < 6) {
+                    System.err.println("无法解析时刻表: " + line);
+                    continue;
+                }
+                Line subwayLine = subwaySystem.getLine(parts[0]);
+                if (subwayLine == null) {
+                    throw new Exceptions.LineNotFoundException(parts[0]);
+                }
+                if (subwayLine.getStationCount() < 2) {
+                    continue;
+                }
+                try {
+                    int firstDeparture = parseTime(parts[1]);
+                    int lastDeparture = parseTime(parts[2]);
+                    int headway = Integer.parseInt(parts[3]) * 60;
+                    double speed = Double.parseDouble(parts[4]);
+                    int dwell = Integer.parseInt(parts[5]);
+                    if (headway <= 0 || speed <= 0 || dwell < 0) {
+                        System.err.println("无效的时刻表参数: " + line);
+                        continue;
+                    }
+                    routes.add(new RouteBuilder(subwayLine, false, firstDeparture, lastDeparture, headway, speed, dwell));
+                    routes.add(new RouteBuilder(subwayLine, true, firstDeparture, lastDeparture, headway, speed, dwell));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("无法解析时刻表: " + line);
+                }
+            }
+        }
+        return new Timetable(subwaySystem, routes);
+    }
+
+    /**
+     * 解析HH:mm格式的时间
+     * @return 当天秒数
+     */
+    public static int parseTime(String time) {
+        int index = time.indexOf(':');
+        if (index < 0) {
+            throw new IllegalArgumentException("无效的时间: " + time);
+        }
+        int hours = Integer.parseInt(time.substring(0, index));
+        int minutes = Integer.parseInt(time.substring(index + 1));
+        if (hours < 0 || minutes < 0 || minutes >= 60) {
+            throw new IllegalArgumentException("无效的时间: " + time);
+        }
+        return hours * 3600 + minutes * 60;
+    }
+
+    /**
+     * 将当天秒数格式化为HH:mm:ss
+     */
+    public static String formatTime(int seconds) {
+        return String.format("%02d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    public SubwaySystem getSubwaySystem() {
+        return subwaySystem;
+    }
+
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    public int getLine(int route) {
+        return routeLine[route];
+    }
+
+    public int getStopCount(int route) {
+        return routeStopOffset[route + 1] - routeStopOffset[route];
+    }
+
+    public int getStop(int route, int index) {
+        return routeStops[routeStopOffset[route] + index];
+    }
+
+    public int getTripCount(int route) {
+        return routeTripCount[route];
+    }
+
+    public int getArrival(int route, int trip, int index) {
+        return arrivals[routeTimeOffset[route] + trip * getStopCount(route) + index];
+    }
+
+    public int getDeparture(int route, int trip, int index) {
+        return departures[routeTimeOffset[route] + trip * getStopCount(route) + index];
+    }
+
+    /**
+     * 查找在指定站点出发时刻不早于time的第一个车次
+     * @return 车次序号，没有可乘坐的车次时返回-1
+     */
+    public int findEarliestTrip(int route, int index, int time) {
+        int stops = getStopCount(route);
+        int base = routeTimeOffset[route] + index;
+        int low = 0;
+        int high = routeTripCount[route] - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (departures[base + mid * stops] >= time) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 经过站点的路线列表起始位置
+     */
+    public int getFirstStationRoute(int station) {
+        return stationRouteOffset[station];
+    }
+
+    /**
+     * 经过站点的路线列表结束位置（不含）
+     */
+    public int getStationRouteEnd(int station) {
+        return stationRouteOffset[station + 1];
+    }
+
+    public int getStationRoute(int position) {
+        return stationRoutes[position];
+    }
+
+    public int getStationRouteIndex(int position) {
+        return stationRouteIndex[position];
+    }
+
+    /**
+     * 生成一条路线的站点序列和车次
+     */
+    private static class RouteBuilder {
+        final int lineId;
+        final int[] stops;
+        final int[] arrivalOffsets; // 各站相对始发时刻的到达时间
+        final int[] departureOffsets; // 各站相对始发时刻的出发时间
+        final int[] tripStarts; // 各车次的始发时刻
+
+        RouteBuilder(Line line, boolean reverse, int firstDeparture, int lastDeparture,
+                     int headway, double speed, int dwell) {
+            List<Station> stations = line.getStations();
+            int count = stations.size();
+            lineId = line.getId();
+            stops = new int[count];
+            arrivalOffsets = new int[count];
+            departureOffsets = new int[count];
+            double elapsed = 0;
+            for (int j = 0; j < count; j++) {
+                Station station = stations.get(reverse ? count - 1 - j : j);
+                stops[j] = station.getId();
+                if (j > 0) {
+                    Station previous = stations.get(reverse ? count - j : j - 1);
+                    double distance = previous.getAdjacentStations().get(station).getDistance();
+                    elapsed += distance / speed * 3600;
+                    arrivalOffsets[j] = (int) Math.round(elapsed);
+                    elapsed += dwell;
+                    departureOffsets[j] = (int) Math.round(elapsed);
+                }
+            }
+            int trips = lastDeparture < firstDeparture ? 0 : (lastDeparture - firstDeparture) / headway + 1;
+            tripStarts = new int[trips];
+            for (int t = 0; t < trips; t++) {
+                tripStarts[t] = firstDeparture + t * headway;
+            }
+        }
+    }
+}
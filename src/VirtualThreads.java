@@ -0,0 +1,48 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程工具类
+ * 在支持虚拟线程的JDK（21及以上）上为每个任务创建一个虚拟线程，否则退回到缓存线程池
+ */
+public class VirtualThreads {
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findFactory();
+    
+    private VirtualThreads() {
+    }
+    
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 当前JDK是否支持虚拟线程
+     */
+    public static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+    
+    /**
+     * 创建每任务一线程的执行器，优先使用虚拟线程
+     * @return 执行器
+     */
+    public static ExecutorService newExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // 退回到平台线程
+            }
+        }
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}